@@ -0,0 +1,288 @@
+package dev.jbang.it;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.Attributes;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.google.gson.GsonBuilder;
+
+import dev.jbang.util.Util;
+
+/**
+ * Measures how long <code>jbang run</code> takes from start to finish for the
+ * different states the caches can be in. Dependencies are resolved from a
+ * Maven repository served by a local WireMock server, so the benchmark doesn't
+ * need network access and isn't influenced by it.
+ *
+ * Run it using <code>./gradlew startupBenchmark</code>, the number of measured
+ * runs per scenario can be set with <code>-PbenchIterations=N</code> and a
+ * different script than <code>itests/helloworld.java</code> can be measured
+ * with <code>-PbenchScript=path/to/script.java</code>. The results are printed
+ * and written to <code>build/reports/startup-benchmark/results.json</code>.
+ */
+@Tag("benchmark")
+public class StartupBenchmarkIT extends BaseIT {
+	private static final String GROUP = "dev.jbang.bench";
+	private static final String ARTIFACT = "benchlib";
+	private static final String VERSION = "1.0";
+	private static final String DEFAULT_SCRIPT = "helloworld.java";
+
+	private static final Pattern HEAP_USED = Pattern.compile("(\\d+)([KMG])B? \\([\\d.,]+%\\) used");
+
+	private static WireMockServer repo;
+
+	enum Scenario {
+		// Nothing cached, dependencies get downloaded and the script compiled
+		cold,
+		// Dependencies in the local Maven repository, but JBang's cache is empty
+		deps_cached,
+		// Everything cached from a previous run
+		jar_cached,
+		// Everything cached and a CDS archive available
+		cds,
+		// Everything cached and run with the fast-start runtime profile
+		fast_start
+	}
+
+	static class Result {
+		String scenario;
+		int runs;
+		double medianMs;
+		double p95Ms;
+		double minMs;
+		double maxMs;
+		Double allocatedMb;
+	}
+
+	@BeforeAll
+	static void startRepo(@TempDir Path repoDir) throws IOException {
+		repo = new WireMockServer(options().dynamicPort());
+		repo.start();
+		String base = "/" + GROUP.replace('.', '/') + "/" + ARTIFACT + "/" + VERSION + "/" + ARTIFACT + "-"
+				+ VERSION;
+		serve(base + ".pom", pom());
+		serve(base + ".jar", jar(repoDir.resolve(ARTIFACT + ".jar")));
+	}
+
+	@AfterAll
+	static void stopRepo() {
+		if (repo != null) {
+			repo.stop();
+		}
+	}
+
+	private static void serve(String path, byte[] content) {
+		repo.stubFor(get(urlEqualTo(path)).willReturn(aResponse().withStatus(200).withBody(content)));
+		repo.stubFor(get(urlEqualTo(path + ".sha1"))
+			.willReturn(aResponse().withStatus(200).withBody(sha1(content))));
+	}
+
+	private static byte[] pom() {
+		return ("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+				+ "<project xmlns=\"http://maven.apache.org/POM/4.0.0\">\n"
+				+ "  <modelVersion>4.0.0</modelVersion>\n"
+				+ "  <groupId>" + GROUP + "</groupId>\n"
+				+ "  <artifactId>" + ARTIFACT + "</artifactId>\n"
+				+ "  <version>" + VERSION + "</version>\n"
+				+ "</project>\n").getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static byte[] jar(Path jar) throws IOException {
+		Manifest mf = new Manifest();
+		mf.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+		try (OutputStream os = Files.newOutputStream(jar); JarOutputStream jos = new JarOutputStream(os, mf)) {
+			// An empty library is good enough, it only needs to be resolved
+		}
+		return Files.readAllBytes(jar);
+	}
+
+	private static String sha1(byte[] content) {
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-1").digest(content);
+			StringBuilder sb = new StringBuilder();
+			for (byte b : digest) {
+				sb.append(String.format("%02x", b));
+			}
+			return sb.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	@Test
+	public void benchmarkStartup() throws IOException {
+		int iterations = Integer.getInteger("jbang.bench.iterations", 10);
+		List<Result> results = new ArrayList<>();
+		for (Scenario scenario : Scenario.values()) {
+			if (scenario == Scenario.cds && testJavaMajorVersion < 13) {
+				continue;
+			}
+			results.add(measure(scenario, iterations));
+		}
+		report(results);
+	}
+
+	private Result measure(Scenario scenario, int iterations) throws IOException {
+		List<String> cmd = command(scenario);
+		// Get the caches in the state the scenario expects
+		assertThat(run(baseDir(), baseEnv, cmd).exitCode()).as("warm-up of " + scenario).isZero();
+		List<Double> times = new ArrayList<>();
+		for (int i = 0; i < iterations; i++) {
+			prepare(scenario);
+			long start = System.nanoTime();
+			CommandResult res = run(baseDir(), baseEnv, cmd);
+			times.add((System.nanoTime() - start) / 1_000_000.0);
+			assertThat(res.exitCode()).as(scenario + " " + res.err()).isZero();
+		}
+		Collections.sort(times);
+		Result result = new Result();
+		result.scenario = scenario.name();
+		result.runs = iterations;
+		result.medianMs = percentile(times, 50);
+		result.p95Ms = percentile(times, 95);
+		result.minMs = times.get(0);
+		result.maxMs = times.get(times.size() - 1);
+		result.allocatedMb = allocated(scenario, cmd);
+		return result;
+	}
+
+	private List<String> command(Scenario scenario) {
+		List<String> cmd = new ArrayList<>(Arrays.asList("jbang", "run", "--repos",
+				"bench=" + repo.baseUrl() + "/", "--deps", GROUP + ":" + ARTIFACT + ":" + VERSION));
+		if (scenario == Scenario.cds) {
+			cmd.add("--cds");
+		} else if (scenario == Scenario.fast_start) {
+			cmd.add("--runtime-profile=fast-start");
+		}
+		String script = script();
+		cmd.add(script.contains(" ") ? "\"" + script + "\"" : script);
+		return prefixShellArgs(Collections.singletonList(String.join(" ", cmd)));
+	}
+
+	/**
+	 * The script to run, set with the system property
+	 * <code>jbang.bench.script</code>, relative paths are resolved against the
+	 * <code>itests</code> folder
+	 */
+	private static String script() {
+		return System.getProperty("jbang.bench.script", DEFAULT_SCRIPT);
+	}
+
+	private void prepare(Scenario scenario) {
+		Path jbangCache = scratch().resolve("itest-jbang").resolve("cache");
+		switch (scenario) {
+		case cold:
+			Util.deletePath(scratch().resolve("itest-m2"), true);
+			Util.deletePath(jbangCache, true);
+			break;
+		case deps_cached:
+			Util.deletePath(jbangCache, true);
+			break;
+		default:
+			break;
+		}
+	}
+
+	/**
+	 * Runs the scenario once more with the Epsilon garbage collector, which never
+	 * frees anything, so the heap in use at the end is everything JBang allocated
+	 * (only counts JBang itself, not the script it runs).
+	 */
+	private Double allocated(Scenario scenario, List<String> cmd) throws IOException {
+		if (testJavaMajorVersion < 11) {
+			return null;
+		}
+		Path log = baseDir().resolve("gc-" + scenario + ".log");
+		Map<String, String> env = new HashMap<>(baseEnv);
+		env.put("JBANG_JAVA_OPTIONS", "-XX:+UnlockExperimentalVMOptions -XX:+UseEpsilonGC -Xmx4g -Xlog:gc:file="
+				+ log.getFileName());
+		prepare(scenario);
+		CommandResult res = run(baseDir(), env, cmd);
+		if (res.exitCode() != 0 || !Files.isRegularFile(log)) {
+			return null;
+		}
+		Double used = null;
+		try (Stream<String> lines = Files.lines(log)) {
+			for (String line : lines.collect(Collectors.toList())) {
+				Matcher m = HEAP_USED.matcher(line);
+				if (m.find()) {
+					double value = Double.parseDouble(m.group(1));
+					switch (m.group(2)) {
+					case "K":
+						used = value / 1024;
+						break;
+					case "G":
+						used = value * 1024;
+						break;
+					default:
+						used = value;
+						break;
+					}
+				}
+			}
+		}
+		return used;
+	}
+
+	private static double percentile(List<Double> sorted, int p) {
+		int idx = (int) Math.ceil(p / 100.0 * sorted.size()) - 1;
+		return sorted.get(Math.max(0, Math.min(idx, sorted.size() - 1)));
+	}
+
+	private void report(List<Result> results) throws IOException {
+		System.out.println();
+		System.out.println(String.format("Startup of 'jbang run %s' on Java %d", script(), testJavaMajorVersion));
+		String fmt = "%-12s %5s %10s %10s %10s %10s %10s%n";
+		System.out.printf(fmt, "Scenario", "Runs", "Median ms", "p95 ms", "Min ms", "Max ms", "Alloc MB");
+		for (Result r : results) {
+			System.out.printf(fmt, r.scenario, r.runs, String.format("%.0f", r.medianMs),
+					String.format("%.0f", r.p95Ms), String.format("%.0f", r.minMs), String.format("%.0f", r.maxMs),
+					r.allocatedMb != null ? String.format("%.0f", r.allocatedMb) : "-");
+		}
+
+		Map<String, Object> json = new LinkedHashMap<>();
+		json.put("script", script());
+		json.put("javaVersion", testJavaMajorVersion);
+		json.put("os", System.getProperty("os.name"));
+		json.put("results", results);
+		Path out = Paths.get("build", "reports", "startup-benchmark", "results.json");
+		Files.createDirectories(out.getParent());
+		Files.write(out, new GsonBuilder().setPrettyPrinting()
+			.create()
+			.toJson(json)
+			.getBytes(StandardCharsets.UTF_8));
+		System.out.println("Results written to " + out.toAbsolutePath());
+	}
+}
@@ -0,0 +1,90 @@
+package dev.jbang.dependencies;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import dev.jbang.util.Util;
+
+/**
+ * Looks up and adds entries in a dependency cache file that already holds the
+ * given number of entries, each entry having 30 artifacts.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DependencyCacheBenchmark {
+	private static final int ARTIFACTS_PER_ENTRY = 30;
+
+	@Param({ "100", "5000" })
+	int entries;
+
+	Path dir;
+	DependencyCacheFile cacheFile;
+	List<String> keys;
+	int next;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		dir = Files.createTempDirectory("jbang-jmh");
+		cacheFile = new DependencyCacheFile(dir.resolve("dependency_cache.bin"));
+		keys = new ArrayList<>();
+		Map<String, List<ArtifactInfo>> content = new LinkedHashMap<>();
+		for (int i = 0; i < entries; i++) {
+			String key = "org.example:app" + i + ":1.0";
+			keys.add(key);
+			content.put(key, artifacts(i));
+		}
+		cacheFile.putAll(content);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		Util.deletePath(dir, true);
+	}
+
+	static List<ArtifactInfo> artifacts(int seed) {
+		List<ArtifactInfo> artifacts = new ArrayList<>(ARTIFACTS_PER_ENTRY);
+		for (int j = 0; j < ARTIFACTS_PER_ENTRY; j++) {
+			MavenCoordinate gav = new MavenCoordinate("org.example.group" + j, "lib" + (seed + j), "1." + j);
+			Path file = Paths.get("/home/user/.m2/repository/org/example/group" + j + "/lib" + (seed + j) + "/1." + j
+					+ "/lib" + (seed + j) + "-1." + j + ".jar");
+			artifacts.add(new ArtifactInfo(gav, file, 1700000000000L + j));
+		}
+		return artifacts;
+	}
+
+	@Benchmark
+	public List<ArtifactInfo> lookupHit() throws IOException {
+		next = (next + 1) % keys.size();
+		return cacheFile.get(keys.get(next));
+	}
+
+	@Benchmark
+	public List<ArtifactInfo> lookupMiss() throws IOException {
+		return cacheFile.get("org.example:missing:1.0");
+	}
+
+	@Benchmark
+	public void add() throws IOException {
+		next++;
+		cacheFile.put("org.example:added" + next + ":1.0", artifacts(next));
+	}
+}
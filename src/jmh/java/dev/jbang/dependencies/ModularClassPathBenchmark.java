@@ -0,0 +1,97 @@
+package dev.jbang.dependencies;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.Attributes;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import dev.jbang.devkitman.Jdk;
+import dev.jbang.util.Util;
+
+/**
+ * Turns the resolved artifacts into a class path and module arguments, with
+ * and without JavaFX (which needs the module descriptors of all the jars to be
+ * read).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ModularClassPathBenchmark {
+
+	@Param({ "20", "200" })
+	int artifacts;
+
+	@Param({ "false", "true" })
+	boolean javafx;
+
+	Path dir;
+	List<ArtifactInfo> infos;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		dir = Files.createTempDirectory("jbang-jmh");
+		infos = new ArrayList<>();
+		for (int i = 0; i < artifacts; i++) {
+			String group = javafx && i < 4 ? "org/openjfx" : "org/example";
+			String name = javafx && i < 4 ? "javafx-mod" + i : "lib" + i;
+			String module = javafx && i < 4 ? "javafx.mod" + i : "org.example.lib" + i;
+			Path jar = dir.resolve(group).resolve(name + "-1.0.jar");
+			writeJar(jar, module);
+			infos.add(new ArtifactInfo(new MavenCoordinate(group.replace('/', '.'), name, "1.0"), jar));
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		Util.deletePath(dir, true);
+	}
+
+	private static void writeJar(Path jar, String module) throws IOException {
+		Files.createDirectories(jar.getParent());
+		Manifest mf = new Manifest();
+		mf.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+		mf.getMainAttributes().putValue("Automatic-Module-Name", module);
+		try (OutputStream os = Files.newOutputStream(jar); JarOutputStream jos = new JarOutputStream(os, mf)) {
+			// Only the manifest is needed
+		}
+	}
+
+	// Avoids needing an actual JDK
+	static class ModernClassPath extends ModularClassPath {
+		ModernClassPath(List<ArtifactInfo> artifacts) {
+			super(artifacts);
+		}
+
+		@Override
+		protected boolean supportsModules(Jdk jdk) {
+			return true;
+		}
+	}
+
+	@Benchmark
+	public String classPath() {
+		return new ModularClassPath(infos).getClassPath();
+	}
+
+	@Benchmark
+	public List<String> moduleArguments() {
+		return new ModernClassPath(infos).getAutoDectectedModuleArguments(null);
+	}
+}
@@ -0,0 +1,58 @@
+package dev.jbang.search;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Fuzzy matching of a query against artifact coordinates the way the artifact
+ * search does it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SearchBenchmark {
+	private static final String[] WORDS = { "apache", "commons", "jackson", "core", "databind", "quarkus",
+			"spring", "boot", "starter", "web", "netty", "handler", "google", "guava", "slf4j", "api", "picocli",
+			"logging", "junit", "jupiter" };
+
+	@Param({ "1000", "20000" })
+	int artifacts;
+
+	@Param({ "jackson", "spring-boot-starter-web" })
+	String query;
+
+	List<String> coordinates;
+
+	@Setup
+	public void setup() {
+		Random rnd = new Random(42);
+		coordinates = new ArrayList<>(artifacts);
+		for (int i = 0; i < artifacts; i++) {
+			String group = "org." + WORDS[rnd.nextInt(WORDS.length)] + "." + WORDS[rnd.nextInt(WORDS.length)];
+			String artifact = WORDS[rnd.nextInt(WORDS.length)] + "-" + WORDS[rnd.nextInt(WORDS.length)];
+			coordinates.add(group + ":" + artifact + ":" + rnd.nextInt(10) + "." + rnd.nextInt(20));
+		}
+	}
+
+	@Benchmark
+	public SearchScorer calculate() {
+		return SearchScorer.calculate(query, coordinates.get(0));
+	}
+
+	@Benchmark
+	public List<Fuzz.SearchFuzzedResult<String>> search() {
+		return Fuzz.search(coordinates, target -> new Fuzz.SearchFuzzedResult<>(target,
+				SearchScorer.calculate(query, target), query.length(), target.length()));
+	}
+}
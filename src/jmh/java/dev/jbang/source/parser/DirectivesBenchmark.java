@@ -0,0 +1,69 @@
+package dev.jbang.source.parser;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Parses the directives of a source file, the size of the file is determined
+ * by the number of lines of code that follow the directives.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DirectivesBenchmark {
+
+	@Param({ "100", "10000" })
+	int lines;
+
+	String contents;
+
+	@Setup
+	public void setup() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("///usr/bin/env jbang \"$0\" \"$@\" ; exit $?\n");
+		sb.append("//JAVA 17+\n");
+		sb.append("//DESCRIPTION A rather large script\n");
+		for (int i = 0; i < 20; i++) {
+			sb.append("//DEPS org.example:lib").append(i).append(":1.").append(i).append('\n');
+		}
+		sb.append("//REPOS central,jitpack\n");
+		sb.append("//SOURCES Other.java util/*.java\n");
+		sb.append("//FILES application.properties\n");
+		sb.append("//JAVA_OPTIONS -Xmx1g -Dfoo=bar\n");
+		sb.append("//COMPILE_OPTIONS -g -Xlint:all\n");
+		sb.append("//MAIN com.example.Main\n");
+		sb.append("package com.example;\n\n");
+		sb.append("public class Main {\n");
+		for (int i = 0; i < lines; i++) {
+			sb.append("    // comment ").append(i).append('\n');
+			sb.append("    static String s").append(i).append(" = \"//DEPS not:a:directive\";\n");
+		}
+		sb.append("}\n");
+		contents = sb.toString();
+	}
+
+	@Benchmark
+	public void parse(Blackhole bh) {
+		Directives directives = new Directives.Extended(contents, Function.identity());
+		List<String> deps = directives.binaryDependencies();
+		bh.consume(deps);
+		bh.consume(directives.repositories());
+		bh.consume(directives.sources());
+		bh.consume(directives.files());
+		bh.consume(directives.javaVersion());
+		bh.consume(directives.mainMethod());
+		bh.consume(directives.runtimeOptions());
+		bh.consume(directives.compileOptions());
+	}
+}
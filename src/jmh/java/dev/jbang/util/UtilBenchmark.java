@@ -0,0 +1,65 @@
+package dev.jbang.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Hashing of build inputs and quoting of generated command lines, both of
+ * which happen for every <code>jbang run</code>.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class UtilBenchmark {
+
+	@Param({ "1000", "100000" })
+	int size;
+
+	@Param({ "bash", "cmd", "powershell" })
+	Util.Shell shell;
+
+	String input;
+	List<String> arguments;
+
+	@Setup
+	public void setup() {
+		StringBuilder sb = new StringBuilder();
+		while (sb.length() < size) {
+			sb.append("import java.util.*; // some source code with \"quotes\" and $vars\n");
+		}
+		input = sb.toString();
+
+		arguments = new ArrayList<>();
+		arguments.add("/usr/lib/jvm/java-21/bin/java");
+		arguments.add("-classpath");
+		StringBuilder cp = new StringBuilder();
+		for (int i = 0; i < size / 100; i++) {
+			cp.append("/home/user with space/.m2/repository/org/example/lib").append(i).append(".jar:");
+		}
+		arguments.add(cp.toString());
+		for (int i = 0; i < 20; i++) {
+			arguments.add("-Dprop" + i + "=value with 'quotes' \"and\" %special% $chars");
+		}
+		arguments.add("com.example.Main");
+	}
+
+	@Benchmark
+	public String stableId() {
+		return Util.getStableID(input);
+	}
+
+	@Benchmark
+	public String commandLine() {
+		return CommandBuffer.of(arguments).shell(shell).asCommandLine();
+	}
+}
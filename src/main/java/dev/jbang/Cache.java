@@ -3,6 +3,7 @@ package dev.jbang;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Arrays;
 
 import dev.jbang.devkitman.Jdk;
 import dev.jbang.devkitman.JdkManager;
@@ -12,7 +13,7 @@ import dev.jbang.util.Util;
 public class Cache {
 
 	public enum CacheClass {
-		urls, jars, jdks, kotlincs, groovycs, projects, scripts, stdins, deps
+		urls, jars, jdks, kotlincs, groovycs, projects, scripts, stdins, deps, launches
 	}
 
 	static void setupCache(Path dir) {
@@ -33,14 +34,16 @@ public class Cache {
 				}
 			}
 			if (cc == CacheClass.deps) {
-				try {
-					if (Settings.getCacheDependencyFile().toFile().exists()) {
-						Util.verboseMsg("Deleting file " + Settings.getCacheDependencyFile());
-						Files.deleteIfExists(Settings.getCacheDependencyFile().toAbsolutePath());
+				for (Path depsFile : Arrays.asList(Settings.getCacheDependencyFile(),
+						Settings.getLegacyCacheDependencyFile())) {
+					try {
+						if (depsFile.toFile().exists()) {
+							Util.verboseMsg("Deleting file " + depsFile);
+							Files.deleteIfExists(depsFile.toAbsolutePath());
+						}
+					} catch (IOException io) {
+						throw new ExitException(-1, "Could not delete dependency cache " + depsFile, io);
 					}
-				} catch (IOException io) {
-					throw new ExitException(-1,
-							"Could not delete dependency cache " + Settings.getCacheDependencyFile().toString(), io);
 				}
 			} else {
 				Util.deletePath(Settings.getCacheDir(cc), true);
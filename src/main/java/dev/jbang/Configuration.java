@@ -107,7 +107,7 @@ public class Configuration {
 
 	public Boolean getBoolean(String key) {
 		String val = get(key);
-		if (key != null) {
+		if (val != null) {
 			return Boolean.parseBoolean(val);
 		}
 		return null;
@@ -15,6 +15,10 @@ import org.aesh.command.CommandResult;
 import dev.jbang.catalog.Alias;
 import dev.jbang.catalog.Catalog;
 import dev.jbang.cli.JBang;
+import dev.jbang.daemon.DaemonClient;
+import dev.jbang.dependencies.ArtifactInfo;
+import dev.jbang.source.LaunchCache;
+import dev.jbang.util.InputRequiredException;
 import dev.jbang.util.Util;
 import dev.jbang.util.VersionChecker;
 
@@ -38,9 +42,35 @@ public class Main {
 
 		String[] newArgs = handleDefaultRun(args);
 
+		String cachedCmdline = LaunchCache.lookup(newArgs);
+		if (cachedCmdline != null) {
+			Util.verboseMsg("run (cached): " + cachedCmdline);
+			System.out.println(cachedCmdline);
+			System.exit(ExitException.EXIT_EXECUTE);
+		}
+
 		Util.verboseMsg("jbang version " + Util.getJBangVersion());
 		Future<String> versionCheckResult = VersionChecker.newerVersionAsync();
+		int exitCode;
+		try {
+			Integer daemonExitCode = DaemonClient.tryForward(newArgs);
+			exitCode = daemonExitCode != null ? daemonExitCode : execute(newArgs);
+		} finally {
+			VersionChecker.informOrCancel(versionCheckResult);
+		}
+		if (exitCode != 0) {
+			System.exit(exitCode);
+		}
+	}
+
+	/**
+	 * Executes the JBang command line (after it has been processed by
+	 * <code>handleDefaultRun()</code>) and returns the exit code.
+	 */
+	public static int execute(String... newArgs) {
 		int exitCode = 0;
+		LaunchCache.setInvocationArgs(newArgs);
+		ArtifactInfo.clearFileStates();
 		try {
 			CommandResult result = AeshRuntimeRunner.builder()
 				.command(JBang.class)
@@ -55,13 +85,18 @@ public class Main {
 				Util.errorMsg(null, e);
 			}
 			exitCode = e.getStatus();
+		} catch (InputRequiredException e) {
+			// Let the caller decide what to do, see BuildDaemon
+			throw e;
 		} catch (Exception e) {
 			// Unwrap to find the root cause
 			Throwable cause = e;
 			while (cause.getCause() != null) {
 				cause = cause.getCause();
 			}
-			if (cause instanceof IllegalArgumentException) {
+			if (cause instanceof InputRequiredException) {
+				throw (InputRequiredException) cause;
+			} else if (cause instanceof IllegalArgumentException) {
 				// Converter/validation errors from aesh (e.g. invalid enum values)
 				Util.errorMsg(cause.getMessage());
 				exitCode = ExitException.EXIT_INVALID_INPUT;
@@ -79,11 +114,9 @@ public class Main {
 				exitCode = ExitException.EXIT_INTERNAL_ERROR;
 			}
 		} finally {
-			VersionChecker.informOrCancel(versionCheckResult);
-		}
-		if (exitCode != 0) {
-			System.exit(exitCode);
+			LaunchCache.setInvocationArgs(null);
 		}
+		return exitCode;
 	}
 
 	private static Set<String> subcommandNames;
@@ -109,6 +142,7 @@ public class Main {
 			names.add("export");
 			names.add("config");
 			names.add("deps");
+			names.add("daemon");
 			subcommandNames = names;
 		}
 		return subcommandNames;
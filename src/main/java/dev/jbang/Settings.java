@@ -18,6 +18,7 @@ public class Settings {
 
 	public static final String TRUSTED_SOURCES_JSON = "trusted-sources.json";
 	public static final String DEPENDENCY_CACHE_JSON = "dependency_cache.json";
+	public static final String DEPENDENCY_CACHE_BIN = "dependency_cache.bin";
 	public static final String DEFAULT_JDK = "currentjdk";
 	public static final String JBANG_DOT_DIR = ".jbang";
 	public static final String BIN_DIR = "bin";
@@ -37,6 +38,24 @@ public class Settings {
 	final public static String CONFIG_CACHE_EVICT = "cache-evict";
 	final public static String DEFAULT_CACHE_EVICT = "PT12H";
 
+	final public static String CONFIG_CACHE_REVALIDATE = "cache-revalidate";
+	final public static String CACHE_REVALIDATE_BACKGROUND = "background";
+
+	final public static String CONFIG_DAEMON = "daemon";
+
+	final public static String CONFIG_DAEMON_IDLE_TIMEOUT = "daemon-idle-timeout";
+	final public static String DEFAULT_DAEMON_IDLE_TIMEOUT = "PT3H";
+	final public static String DAEMON_DIR = "daemon";
+
+	final public static String CONFIG_BUILD_CACHE = "build-cache";
+	final public static String CONFIG_BUILD_CACHE_PUSH = "build-cache-push";
+
+	final public static String CONFIG_CDS_AUTO = "cds-auto";
+	final public static String CONFIG_CDS_AUTO_RUNS = "cds-auto-runs";
+	final public static int DEFAULT_CDS_AUTO_RUNS = 3;
+
+	final public static String CONFIG_RUNTIME_PROFILE = "runtime-profile";
+
 	public static Path getJBangLocalMavenRepoOverride() {
 		String jbangRepo = System.getenv().get(JBANG_REPO);
 		if (jbangRepo != null) {
@@ -47,6 +66,14 @@ public class Settings {
 	}
 
 	public static Path getCacheDependencyFile() {
+		return getCacheDir(true).resolve(DEPENDENCY_CACHE_BIN);
+	}
+
+	/**
+	 * The JSON dependency cache used by older versions of JBang, its entries get
+	 * migrated to the file returned by <code>getCacheDependencyFile()</code>
+	 */
+	public static Path getLegacyCacheDependencyFile() {
 		return getCacheDir(true).resolve(DEPENDENCY_CACHE_JSON);
 	}
 
@@ -169,6 +196,78 @@ public class Settings {
 		return (int) Configuration.instance().getNumber(CONFIG_CONNECTION_TIMEOUT, DEFAULT_CONNECTION_TIMEOUT);
 	}
 
+	public static Path getDaemonDir() {
+		return getConfigDir(true).resolve(DAEMON_DIR);
+	}
+
+	public static boolean isDaemonEnabled() {
+		return Configuration.instance().getBoolean(CONFIG_DAEMON, false);
+	}
+
+	/**
+	 * Returns the number of seconds a build daemon will stay alive without
+	 * receiving any requests.
+	 */
+	public static long getDaemonIdleTimeout() {
+		String val = Configuration.instance().get(CONFIG_DAEMON_IDLE_TIMEOUT, DEFAULT_DAEMON_IDLE_TIMEOUT);
+		try {
+			return Long.parseLong(val);
+		} catch (NumberFormatException ex) {
+			try {
+				return Duration.parse(val).getSeconds();
+			} catch (DateTimeParseException ex2) {
+				Util.warnMsg("Invalid duration in config: " + val);
+				return Duration.parse(DEFAULT_DAEMON_IDLE_TIMEOUT).getSeconds();
+			}
+		}
+	}
+
+	/**
+	 * Returns the location of the shared build cache, either a folder or an HTTP
+	 * URL, or <code>null</code> if none was configured.
+	 */
+	public static String getBuildCache() {
+		return Configuration.instance().get(CONFIG_BUILD_CACHE);
+	}
+
+	public static boolean isBuildCachePush() {
+		return Configuration.instance().getBoolean(CONFIG_BUILD_CACHE_PUSH, true);
+	}
+
+	/**
+	 * Returns if CDS archives should be created automatically for scripts that are
+	 * run often, even when they don't ask for it using <code>--cds</code> or
+	 * <code>//CDS</code>
+	 */
+	public static boolean isCdsAuto() {
+		return Configuration.instance().getBoolean(CONFIG_CDS_AUTO, false);
+	}
+
+	/**
+	 * Returns the number of times a script has to be run before a CDS archive
+	 * gets created for it automatically
+	 */
+	public static int getCdsAutoRuns() {
+		return (int) Configuration.instance().getNumber(CONFIG_CDS_AUTO_RUNS, DEFAULT_CDS_AUTO_RUNS);
+	}
+
+	/**
+	 * Returns the name of the runtime profile to use for scripts that don't
+	 * specify one themselves, or <code>null</code> for none
+	 */
+	public static String getRuntimeProfile() {
+		return Configuration.instance().get(CONFIG_RUNTIME_PROFILE);
+	}
+
+	/**
+	 * Returns if outdated files in the URL cache should be used right away while
+	 * checking for newer versions in the background (for the next run), instead
+	 * of waiting for that check to finish
+	 */
+	public static boolean isCacheRevalidateInBackground() {
+		return CACHE_REVALIDATE_BACKGROUND.equalsIgnoreCase(Configuration.instance().get(CONFIG_CACHE_REVALIDATE));
+	}
+
 	public static long getCacheEvict() {
 		String val = Configuration.instance().get(CONFIG_CACHE_EVICT, DEFAULT_CACHE_EVICT);
 		if ("never".equalsIgnoreCase(val)) {
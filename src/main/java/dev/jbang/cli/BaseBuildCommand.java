@@ -1,8 +1,11 @@
 package dev.jbang.cli;
 
+import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 
+import org.aesh.command.CommandResult;
+import org.aesh.command.invocation.CommandInvocation;
 import org.aesh.command.option.Mixin;
 import org.aesh.command.option.Option;
 
@@ -10,6 +13,8 @@ import dev.jbang.devkitman.Jdk;
 import dev.jbang.devkitman.JdkManager;
 import dev.jbang.source.Project;
 import dev.jbang.source.ProjectBuilder;
+import dev.jbang.util.Timings;
+import dev.jbang.util.Util;
 
 public abstract class BaseBuildCommand extends BaseCommand {
 
@@ -31,10 +36,36 @@ public abstract class BaseBuildCommand extends BaseCommand {
 	@Option(name = "enable-preview", hasValue = false, description = "Activate Java preview features")
 	Boolean enablePreviewRequested;
 
+	@Option(name = "timings", fallbackValue = "table", description = "Report how long each phase of the build took, as a 'table' (default), as 'json' or as a Chrome 'trace'")
+	Timings.Format timings;
+
+	@Option(name = "timings-file", description = "Write the timings report to the given file instead of to stderr")
+	String timingsFile;
+
 	@Override
 	public void afterParse() {
 		super.afterParse();
 		dependencyInfoMixin.applyIgnoreTransitiveRepositories();
+		if (timings != null) {
+			Timings.enable();
+		}
+	}
+
+	@Override
+	public CommandResult execute(CommandInvocation commandInvocation) throws InterruptedException {
+		try {
+			return super.execute(commandInvocation);
+		} finally {
+			if (timings != null) {
+				try {
+					Timings.report(timings, timingsFile != null ? Paths.get(timingsFile) : null);
+				} catch (IOException e) {
+					Util.warnMsg("Unable to write timings report", e);
+				} finally {
+					Timings.disable();
+				}
+			}
+		}
 	}
 
 	protected JdkManager getJdkManager() {
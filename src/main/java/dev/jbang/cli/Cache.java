@@ -18,7 +18,7 @@ public class Cache extends BaseCommand {
 		return missingSubcommand();
 	}
 
-	@CommandDefinition(name = "clear", description = "Clear the various caches used by jbang. By default this will clear the JAR, script, stdin and URL caches.", generateHelp = true)
+	@CommandDefinition(name = "clear", description = "Clear the various caches used by jbang. By default this will clear the JAR, script, stdin, URL, dependency and launch caches.", generateHelp = true)
 	public static class CacheClear extends BaseCommand {
 
 		@Option(name = "url", hasValue = false, negatable = true, description = "clear URL cache only")
@@ -48,6 +48,9 @@ public class Cache extends BaseCommand {
 		@Option(name = "stdin", hasValue = false, negatable = true, description = "clear stdin cache only")
 		Boolean stdin;
 
+		@Option(name = "launch", hasValue = false, negatable = true, description = "clear launch cache only")
+		Boolean launch;
+
 		@Option(name = "all", hasValue = false, description = "clear all caches")
 		boolean all;
 
@@ -66,13 +69,15 @@ public class Cache extends BaseCommand {
 					&& project == null
 					&& script == null
 					&& stdin == null
-					&& deps == null) {
+					&& deps == null
+					&& launch == null) {
 				// add the default (safe) set
 				classes.add(dev.jbang.Cache.CacheClass.urls);
 				classes.add(dev.jbang.Cache.CacheClass.jars);
 				classes.add(dev.jbang.Cache.CacheClass.scripts);
 				classes.add(dev.jbang.Cache.CacheClass.stdins);
 				classes.add(dev.jbang.Cache.CacheClass.deps);
+				classes.add(dev.jbang.Cache.CacheClass.launches);
 			}
 
 			// we only toggle on or off those that are actually present
@@ -85,6 +90,7 @@ public class Cache extends BaseCommand {
 			toggleCache(project, dev.jbang.Cache.CacheClass.projects, classes);
 			toggleCache(script, dev.jbang.Cache.CacheClass.scripts, classes);
 			toggleCache(stdin, dev.jbang.Cache.CacheClass.stdins, classes);
+			toggleCache(launch, dev.jbang.Cache.CacheClass.launches, classes);
 
 			dev.jbang.Cache.CacheClass[] ccs = classes.toArray(new dev.jbang.Cache.CacheClass[0]);
 			dev.jbang.Cache.clearCache(ccs);
@@ -0,0 +1,57 @@
+package dev.jbang.cli;
+
+import java.io.IOException;
+
+import org.aesh.command.CommandDefinition;
+
+import dev.jbang.daemon.DaemonClient;
+
+@CommandDefinition(name = "daemon", description = "Manage the JBang build daemon. Enable it with `jbang config set daemon true`.", groupCommands = {
+		Daemon.DaemonStart.class, Daemon.DaemonStatus.class,
+		Daemon.DaemonStop.class }, generateHelp = true, helpGroup = "Caching")
+public class Daemon extends BaseCommand {
+
+	@Override
+	public Integer doCall() {
+		return missingSubcommand();
+	}
+
+	@CommandDefinition(name = "start", description = "Start the build daemon for the current Java version.", generateHelp = true)
+	public static class DaemonStart extends BaseCommand {
+
+		@Override
+		public Integer doCall() throws IOException {
+			if (DaemonClient.isRunning()) {
+				info("JBang daemon already running");
+			} else {
+				DaemonClient.start();
+				info("JBang daemon started");
+			}
+			return EXIT_OK;
+		}
+	}
+
+	@CommandDefinition(name = "status", description = "Show the status of the build daemon for the current Java version.", generateHelp = true)
+	public static class DaemonStatus extends BaseCommand {
+
+		@Override
+		public Integer doCall() {
+			if (!DaemonClient.status()) {
+				System.out.println("JBang daemon not running");
+			}
+			return EXIT_OK;
+		}
+	}
+
+	@CommandDefinition(name = "stop", description = "Stop the build daemon for the current Java version.", generateHelp = true)
+	public static class DaemonStop extends BaseCommand {
+
+		@Override
+		public Integer doCall() {
+			if (!DaemonClient.stop()) {
+				info("JBang daemon not running");
+			}
+			return EXIT_OK;
+		}
+	}
+}
@@ -19,7 +19,7 @@ import dev.jbang.util.Util;
 
 @CommandDefinition(name = "jbang", description = "jbang is a tool for building and running .java/.jsh scripts and jar packages.", groupCommands = {
 		Run.class, Build.class, Init.class, Edit.class, Deps.class,
-		Cache.class, Export.class, Jdk.class,
+		Cache.class, Daemon.class, Export.class, Jdk.class,
 		Config.class, Trust.class, Alias.class, Template.class, Catalog.class, App.class,
 		Completion.class, Info.class, Version.class,
 		Wrapper.class }, generateHelp = true, helpSectionProvider = ExternalCommandsProvider.class)
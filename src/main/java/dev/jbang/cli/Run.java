@@ -4,6 +4,7 @@ import java.io.FileDescriptor;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -17,13 +18,18 @@ import org.aesh.command.option.Mixin;
 import org.aesh.command.option.Option;
 
 import dev.jbang.ExitException;
+import dev.jbang.daemon.DaemonClient;
 import dev.jbang.resources.resolvers.AliasResourceResolver;
 import dev.jbang.resources.resolvers.LiteralScriptResourceResolver;
 import dev.jbang.source.BuildContext;
+import dev.jbang.source.ClassDataSharing;
 import dev.jbang.source.CmdGeneratorBuilder;
+import dev.jbang.source.LaunchCache;
 import dev.jbang.source.Project;
 import dev.jbang.source.ProjectBuilder;
 import dev.jbang.source.Source;
+import dev.jbang.util.Glob;
+import dev.jbang.util.Timings;
 import dev.jbang.util.Util;
 
 @CommandDefinition(name = "run", description = "Builds and runs provided script. (default command)", generateHelp = true, stopAtFirstPositional = true, helpGroup = "Essentials")
@@ -32,9 +38,11 @@ public class Run extends BaseBuildCommand {
 	/**
 	 * A PrintStream that always writes to the real stdout, bypassing any
 	 * System.setOut() redirection. Used to output the command line for the parent
-	 * process to execute.
+	 * process to execute. When running inside the build daemon the command line
+	 * must go to the client instead, which is what System.out is connected to.
 	 */
-	public PrintStream realOut = new PrintStream(new FileOutputStream(FileDescriptor.out));
+	public PrintStream realOut = DaemonClient.isInDaemon() ? System.out
+			: new PrintStream(new FileOutputStream(FileDescriptor.out));
 
 	@Mixin
 	public RunMixin runMixin;
@@ -108,14 +116,50 @@ public class Run extends BaseBuildCommand {
 
 		buildAgents(ctx);
 
-		String cmdline = updateGeneratorForRun(genb).build().generate();
+		String cmdline;
+		try (Timings.Span span = Timings.start("command")) {
+			cmdline = updateGeneratorForRun(genb).build().generate();
+		}
 
 		Util.verboseMsg("run: " + cmdline);
 		realOut.println(cmdline);
 
+		if (isLaunchCacheable(ctx)) {
+			LaunchCache.store(ctx, cmdline, userParams);
+		}
+
 		return EXIT_EXECUTE;
 	}
 
+	/**
+	 * Determines if the command line for this run only depends on the script and
+	 * the command line options, so it can be stored in the launch cache
+	 */
+	private boolean isLaunchCacheable(BuildContext ctx) {
+		Project prj = ctx.getProject();
+		String script = scriptMixin.scriptOrFile;
+		if (literalScript != null || script == null || runMixin.interactive == Boolean.TRUE || timings != null
+				|| runMixin.getJavaAgentSlots() != null
+				|| prj.getResourceRef() instanceof AliasResourceResolver.AliasedResourceRef) {
+			return false;
+		}
+		// The CDS options get added once the script has been run often enough
+		if (!Boolean.FALSE.equals(runMixin.getCds()) && ClassDataSharing.isPending(ctx)) {
+			return false;
+		}
+		// Debug ports ending in "?" get picked at random
+		if (runMixin.debugString != null
+				&& runMixin.debugString.values().stream().anyMatch(v -> v != null && v.endsWith("?"))) {
+			return false;
+		}
+		// Don't remember a main class the user picked interactively
+		if (prj.getMainClass() == null && (buildMixin.main == null || Glob.isGlob(buildMixin.main))) {
+			return false;
+		}
+		Path file = prj.getResourceRef().getFile();
+		return file != null && Util.isSameFile(Util.getCwd().resolve(script), file);
+	}
+
 	void buildAgents(BuildContext ctx) throws IOException {
 		Project prj = ctx.getProject();
 		Map<String, String> agents = runMixin.getJavaAgentSlots();
@@ -166,7 +210,9 @@ public class Run extends BaseBuildCommand {
 			.enableSystemAssertions(runMixin.enableSystemAssertions)
 			.flightRecorderString(runMixin.flightRecorderString)
 			.debugString(runMixin.debugString)
-			.classDataSharing(runMixin.getCds());
+			.classDataSharing(runMixin.getCds())
+			.aheadOfTimeCache(runMixin.getAot())
+			.runtimeProfile(runMixin.runtimeProfile);
 
 		return gb;
 	}
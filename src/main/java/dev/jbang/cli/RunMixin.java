@@ -33,6 +33,12 @@ public class RunMixin {
 	@Option(name = "cds", hasValue = false, negatable = true, description = "If specified Class Data Sharing (CDS) will be used for building and running (requires Java 13+)")
 	Boolean cds;
 
+	@Option(name = "aot", hasValue = false, description = "If specified the first run will be a training run for an Ahead-of-Time (AOT) cache that later runs will use (requires Java 24+, falls back to CDS on older versions)")
+	Boolean aot;
+
+	@Option(name = "runtime-profile", description = "Set of JVM options to tune the runtime with: 'fast-start' for short-lived scripts or 'default' for the JVM defaults")
+	public String runtimeProfile;
+
 	@Option(shortName = 'i', name = "interactive", hasValue = false, description = "Activate interactive mode")
 	public Boolean interactive;
 
@@ -44,6 +50,10 @@ public class RunMixin {
 		return cds;
 	}
 
+	public Boolean getAot() {
+		return aot;
+	}
+
 	public List<String> opts() {
 		List<String> opts = new ArrayList<>();
 		if (javaRuntimeOptions != null) {
@@ -85,6 +95,12 @@ public class RunMixin {
 		} else if (Boolean.FALSE.equals(getCds())) {
 			opts.add("--no-cds");
 		}
+		if (Boolean.TRUE.equals(getAot())) {
+			opts.add("--aot");
+		}
+		if (runtimeProfile != null) {
+			opts.add("--runtime-profile=" + runtimeProfile);
+		}
 		if (Boolean.TRUE.equals(interactive)) {
 			opts.add("--interactive");
 		}
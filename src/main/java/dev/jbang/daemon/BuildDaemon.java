@@ -0,0 +1,439 @@
+package dev.jbang.daemon;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.AclEntry;
+import java.nio.file.attribute.AclEntryPermission;
+import java.nio.file.attribute.AclEntryType;
+import java.nio.file.attribute.AclFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import com.google.gson.Gson;
+
+import dev.jbang.Configuration;
+import dev.jbang.Main;
+import dev.jbang.Settings;
+import dev.jbang.util.InputRequiredException;
+import dev.jbang.util.Util;
+
+/**
+ * A long-lived background process that executes <code>jbang run</code> and
+ * <code>jbang build</code> requests handed to it by {@link DaemonClient}. By
+ * staying alive between invocations the JIT-compiled code, the in-process Java
+ * compiler, the dependency resolver and the dependency cache all stay warm.
+ *
+ * There is at most one daemon per Java version. The daemon listens on a
+ * loopback socket and writes its port and a random access token to a state
+ * file in the <code>daemon</code> folder of the JBang config dir, only clients
+ * that can read that file can talk to the daemon. The daemon exits when it
+ * hasn't received any requests for the configured idle time (see
+ * <code>daemon-idle-timeout</code>).
+ *
+ * Requests are handled one at a time because JBang keeps a lot of global state
+ * (verbosity, offline mode, configuration, current directory, etc).
+ */
+public class BuildDaemon {
+	static final String KEY_PID = "pid";
+	static final String KEY_PORT = "port";
+	static final String KEY_TOKEN = "token";
+	static final String KEY_JAVA_VERSION = "java.version";
+	static final String KEY_JBANG_VERSION = "jbang.version";
+	static final String KEY_STARTED = "started";
+
+	static final String REQ_EXECUTE = "execute";
+	static final String REQ_STATUS = "status";
+	static final String REQ_STOP = "stop";
+
+	static final byte FRAME_ACCEPT = 'A';
+	static final byte FRAME_OUT = 'O';
+	static final byte FRAME_ERR = 'E';
+	static final byte FRAME_EXIT = 'X';
+	static final byte FRAME_REJECT = 'R';
+	// The command needs to ask the user something, so the client should run it
+	static final byte FRAME_LOCAL = 'L';
+
+	// Environment variables that differ between shells without affecting builds
+	private static final Set<String> IGNORED_ENV = new HashSet<>(Arrays.asList("PWD", "OLDPWD", "SHLVL", "_"));
+
+	private final Path stateFile;
+	private final long idleTimeout;
+	private final String token;
+	private final Instant started = Instant.now();
+	private int requestsServed = 0;
+	private volatile boolean running = true;
+
+	static class Request {
+		String type;
+		String cwd;
+		String env;
+		List<String> args;
+	}
+
+	public BuildDaemon(Path stateFile, long idleTimeoutSeconds) {
+		this.stateFile = stateFile;
+		this.idleTimeout = idleTimeoutSeconds;
+		this.token = newToken();
+	}
+
+	public static void main(String... args) throws IOException {
+		new BuildDaemon(getStateFile(), Settings.getDaemonIdleTimeout()).serve();
+	}
+
+	public void serve() throws IOException {
+		Path lockFile = getLockFile();
+		Files.createDirectories(lockFile.getParent());
+		try (FileChannel lockChannel = FileChannel.open(lockFile, StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE);
+				FileLock lock = tryLock(lockChannel)) {
+			if (lock == null) {
+				Util.infoMsg("Another JBang daemon is already running or starting, exiting");
+				return;
+			}
+			listen();
+		}
+	}
+
+	private void listen() throws IOException {
+		try (ServerSocket server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+			if (idleTimeout > 0) {
+				server.setSoTimeout((int) Math.min(Integer.MAX_VALUE, idleTimeout * 1000));
+			}
+			writeState(server.getLocalPort());
+			Util.infoMsg("JBang daemon listening on port " + server.getLocalPort());
+			while (running) {
+				Socket socket;
+				try {
+					socket = server.accept();
+				} catch (SocketTimeoutException e) {
+					Util.infoMsg("JBang daemon stopping after being idle for " + Duration.ofSeconds(idleTimeout));
+					break;
+				}
+				try (Socket s = socket) {
+					handle(s);
+				} catch (IOException e) {
+					Util.verboseMsg("Error while handling daemon request", e);
+				}
+			}
+		} finally {
+			removeState();
+		}
+	}
+
+	private void handle(Socket socket) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+		if (!token.equals(readString(in))) {
+			writeFrame(out, FRAME_REJECT, "Invalid token");
+			out.flush();
+			return;
+		}
+		Request req = new Gson().fromJson(readString(in), Request.class);
+		if (REQ_STOP.equals(req.type)) {
+			running = false;
+			writeFrame(out, FRAME_OUT, "JBang daemon stopping\n");
+			writeExit(out, 0);
+		} else if (REQ_STATUS.equals(req.type)) {
+			writeFrame(out, FRAME_OUT, status());
+			writeExit(out, 0);
+		} else if (REQ_EXECUTE.equals(req.type)) {
+			if (!environmentFingerprint().equals(req.env)) {
+				writeFrame(out, FRAME_REJECT, "Environment differs from the one the daemon was started with");
+			} else {
+				execute(req, out);
+			}
+		} else {
+			writeFrame(out, FRAME_REJECT, "Unknown request: " + req.type);
+		}
+		out.flush();
+	}
+
+	private void execute(Request req, DataOutputStream out) throws IOException {
+		PrintStream oldOut = System.out;
+		PrintStream oldErr = System.err;
+		Path oldCwd = Util.getCwd();
+		GlobalState oldState = GlobalState.capture();
+		int exitCode;
+		// Lets the client know that from here on it shouldn't run the command itself
+		out.writeByte(FRAME_ACCEPT);
+		out.flush();
+		try (PrintStream reqOut = new PrintStream(new FrameOutputStream(out, FRAME_OUT), true, "UTF-8");
+				PrintStream reqErr = new PrintStream(new FrameOutputStream(out, FRAME_ERR), true, "UTF-8")) {
+			System.setOut(reqOut);
+			System.setErr(reqErr);
+			Util.setCwd(Paths.get(req.cwd));
+			// We can't read the client's stdin
+			Util.setInputAvailable(false);
+			// Make sure we pick up any configuration changes
+			Configuration.instance(null);
+			exitCode = Main.execute(req.args.toArray(new String[0]));
+		} catch (InputRequiredException e) {
+			// The daemon only prepares commands, the client can safely redo that
+			writeFrame(out, FRAME_LOCAL, e.getMessage());
+			return;
+		} finally {
+			System.setOut(oldOut);
+			System.setErr(oldErr);
+			Util.setCwd(oldCwd);
+			oldState.restore();
+			requestsServed++;
+		}
+		writeExit(out, exitCode);
+	}
+
+	private String status() {
+		Duration uptime = Duration.between(started, Instant.now());
+		return "JBang daemon running" + "\n" +
+				"  PID: " + currentPid() + "\n" +
+				"  Java: " + System.getProperty("java.home") + " [" + System.getProperty("java.version") + "]\n" +
+				"  JBang: " + Util.getJBangVersion() + "\n" +
+				"  Uptime: " + uptime.getSeconds() + "s\n" +
+				"  Requests served: " + requestsServed + "\n" +
+				"  Idle timeout: " + Duration.ofSeconds(idleTimeout) + "\n";
+	}
+
+	private void writeState(int port) throws IOException {
+		Properties props = new Properties();
+		props.setProperty(KEY_PID, currentPid());
+		props.setProperty(KEY_PORT, Integer.toString(port));
+		props.setProperty(KEY_TOKEN, token);
+		props.setProperty(KEY_JAVA_VERSION, javaVersion());
+		props.setProperty(KEY_JBANG_VERSION, Util.getJBangVersion());
+		props.setProperty(KEY_STARTED, started.toString());
+		Files.createDirectories(stateFile.getParent());
+		Path tmp = createPrivateFile(stateFile.getParent());
+		try (Writer w = Files.newBufferedWriter(tmp)) {
+			props.store(w, "JBang build daemon");
+		}
+		Files.move(tmp, stateFile, StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	private void removeState() {
+		// Only remove the state file if it's still ours
+		Properties props = readState(stateFile);
+		if (props != null && token.equals(props.getProperty(KEY_TOKEN))) {
+			Util.deletePath(stateFile, true);
+		}
+	}
+
+	static Properties readState(Path stateFile) {
+		if (!Files.isReadable(stateFile)) {
+			return null;
+		}
+		if (!isPrivate(stateFile)) {
+			Util.warnMsg("Ignoring JBang daemon state file " + stateFile
+					+ " because it is not owned by, or can be read by others than, the current user");
+			return null;
+		}
+		Properties props = new Properties();
+		try (Reader r = Files.newBufferedReader(stateFile)) {
+			props.load(r);
+			return props;
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Creates an empty temporary file in the given folder that only the current
+	 * user can read and write, because the state file contains the token that
+	 * gives access to the daemon.
+	 */
+	static Path createPrivateFile(Path dir) throws IOException {
+		if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+			return Files.createTempFile(dir, "daemon", ".tmp",
+					PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+		}
+		Path tmp = Files.createTempFile(dir, "daemon", ".tmp");
+		AclFileAttributeView acl = Files.getFileAttributeView(tmp, AclFileAttributeView.class);
+		if (acl != null) {
+			AclEntry entry = AclEntry.newBuilder()
+				.setType(AclEntryType.ALLOW)
+				.setPrincipal(acl.getOwner())
+				.setPermissions(EnumSet.allOf(AclEntryPermission.class))
+				.build();
+			acl.setAcl(Collections.singletonList(entry));
+		}
+		return tmp;
+	}
+
+	/**
+	 * Returns true if the given file is owned by the current user and nobody else
+	 * has access to it
+	 */
+	static boolean isPrivate(Path file) {
+		try {
+			UserPrincipal owner = Files.getOwner(file);
+			UserPrincipal user = file.getFileSystem()
+				.getUserPrincipalLookupService()
+				.lookupPrincipalByName(System.getProperty("user.name"));
+			if (!owner.equals(user)) {
+				return false;
+			}
+			if (file.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+				Set<PosixFilePermission> perms = Files.getPosixFilePermissions(file);
+				return perms.stream().allMatch(p -> p.name().startsWith("OWNER_"));
+			}
+			AclFileAttributeView acl = Files.getFileAttributeView(file, AclFileAttributeView.class);
+			return acl == null || acl.getAcl()
+				.stream()
+				.allMatch(e -> e.type() != AclEntryType.ALLOW || e.principal().equals(owner));
+		} catch (IOException | UnsupportedOperationException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Returns the location of the state file for the daemon belonging to the Java
+	 * version we're currently running on.
+	 */
+	public static Path getStateFile() {
+		return Settings.getDaemonDir().resolve("daemon-" + javaVersion() + ".properties");
+	}
+
+	/**
+	 * Returns the file the daemon for the current Java version keeps locked for
+	 * as long as it runs, which makes sure there's only ever one.
+	 */
+	static Path getLockFile() {
+		return Settings.getDaemonDir().resolve("daemon-" + javaVersion() + ".lock");
+	}
+
+	/**
+	 * Returns the lock or <code>null</code> if somebody else holds it
+	 */
+	static FileLock tryLock(FileChannel channel) throws IOException {
+		try {
+			return channel.tryLock();
+		} catch (OverlappingFileLockException e) {
+			return null;
+		}
+	}
+
+	public static Path getLogFile() {
+		return Settings.getDaemonDir().resolve("daemon-" + javaVersion() + ".log");
+	}
+
+	static String javaVersion() {
+		return System.getProperty("java.specification.version");
+	}
+
+	/**
+	 * Requests from clients with a different environment get rejected because
+	 * the daemon can't change its own environment. Builds read all sorts of
+	 * variables (tokens for authentication, <code>${env.X}</code> in directives,
+	 * etc) so all of them count, except for the ones a shell changes by itself.
+	 */
+	static String environmentFingerprint() {
+		Map<String, String> env = System.getenv();
+		return Util.getStableID(env.keySet()
+			.stream()
+			.filter(k -> !IGNORED_ENV.contains(k) && !k.startsWith("JAVA_MAIN_CLASS_"))
+			.sorted()
+			.map(k -> k + "=" + env.get(k) + "\n"));
+	}
+
+	static String currentPid() {
+		String name = ManagementFactory.getRuntimeMXBean().getName();
+		int idx = name.indexOf('@');
+		return idx > 0 ? name.substring(0, idx) : name;
+	}
+
+	private static String newToken() {
+		byte[] bytes = new byte[16];
+		new SecureRandom().nextBytes(bytes);
+		StringBuilder sb = new StringBuilder();
+		for (byte b : bytes) {
+			sb.append(String.format("%02x", b));
+		}
+		return sb.toString();
+	}
+
+	static String readString(DataInputStream in) throws IOException {
+		int len = in.readInt();
+		byte[] bytes = new byte[len];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	static void writeString(DataOutputStream out, String str) throws IOException {
+		byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	static void writeFrame(DataOutputStream out, byte type, String str) throws IOException {
+		out.writeByte(type);
+		writeString(out, str);
+	}
+
+	private static void writeExit(DataOutputStream out, int exitCode) throws IOException {
+		out.writeByte(FRAME_EXIT);
+		out.writeInt(exitCode);
+	}
+
+	/**
+	 * Sends everything written to it as frames of the given type to the client.
+	 */
+	private static class FrameOutputStream extends OutputStream {
+		private final DataOutputStream out;
+		private final byte type;
+
+		FrameOutputStream(DataOutputStream out, byte type) {
+			this.out = out;
+			this.type = type;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			write(new byte[] { (byte) b }, 0, 1);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			synchronized (out) {
+				out.writeByte(type);
+				out.writeInt(len);
+				out.write(b, off, len);
+			}
+		}
+
+		@Override
+		public void flush() throws IOException {
+			synchronized (out) {
+				out.flush();
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			flush();
+		}
+	}
+}
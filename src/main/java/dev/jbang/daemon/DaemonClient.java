@@ -0,0 +1,289 @@
+package dev.jbang.daemon;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+import com.google.gson.Gson;
+
+import dev.jbang.ExitException;
+import dev.jbang.Settings;
+import dev.jbang.util.JavaUtil;
+import dev.jbang.util.Util;
+
+/**
+ * Hands off <code>jbang run</code> and <code>jbang build</code> requests to a
+ * running {@link BuildDaemon} and manages the daemon's lifecycle. Forwarding
+ * is only done when the <code>daemon</code> configuration option is enabled,
+ * in all other cases (or when anything goes wrong talking to the daemon) the
+ * command is simply executed in the current process.
+ */
+public class DaemonClient {
+	/** System property that gets set for the JVM running the daemon */
+	public static final String PROP_IN_DAEMON = "jbang.daemon";
+
+	private static final int CONNECT_TIMEOUT = 2000;
+	private static final int START_TIMEOUT = 10000;
+
+	private DaemonClient() {
+	}
+
+	/**
+	 * Tries to forward the given command to the daemon.
+	 *
+	 * @param args The arguments as processed by <code>Main.handleDefaultRun()</code>
+	 * @return The exit code of the command or <code>null</code> if it wasn't
+	 *         forwarded and should be executed in the current process
+	 */
+	public static Integer tryForward(String[] args) {
+		if (!canForward(args)) {
+			return null;
+		}
+		Properties state = BuildDaemon.readState(BuildDaemon.getStateFile());
+		if (state == null || !Util.getJBangVersion().equals(state.getProperty(BuildDaemon.KEY_JBANG_VERSION))) {
+			if (state != null) {
+				Util.verboseMsg("Restarting JBang daemon because of version mismatch");
+				sendQuietly(state, BuildDaemon.REQ_STOP, null);
+			}
+			// Start a daemon for the next time around, this one we'll run ourselves
+			spawnQuietly();
+			return null;
+		}
+		try {
+			Util.verboseMsg("Forwarding command to JBang daemon on port " + state.getProperty(BuildDaemon.KEY_PORT));
+			return send(state, BuildDaemon.REQ_EXECUTE, Arrays.asList(args));
+		} catch (ConnectionLostException e) {
+			// The daemon already started executing the command, running it again
+			// could do things twice
+			throw new ExitException(ExitException.EXIT_GENERIC_ERROR,
+					"Lost the connection to the JBang daemon while it was executing the command", e);
+		} catch (IOException e) {
+			Util.verboseMsg("Unable to reach JBang daemon, running locally", e);
+			Util.deletePath(BuildDaemon.getStateFile(), true);
+			return null;
+		}
+	}
+
+	static boolean canForward(String[] args) {
+		if (args == null || !Settings.isDaemonEnabled() || isInDaemon() || JavaUtil.inNativeImage()) {
+			return false;
+		}
+		String cmd = Arrays.stream(args).filter(a -> !a.startsWith("-")).findFirst().orElse("");
+		if (!cmd.equals("run") && !cmd.equals("build")) {
+			return false;
+		}
+		// The daemon can't read from our stdin
+		return Arrays.stream(args).noneMatch(a -> a.equals("-"));
+	}
+
+	public static boolean isInDaemon() {
+		return "true".equals(System.getProperty(PROP_IN_DAEMON));
+	}
+
+	public static boolean isRunning() {
+		Properties state = BuildDaemon.readState(BuildDaemon.getStateFile());
+		return state != null && sendQuietly(state, BuildDaemon.REQ_STATUS, null, new ByteArrayOutputStream()) == 0;
+	}
+
+	/**
+	 * Prints the status of the daemon for the current Java version.
+	 *
+	 * @return <code>true</code> if a daemon is running
+	 */
+	public static boolean status() {
+		Properties state = BuildDaemon.readState(BuildDaemon.getStateFile());
+		return state != null && sendQuietly(state, BuildDaemon.REQ_STATUS, null) == 0;
+	}
+
+	/**
+	 * Stops the daemon for the current Java version.
+	 *
+	 * @return <code>true</code> if a daemon was running
+	 */
+	public static boolean stop() {
+		Properties state = BuildDaemon.readState(BuildDaemon.getStateFile());
+		boolean stopped = state != null && sendQuietly(state, BuildDaemon.REQ_STOP, null) == 0;
+		Util.deletePath(BuildDaemon.getStateFile(), true);
+		return stopped;
+	}
+
+	/**
+	 * Starts a daemon for the current Java version and waits for it to be ready.
+	 */
+	public static void start() throws IOException {
+		if (isRunning()) {
+			return;
+		}
+		Path stateFile = BuildDaemon.getStateFile();
+		Util.deletePath(stateFile, true);
+		spawn();
+		long end = System.currentTimeMillis() + START_TIMEOUT;
+		while (System.currentTimeMillis() < end) {
+			if (isRunning()) {
+				return;
+			}
+			try {
+				Thread.sleep(100);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+		}
+		throw new ExitException(ExitException.EXIT_GENERIC_ERROR,
+				"JBang daemon did not start, see " + BuildDaemon.getLogFile() + " for details");
+	}
+
+	private static void spawnQuietly() {
+		Path lockFile = BuildDaemon.getLockFile();
+		try {
+			Files.createDirectories(lockFile.getParent());
+			try (FileChannel channel = FileChannel.open(lockFile, StandardOpenOption.CREATE,
+					StandardOpenOption.WRITE)) {
+				try (FileLock lock = BuildDaemon.tryLock(channel)) {
+					if (lock == null) {
+						// A daemon is running or another client is starting one right now
+						Util.verboseMsg("JBang daemon is already starting");
+						return;
+					}
+				}
+				// The daemon takes the lock itself, clients that start one at the same
+				// time still end up with just one daemon
+				spawn();
+			}
+		} catch (IOException e) {
+			Util.verboseMsg("Unable to start JBang daemon", e);
+		}
+	}
+
+	private static void spawn() throws IOException {
+		if (JavaUtil.inNativeImage()) {
+			throw new ExitException(ExitException.EXIT_GENERIC_ERROR,
+					"The JBang daemon can't be started from a native image");
+		}
+		Path javaHome = Paths.get(System.getProperty("java.home"));
+		String java = javaHome.resolve("bin").resolve(Util.isWindows() ? "java.exe" : "java").toString();
+		Path jbangJar = Util.getJarLocation();
+		String cp = jbangJar.toString().endsWith(".jar") ? jbangJar.toString()
+				: System.getProperty("java.class.path");
+		List<String> cmd = new ArrayList<>();
+		cmd.add(java);
+		cmd.add("-D" + PROP_IN_DAEMON + "=true");
+		cmd.add("-cp");
+		cmd.add(cp);
+		cmd.add(BuildDaemon.class.getName());
+		Path logFile = BuildDaemon.getLogFile();
+		Files.createDirectories(logFile.getParent());
+		Util.verboseMsg("Starting JBang daemon: " + String.join(" ", cmd));
+		Process p = new ProcessBuilder(cmd)
+			.redirectErrorStream(true)
+			.redirectOutput(ProcessBuilder.Redirect.appendTo(logFile.toFile()))
+			.start();
+		p.getOutputStream().close();
+	}
+
+	private static int sendQuietly(Properties state, String type, List<String> args) {
+		return sendQuietly(state, type, args, System.out);
+	}
+
+	private static int sendQuietly(Properties state, String type, List<String> args, OutputStream out) {
+		try {
+			Integer res = send(state, type, args, out, System.err);
+			return res != null ? res : -1;
+		} catch (IOException e) {
+			Util.verboseMsg("Unable to reach JBang daemon", e);
+			return -1;
+		}
+	}
+
+	private static Integer send(Properties state, String type, List<String> args) throws IOException {
+		return send(state, type, args, System.out, System.err);
+	}
+
+	/**
+	 * Thrown when the connection to the daemon broke after it started executing a
+	 * command
+	 */
+	static class ConnectionLostException extends IOException {
+		ConnectionLostException(String message, Throwable cause) {
+			super(message, cause);
+		}
+	}
+
+	/**
+	 * Sends a request to the daemon and copies its output to the given streams.
+	 *
+	 * @return The exit code returned by the daemon or <code>null</code> if the
+	 *         daemon rejected the request or needs it to be run locally
+	 * @throws ConnectionLostException if the connection broke after the daemon
+	 *                                 accepted the request
+	 */
+	private static Integer send(Properties state, String type, List<String> args, OutputStream out,
+			OutputStream err) throws IOException {
+		int port = Integer.parseInt(state.getProperty(BuildDaemon.KEY_PORT, "0"));
+		BuildDaemon.Request req = new BuildDaemon.Request();
+		req.type = type;
+		req.cwd = Util.getCwd().toString();
+		req.env = BuildDaemon.environmentFingerprint();
+		req.args = args;
+		boolean accepted = false;
+		try (Socket socket = new Socket()) {
+			socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), CONNECT_TIMEOUT);
+			DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+			BuildDaemon.writeString(dos, state.getProperty(BuildDaemon.KEY_TOKEN, ""));
+			BuildDaemon.writeString(dos, new Gson().toJson(req));
+			dos.flush();
+			DataInputStream dis = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			while (true) {
+				byte frame = dis.readByte();
+				switch (frame) {
+				case BuildDaemon.FRAME_ACCEPT:
+					accepted = true;
+					break;
+				case BuildDaemon.FRAME_OUT:
+					copyFrame(dis, out);
+					break;
+				case BuildDaemon.FRAME_ERR:
+					copyFrame(dis, err);
+					break;
+				case BuildDaemon.FRAME_EXIT:
+					return dis.readInt();
+				case BuildDaemon.FRAME_REJECT:
+					Util.verboseMsg("JBang daemon rejected request: " + BuildDaemon.readString(dis));
+					return null;
+				case BuildDaemon.FRAME_LOCAL:
+					Util.verboseMsg("JBang daemon needs user input, running locally");
+					BuildDaemon.readString(dis);
+					return null;
+				default:
+					throw new IOException("Unexpected response from JBang daemon");
+				}
+			}
+		} catch (IOException e) {
+			if (accepted) {
+				throw new ConnectionLostException("JBang daemon closed the connection unexpectedly", e);
+			}
+			throw e instanceof EOFException
+					? new IOException("JBang daemon closed the connection unexpectedly", e)
+					: e;
+		}
+	}
+
+	private static void copyFrame(DataInputStream in, OutputStream out) throws IOException {
+		int len = in.readInt();
+		byte[] bytes = new byte[len];
+		in.readFully(bytes);
+		out.write(bytes);
+		out.flush();
+	}
+}
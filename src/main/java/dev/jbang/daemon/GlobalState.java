@@ -0,0 +1,64 @@
+package dev.jbang.daemon;
+
+import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLSocketFactory;
+
+import dev.jbang.util.NetUtil;
+import dev.jbang.util.Util;
+
+/**
+ * The JVM-wide settings that commands can change, like verbosity, offline mode
+ * or the TLS checks turned off by <code>--insecure</code>. The daemon captures
+ * them before executing a request and puts them back afterwards, so one request
+ * can't change how the next one behaves.
+ */
+class GlobalState {
+	private final boolean verbose;
+	private final boolean quiet;
+	private final boolean offline;
+	private final boolean fresh;
+	private final boolean ignoreTransitiveRepositories;
+	private final boolean preview;
+	private final boolean printExceptions;
+	private final int askInputTimeout;
+	private final boolean inputAvailable;
+	private final SSLSocketFactory sslSocketFactory;
+	private final HostnameVerifier hostnameVerifier;
+
+	private GlobalState() {
+		verbose = Util.isVerbose();
+		quiet = Util.isQuiet();
+		offline = Util.isOffline();
+		fresh = Util.isFresh();
+		ignoreTransitiveRepositories = Util.isIgnoreTransitiveRepositories();
+		preview = Util.isPreview();
+		printExceptions = Util.printExceptions();
+		askInputTimeout = Util.getAskInputTimeout();
+		inputAvailable = Util.isInputAvailable();
+		sslSocketFactory = HttpsURLConnection.getDefaultSSLSocketFactory();
+		hostnameVerifier = HttpsURLConnection.getDefaultHostnameVerifier();
+	}
+
+	static GlobalState capture() {
+		return new GlobalState();
+	}
+
+	void restore() {
+		// At most one of each pair is on, and switching one off leaves the other be
+		Util.setVerbose(verbose);
+		Util.setQuiet(quiet);
+		Util.setFresh(fresh);
+		Util.setOffline(offline);
+		Util.setIgnoreTransitiveRepositories(ignoreTransitiveRepositories);
+		Util.setPreview(preview);
+		Util.setPrintExceptions(printExceptions);
+		Util.setAskInputTimeout(askInputTimeout);
+		Util.setInputAvailable(inputAvailable);
+		// These get determined again from the environment when needed
+		Util.setDownloadSources(null);
+		NetUtil.resetNetrcCache();
+		HttpsURLConnection.setDefaultSSLSocketFactory(sslSocketFactory);
+		HttpsURLConnection.setDefaultHostnameVerifier(hostnameVerifier);
+	}
+}
@@ -1,8 +1,13 @@
 package dev.jbang.dependencies;
 
+import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 
 import dev.jbang.util.ModuleUtil;
 
@@ -10,6 +15,13 @@ import dev.jbang.util.ModuleUtil;
  * class describing artifact coordinates and its resolved physical location.
  */
 public class ArtifactInfo {
+	// Lists with at least this many artifacts get validated in parallel
+	private static final int PARALLEL_THRESHOLD = 16;
+	private static final long MISSING = -1;
+
+	// Memoized file modification times, so the same artifact only gets checked
+	// once per invocation even when several class paths refer to it
+	private static final Map<Path, Long> lastModifiedTimes = new ConcurrentHashMap<>();
 
 	private final MavenCoordinate coordinate;
 	private final Path file;
@@ -18,7 +30,9 @@ public class ArtifactInfo {
 	ArtifactInfo(MavenCoordinate coordinate, Path file) {
 		this.coordinate = coordinate;
 		this.file = file;
-		this.timestamp = Files.exists(file) ? file.toFile().lastModified() : 0;
+		long ts = readLastModified(file);
+		lastModifiedTimes.put(file, ts);
+		this.timestamp = ts != MISSING ? ts : 0;
 	}
 
 	ArtifactInfo(MavenCoordinate coordinate, Path file, long cachedTimestamp) {
@@ -62,8 +76,44 @@ public class ArtifactInfo {
 		// stores the result with slightly different timestamps. In this way we allow
 		// timestamps to be slightly "off" and we'll still assume the artifact to be
 		// up-to-date.
-		long ts = file.toFile().lastModified();
-		return Files.isReadable(file) && (timestamp == ts || (ts % 1000 == 0 && timestamp / 1000 == ts / 1000));
+		long ts = lastModified(file);
+		return ts != MISSING && (timestamp == ts || (ts % 1000 == 0 && timestamp / 1000 == ts / 1000));
+	}
+
+	/**
+	 * Determines if all the given artifacts exist and are up-to-date. For larger
+	 * lists the files are checked in parallel, which makes a big difference on
+	 * slow (network) file systems.
+	 */
+	public static boolean allUpToDate(List<ArtifactInfo> artifacts) {
+		if (artifacts.size() >= PARALLEL_THRESHOLD) {
+			artifacts.parallelStream().map(ArtifactInfo::getFile).distinct().forEach(ArtifactInfo::lastModified);
+		}
+		return artifacts.stream().allMatch(ArtifactInfo::isUpToDate);
+	}
+
+	/**
+	 * Forgets all memoized file information, this gets called at the start of
+	 * each invocation so nothing carries over from an earlier one in the same
+	 * JVM (like a previous request handled by the build daemon).
+	 */
+	public static void clearFileStates() {
+		lastModifiedTimes.clear();
+	}
+
+	private static long lastModified(Path file) {
+		return lastModifiedTimes.computeIfAbsent(file, ArtifactInfo::readLastModified);
+	}
+
+	// Reads all the information we need with a single call. Files that exist
+	// but that we can't read will be reported as missing when we try to use them
+	private static long readLastModified(Path file) {
+		try {
+			BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+			return attrs.lastModifiedTime().toMillis();
+		} catch (IOException e) {
+			return MISSING;
+		}
 	}
 
 	public String toString() {
@@ -7,10 +7,16 @@ import java.net.MalformedURLException;
 import java.net.URL;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
 import org.eclipse.aether.AbstractRepositoryListener;
 import org.eclipse.aether.ConfigurationProperties;
+import org.eclipse.aether.DefaultRepositoryCache;
 import org.eclipse.aether.DefaultRepositorySystemSession;
 import org.eclipse.aether.RepositoryEvent;
 import org.eclipse.aether.RepositoryListener;
@@ -51,7 +57,10 @@ import eu.maveniverse.maven.mima.context.ContextOverrides;
 import eu.maveniverse.maven.mima.context.Runtimes;
 
 public class ArtifactResolver implements Closeable {
+	private static final int RESOLVE_THREADS = 8;
+
 	private final Context context;
+	private final RepositorySystemSession session;
 	private final boolean downloadSources;
 
 	public static class Builder {
@@ -173,6 +182,15 @@ public class ArtifactResolver implements Closeable {
 				Collections.singletonList(new DefaultArtifactType("fatjar", "jar", null, "java", true, true)));
 
 		this.context = Runtimes.INSTANCE.getRuntime().create(overridesBuilder.build());
+
+		// Make sure that the descriptors that get read while resolving one set of
+		// dependencies can be reused when the next set is resolved by this resolver
+		DefaultRepositorySystemSession session = new DefaultRepositorySystemSession(
+				context.repositorySystemSession());
+		if (session.getCache() == null) {
+			session.setCache(new DefaultRepositoryCache());
+		}
+		this.session = session;
 	}
 
 	@Override
@@ -181,27 +199,47 @@ public class ArtifactResolver implements Closeable {
 	}
 
 	public void downloadSources(Artifact artifact) {
+		downloadSources(artifact, context.remoteRepositories());
+	}
+
+	private void downloadSources(Artifact artifact, List<RemoteRepository> remoteRepos) {
 		try {
 			context.repositorySystem()
-				.resolveArtifact(context.repositorySystemSession(), new ArtifactRequest()
+				.resolveArtifact(session, new ArtifactRequest()
 					.setArtifact(
 							new SubArtifact(
 									artifact,
 									"sources",
 									"jar"))
-					.setRepositories(
-							context.remoteRepositories()));
+					.setRepositories(remoteRepos));
 		} catch (ArtifactResolutionException e) {
 			Util.verboseMsg("Could not resolve sources for " + artifact.toString());
 		}
 	}
 
 	public List<ArtifactInfo> resolve(List<String> depIds) {
-		context.repositorySystemSession().getData().set("depIds", depIds);
+		return resolveWith(depIds, context.remoteRepositories());
+	}
+
+	/**
+	 * Resolves the given dependencies using the given repositories instead of the
+	 * ones this resolver was created with. This way several sets of dependencies,
+	 * each with their own repositories, can share the same session.
+	 */
+	public List<ArtifactInfo> resolve(List<String> depIds, List<MavenRepo> repositories) {
+		List<RemoteRepository> remoteRepos = repositories.stream()
+			.map(this::toRemoteRepo)
+			.collect(Collectors.toList());
+		// Applies any mirrors, proxies and credentials from the settings
+		return resolveWith(depIds, context.repositorySystem().newResolutionRepositories(session, remoteRepos));
+	}
+
+	private List<ArtifactInfo> resolveWith(List<String> depIds, List<RemoteRepository> remoteRepos) {
+		session.getData().set("depIds", depIds);
+		session.getData().set("ids", null);
 		// Maven is by default "forgiving" for dependency POM loading: here we want to
 		// ensure that all enlisted deps exists for sure
-		DefaultRepositorySystemSession strictSession = new DefaultRepositorySystemSession(
-				context.repositorySystemSession());
+		DefaultRepositorySystemSession strictSession = new DefaultRepositorySystemSession(session);
 
 		strictSession.setArtifactDescriptorPolicy(new SimpleArtifactDescriptorPolicy(false, false));
 		try {
@@ -210,16 +248,21 @@ public class ArtifactResolver implements Closeable {
 				.collect(Collectors.groupingBy(Dependency::getScope));
 
 			List<Dependency> deps = scopeDeps.getOrDefault(JavaScopes.COMPILE, Collections.emptyList());
-			List<Dependency> managedDeps = deps.stream()
-				.flatMap(d -> getManagedDependencies(strictSession, d).stream())
+			List<Dependency> boms = scopeDeps.getOrDefault("import", Collections.emptyList());
+			List<Dependency> all = new ArrayList<>(deps);
+			all.addAll(boms);
+			List<List<Dependency>> allManaged = getManagedDependencies(strictSession, remoteRepos, all);
+			List<Dependency> managedDeps = allManaged.subList(0, deps.size())
+				.stream()
+				.flatMap(List::stream)
 				.collect(Collectors.toList());
 
-			if (scopeDeps.containsKey("import")) {
+			if (!boms.isEmpty()) {
 				// If there are any @pom artifacts we'll apply their
 				// managed dependencies to the given dependencies BEFORE ordinary deps
-				List<Dependency> boms = scopeDeps.getOrDefault("import", Collections.emptyList());
-				List<Dependency> mdeps = boms.stream()
-					.flatMap(d -> getManagedDependencies(strictSession, d).stream())
+				List<Dependency> mdeps = allManaged.subList(deps.size(), allManaged.size())
+					.stream()
+					.flatMap(List::stream)
 					.collect(Collectors.toList());
 				deps = deps.stream().map(d -> applyManagedDependencies(d, mdeps)).collect(Collectors.toList());
 				managedDeps.addAll(0, mdeps);
@@ -228,12 +271,11 @@ public class ArtifactResolver implements Closeable {
 			CollectRequest collectRequest = new CollectRequest()
 				.setManagedDependencies(managedDeps)
 				.setDependencies(deps)
-				.setRepositories(context.remoteRepositories());
+				.setRepositories(remoteRepos);
 
 			DependencyRequest dependencyRequest = new DependencyRequest(collectRequest, null);
 			DependencyResult dependencyResult = context.repositorySystem()
-				.resolveDependencies(context.repositorySystemSession(),
-						dependencyRequest);
+				.resolveDependencies(session, dependencyRequest);
 			List<ArtifactResult> artifacts = dependencyResult.getArtifactResults();
 
 			if (downloadSources) {
@@ -243,7 +285,7 @@ public class ArtifactResolver implements Closeable {
 			return artifacts.stream()
 				.map(ar -> {
 					if (downloadSources) {
-						downloadSources(ar.getArtifact());
+						downloadSources(ar.getArtifact(), remoteRepos);
 					}
 					return ar.getArtifact();
 				})
@@ -292,27 +334,28 @@ public class ArtifactResolver implements Closeable {
 
 			@SuppressWarnings("unchecked")
 			private void printEvent(String groupId, String artId, String version, String type, String classifier) {
-				RepositorySystemSession session = context.repositorySystemSession();
 				List<String> depIds = (List<String>) session.getData().get("depIds");
 				if (depIds == null) {
 					return;
 				}
 				Set<String> ids = (Set<String>) session.getData()
 					.computeIfAbsent("ids", () -> new HashSet<>(depIds));
+				// Descriptors get resolved concurrently, so this can be called from
+				// several threads at the same time
 				Set<String> printed = (Set<String>) session.getData()
-					.computeIfAbsent("printed", () -> new HashSet<>());
+					.computeIfAbsent("printed", ConcurrentHashMap::newKeySet);
 
 				String id = coord(groupId, artId, null, null, classifier);
 				if (!printed.contains(id)) {
 					String coord = coord(groupId, artId, version, null, classifier);
 					String pomcoord = coord(groupId, artId, version, "pom", null);
-					if (ids.contains(id) || ids.contains(coord) || ids.contains(pomcoord) || Util.isVerbose()) {
+					if ((ids.contains(id) || ids.contains(coord) || ids.contains(pomcoord) || Util.isVerbose())
+							&& printed.add(id)) {
 						if (ids.contains(pomcoord)) {
 							infoMsg("   " + pomcoord);
 						} else {
 							infoMsg("   " + coord);
 						}
-						printed.add(id);
 					}
 				}
 			}
@@ -349,21 +392,64 @@ public class ArtifactResolver implements Closeable {
 		return d;
 	}
 
-	private List<Dependency> getManagedDependencies(RepositorySystemSession session, Dependency dependency) {
-		return resolveDescriptor(session, dependency.getArtifact()).getManagedDependencies();
+	/**
+	 * Returns the managed dependencies for each of the given dependencies, in the
+	 * same order. Reading the descriptors mostly means waiting for the network, so
+	 * when there are several they are read concurrently using at most
+	 * <code>jbang.resolve.threads</code> (default 8) threads. Setting that system
+	 * property to 1 reads them one after the other.
+	 */
+	private List<List<Dependency>> getManagedDependencies(RepositorySystemSession session,
+			List<RemoteRepository> remoteRepos, List<Dependency> dependencies) {
+		int threads = Math.min(dependencies.size(), Integer.getInteger("jbang.resolve.threads", RESOLVE_THREADS));
+		if (threads <= 1) {
+			return dependencies.stream()
+				.map(d -> getManagedDependencies(session, remoteRepos, d))
+				.collect(Collectors.toList());
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(threads, r -> {
+			Thread t = new Thread(r, "jbang-resolver");
+			t.setDaemon(true);
+			return t;
+		});
+		try {
+			List<Future<List<Dependency>>> futures = dependencies.stream()
+				.map(d -> executor.submit(() -> getManagedDependencies(session, remoteRepos, d)))
+				.collect(Collectors.toList());
+			List<List<Dependency>> result = new ArrayList<>(futures.size());
+			for (Future<List<Dependency>> f : futures) {
+				result.add(f.get());
+			}
+			return result;
+		} catch (ExecutionException ex) {
+			if (ex.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) ex.getCause();
+			}
+			throw new ExitException(1, "Could not read artifact descriptors", ex.getCause());
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new ExitException(1, "Interrupted while reading artifact descriptors", ex);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private List<Dependency> getManagedDependencies(RepositorySystemSession session,
+			List<RemoteRepository> remoteRepos, Dependency dependency) {
+		return resolveDescriptor(session, remoteRepos, dependency.getArtifact()).getManagedDependencies();
 	}
 
-	private ArtifactDescriptorResult resolveDescriptor(RepositorySystemSession session, Artifact artifact) {
+	private ArtifactDescriptorResult resolveDescriptor(RepositorySystemSession session,
+			List<RemoteRepository> remoteRepos, Artifact artifact) {
 		try {
 			if (artifact.getVersion().trim().isEmpty()) {
 				return new ArtifactDescriptorResult(
-						new ArtifactDescriptorRequest(artifact, context.remoteRepositories(), ""));
+						new ArtifactDescriptorRequest(artifact, remoteRepos, ""));
 			}
 			// one must resolve version, as it may be range; reading descriptor is possible
 			// only from exact versions
 			VersionRangeRequest versionRangeRequest = new VersionRangeRequest().setArtifact(artifact)
-				.setRepositories(
-						context.remoteRepositories());
+				.setRepositories(remoteRepos);
 			VersionRangeResult versionRangeResult = context.repositorySystem()
 				.resolveVersionRange(session, versionRangeRequest);
 			if (versionRangeResult.getVersions().isEmpty()) {
@@ -376,8 +462,7 @@ public class ArtifactResolver implements Closeable {
 				.setArtifact(
 						artifact.setVersion(
 								version))
-				.setRepositories(
-						context.remoteRepositories());
+				.setRepositories(remoteRepos);
 			return context.repositorySystem()
 				.readArtifactDescriptor(session, descriptorRequest);
 		} catch (VersionRangeResolutionException | ArtifactDescriptorException ex) {
@@ -423,7 +508,7 @@ public class ArtifactResolver implements Closeable {
 		String cls = coord.getClassifier();
 		String ext = coord.getType();
 		if (coord.getType() != null) {
-			ArtifactType type = context.repositorySystemSession().getArtifactTypeRegistry().get(coord.getType());
+			ArtifactType type = session.getArtifactTypeRegistry().get(coord.getType());
 			if (type != null) {
 				ext = type.getExtension();
 				cls = Optional.ofNullable(cls).orElse(type.getClassifier());
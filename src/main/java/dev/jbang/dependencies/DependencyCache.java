@@ -4,120 +4,162 @@ import static dev.jbang.util.Util.warnMsg;
 
 import java.io.IOException;
 import java.io.Reader;
-import java.io.Writer;
 import java.lang.reflect.Type;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonDeserializer;
 import com.google.gson.JsonObject;
-import com.google.gson.JsonSerializer;
+import com.google.gson.JsonParseException;
 import com.google.gson.reflect.TypeToken;
 
 import dev.jbang.Settings;
 import dev.jbang.util.Util;
 
+/**
+ * Caches the result of resolving a set of dependencies, keyed by a hash of
+ * those dependencies. The entries are stored in a binary indexed file (see
+ * <code>DependencyCacheFile</code>) so lookups and updates only have to touch
+ * the entries involved. Entries that were looked up or added are remembered
+ * for the remainder of the process.
+ *
+ * The cache can be safely shared between concurrent JBang processes, updates
+ * are done under a file lock and never overwrite entries added by others.
+ */
 public class DependencyCache {
-	private static Map<String, List<ArtifactInfo>> depCache = null;
+	private static volatile Map<String, List<ArtifactInfo>> depCache = null;
 
 	private static Map<String, List<ArtifactInfo>> getCache() {
-		if (depCache == null) {
-			// Use cached classpath from previous run if present if
-			if (Files.isRegularFile(Settings.getCacheDependencyFile())) {
-				try (Reader out = Files.newBufferedReader(Settings.getCacheDependencyFile())) {
-					JsonDeserializer<ArtifactInfo> serializer = (json, typeOfT, context) -> {
-						JsonObject jsonObject = json.getAsJsonObject();
-						MavenCoordinate gav = MavenCoordinate.fromCanonicalString(jsonObject.get("gav").getAsString());
-						Path file = Paths.get(jsonObject.get("file").getAsString());
-						long ts = jsonObject.has("ts") ? jsonObject.get("ts").getAsLong() : 0;
-						return new ArtifactInfo(gav, file, ts);
-					};
-					Gson parser = new GsonBuilder()
-						.setPrettyPrinting()
-						.registerTypeAdapter(ArtifactInfo.class, serializer)
-						.create();
-
-					Type empMapType = new TypeToken<Map<String, List<ArtifactInfo>>>() {
-					}.getType();
-					Map<String, List<ArtifactInfo>> parsed = parser.fromJson(out, empMapType);
-					if (parsed == null) {
-						Util.warnMsg("Dependency cache file was empty or invalid: "
-								+ Settings.getCacheDependencyFile());
-					}
-					depCache = parsed != null ? parsed : new HashMap<>();
-				} catch (IOException e) {
-					Util.errorMsg("Issue writing to dependency cache", e);
-					depCache = new HashMap<>();
+		Map<String, List<ArtifactInfo>> cache = depCache;
+		if (cache == null) {
+			synchronized (DependencyCache.class) {
+				if (depCache == null) {
+					migrateLegacyCache();
+					depCache = new ConcurrentHashMap<>();
 				}
-			} else {
-				depCache = new HashMap<>();
+				cache = depCache;
 			}
 		}
-		return depCache;
+		return cache;
 	}
 
-	public static void cache(String depsHash, List<ArtifactInfo> artifacts) {
-		// Add classpath to cache
+	private static DependencyCacheFile getCacheFile() {
+		return new DependencyCacheFile(Settings.getCacheDependencyFile());
+	}
 
-		Map<String, List<ArtifactInfo>> cache = getCache();
-		cache.put(depsHash, artifacts);
+	/**
+	 * Moves the entries of the JSON dependency cache used by previous versions of
+	 * JBang to the binary cache file.
+	 */
+	private static void migrateLegacyCache() {
+		Path legacyFile = Settings.getLegacyCacheDependencyFile();
+		if (!Files.isRegularFile(legacyFile)) {
+			return;
+		}
+		DependencyCacheFile cacheFile = getCacheFile();
+		try {
+			cacheFile.withWriteLock(() -> {
+				// Another process might have beaten us to it
+				if (Files.isRegularFile(legacyFile)) {
+					Map<String, List<ArtifactInfo>> legacy = readLegacyCache(legacyFile);
+					if (legacy != null) {
+						Util.verboseMsg("Migrating dependency cache " + legacyFile);
+						cacheFile.merge(legacy);
+					}
+					Files.deleteIfExists(legacyFile);
+				}
+				return null;
+			});
+		} catch (IOException | JsonParseException e) {
+			Util.verboseMsg("Unable to migrate dependency cache " + legacyFile, e);
+		}
+	}
 
-		Path cacheFile = Settings.getCacheDependencyFile();
-		Path cacheDir = cacheFile.getParent();
+	private static Map<String, List<ArtifactInfo>> readLegacyCache(Path legacyFile) throws IOException {
+		try (Reader out = Files.newBufferedReader(legacyFile)) {
+			JsonDeserializer<ArtifactInfo> serializer = (json, typeOfT, context) -> {
+				JsonObject jsonObject = json.getAsJsonObject();
+				MavenCoordinate gav = MavenCoordinate.fromCanonicalString(jsonObject.get("gav").getAsString());
+				Path file = Paths.get(jsonObject.get("file").getAsString());
+				long ts = jsonObject.has("ts") ? jsonObject.get("ts").getAsLong() : 0;
+				return new ArtifactInfo(gav, file, ts);
+			};
+			Gson parser = new GsonBuilder()
+				.registerTypeAdapter(ArtifactInfo.class, serializer)
+				.create();
+
+			Type empMapType = new TypeToken<Map<String, List<ArtifactInfo>>>() {
+			}.getType();
+			return parser.fromJson(out, empMapType);
+		}
+	}
 
+	/**
+	 * Runs the given action while holding a lock for the given hash, which makes
+	 * sure that other threads and JBang processes won't be resolving the same
+	 * dependencies at the same time. If the lock can't be obtained the action is
+	 * run anyway.
+	 */
+	public static <T> T withLock(String depsHash, Supplier<T> action) {
+		AtomicBoolean ran = new AtomicBoolean();
+		AtomicReference<T> result = new AtomicReference<>();
 		try {
-			if (cacheDir != null) {
-				Files.createDirectories(cacheDir);
-			}
-
-			Path tmpFile = Files.createTempFile(
-					cacheDir != null ? cacheDir : cacheFile.toAbsolutePath().getParent(),
-					cacheFile.getFileName().toString(),
-					".tmp");
-
-			try (Writer out = Files.newBufferedWriter(tmpFile)) {
-				JsonSerializer<ArtifactInfo> serializer = (src, typeOfSrc, context) -> {
-					JsonObject json = new JsonObject();
-					json.addProperty("gav", src.getCoordinate().toCanonicalForm());
-					json.addProperty("file", src.getFile().toString());
-					json.addProperty("ts", src.getTimestamp());
-					return json;
-				};
-				Gson parser = new GsonBuilder()
-					.setPrettyPrinting()
-					.registerTypeAdapter(ArtifactInfo.class, serializer)
-					.create();
-
-				parser.toJson(cache, out);
+			getCacheFile().withKeyLock(depsHash, () -> {
+				ran.set(true);
+				result.set(action.get());
+				return null;
+			});
+		} catch (IOException e) {
+			if (!ran.get()) {
+				Util.verboseMsg("Unable to lock dependency cache", e);
+				result.set(action.get());
 			}
+		}
+		return result.get();
+	}
 
-			try {
-				Files.move(tmpFile, cacheFile,
-						StandardCopyOption.ATOMIC_MOVE,
-						StandardCopyOption.REPLACE_EXISTING);
-			} catch (IOException e) {
-				// Fallback when atomic move not supported (e.g. across filesystems/drives)
-				Files.move(tmpFile, cacheFile, StandardCopyOption.REPLACE_EXISTING);
-			}
+	public static void cache(String depsHash, List<ArtifactInfo> artifacts) {
+		// Add classpath to cache
+		getCache().put(depsHash, artifacts);
+		try {
+			getCacheFile().put(depsHash, artifacts);
 		} catch (IOException e) {
 			Util.errorMsg("Issue writing to dependency cache", e);
 		}
 	}
 
-	public static List<ArtifactInfo> findDependenciesByHash(String depsHash) {
+	private static List<ArtifactInfo> lookup(String depsHash) {
 		Map<String, List<ArtifactInfo>> cache = getCache();
-		if (cache.containsKey(depsHash)) {
+		List<ArtifactInfo> artifacts = cache.get(depsHash);
+		if (artifacts != null) {
+			return artifacts;
+		}
+		try {
+			artifacts = getCacheFile().get(depsHash);
+		} catch (IOException e) {
+			Util.verboseMsg("Issue reading from dependency cache", e);
+		}
+		if (artifacts != null) {
+			cache.put(depsHash, artifacts);
+		}
+		return artifacts;
+	}
+
+	public static List<ArtifactInfo> findDependenciesByHash(String depsHash) {
+		List<ArtifactInfo> cachedCP = lookup(depsHash);
+		if (cachedCP != null) {
 			// Make sure that local dependencies have not been wiped since resolving them
 			// (like by deleting .m2) and are up-to-date
-			List<ArtifactInfo> cachedCP = cache.get(depsHash);
-			boolean allValid = cachedCP.stream().allMatch(ArtifactInfo::isUpToDate);
+			boolean allValid = ArtifactInfo.allUpToDate(cachedCP);
 			if (allValid) {
 				return cachedCP;
 			} else {
@@ -138,8 +180,9 @@ public class DependencyCache {
 		return null;
 	}
 
-	public static void clear() {
+	public static synchronized void clear() {
 		depCache = null;
+		ArtifactInfo.clearFileStates();
 	}
 
 }
@@ -0,0 +1,438 @@
+package dev.jbang.dependencies;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+import dev.jbang.util.Util;
+
+/**
+ * Binary, hash-indexed storage for the dependency cache. Instead of having to
+ * parse (and rewrite) the entire cache for each lookup (and update) this file
+ * format allows single entries to be looked up and added.
+ *
+ * The file starts with a fixed size header followed by a table of buckets.
+ * Each bucket holds the offset of the most recently written record whose key
+ * hashes to that bucket, each record holds the offset of the previous record in
+ * the same bucket. Records are only ever appended, updating a key simply
+ * writes a new record that shadows the old one. Lookups follow the chain of
+ * the key's bucket and only read the records in that chain.
+ *
+ * <pre>
+ * header : int magic, int version, int bucketCount, int compactedSize (KB)
+ * buckets: long[bucketCount] offset of first record in chain (0 = empty)
+ * record : long next, int keyHash, int length, int crc, byte[length] body
+ * body   : str key, int count, (str gav, str file, long timestamp)[count]
+ * str    : int length, byte[length] UTF-8
+ * </pre>
+ *
+ * Writers take an exclusive lock on a separate lock file and only then open
+ * the cache file, so multiple threads and processes can add entries at the
+ * same time without losing any. Readers don't lock, a record only becomes
+ * visible once its bucket gets updated, which happens after the record has
+ * been written completely. Records that fail validation are treated as
+ * missing. Once the file has grown to twice the size it had after the last
+ * compaction the live records get copied to a new file that atomically
+ * replaces the old one, readers that still have the old file open simply keep
+ * reading from it.
+ *
+ * The same lock file also provides striped per-key locks that callers can use
+ * to make sure that the same entry doesn't get computed by several threads or
+ * processes at the same time.
+ */
+class DependencyCacheFile {
+	static final int MAGIC = 0x4A424443; // "JBDC"
+	static final int VERSION = 1;
+	static final int BUCKET_COUNT = 4096;
+	static final int HEADER_SIZE = 16;
+	static final int RECORD_HEADER_SIZE = 20;
+
+	static final int KEY_STRIPES = 256;
+	static final long DEFAULT_MIN_COMPACT_SIZE = 1024 * 1024;
+
+	// Protects against cycles in corrupted files
+	private static final int MAX_CHAIN_LENGTH = 10000;
+
+	// File locks are held per JVM, so threads need to coordinate among themselves
+	private static final Map<String, ReentrantLock> jvmLocks = new ConcurrentHashMap<>();
+
+	private final Path file;
+	private final Path lockFile;
+	private final long minCompactSize;
+
+	interface LockedAction<T> {
+		T run() throws IOException;
+	}
+
+	DependencyCacheFile(Path file) {
+		this(file, DEFAULT_MIN_COMPACT_SIZE);
+	}
+
+	DependencyCacheFile(Path file, long minCompactSize) {
+		this.file = file;
+		this.lockFile = file.resolveSibling(file.getFileName() + ".lock");
+		this.minCompactSize = minCompactSize;
+	}
+
+	Path getFile() {
+		return file;
+	}
+
+	/**
+	 * Returns the artifacts stored under the given key or <code>null</code> if
+	 * there's no (valid) entry for it.
+	 */
+	List<ArtifactInfo> get(String key) throws IOException {
+		if (!Files.isRegularFile(file)) {
+			return null;
+		}
+		try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+			return find(ch, key);
+		}
+	}
+
+	/**
+	 * Stores the given artifacts under the given key, replacing any previous entry.
+	 */
+	void put(String key, List<ArtifactInfo> artifacts) throws IOException {
+		putAll(Collections.singletonMap(key, artifacts));
+	}
+
+	/**
+	 * Stores all the given entries while holding the file lock just once.
+	 */
+	void putAll(Map<String, List<ArtifactInfo>> entries) throws IOException {
+		withWriteLock(() -> {
+			writeEntries(entries, false);
+			return null;
+		});
+	}
+
+	/**
+	 * Stores the given entries, but only those whose keys aren't in the cache yet.
+	 */
+	void merge(Map<String, List<ArtifactInfo>> entries) throws IOException {
+		withWriteLock(() -> {
+			writeEntries(entries, true);
+			return null;
+		});
+	}
+
+	/**
+	 * Runs the given action while holding the exclusive write lock for this
+	 * cache. Calls to <code>put()</code> and <code>merge()</code> are allowed
+	 * from within the action.
+	 */
+	<T> T withWriteLock(LockedAction<T> action) throws IOException {
+		return withLock(0, action);
+	}
+
+	/**
+	 * Runs the given action while holding the lock for the given key. Other
+	 * threads and processes that use the same key (or a key that happens to map
+	 * to the same stripe) will wait for the action to complete.
+	 */
+	<T> T withKeyLock(String key, LockedAction<T> action) throws IOException {
+		return withLock(1 + (key.hashCode() & 0x7fffffff) % KEY_STRIPES, action);
+	}
+
+	private <T> T withLock(int region, LockedAction<T> action) throws IOException {
+		ReentrantLock jvmLock = jvmLocks.computeIfAbsent(lockFile.toAbsolutePath() + "#" + region,
+				k -> new ReentrantLock());
+		jvmLock.lock();
+		try {
+			if (jvmLock.getHoldCount() > 1) {
+				// We already hold the file lock
+				return action.run();
+			}
+			if (lockFile.getParent() != null) {
+				Files.createDirectories(lockFile.getParent());
+			}
+			try (FileChannel ch = FileChannel.open(lockFile, StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+					FileLock ignored = ch.lock(region, 1, false)) {
+				return action.run();
+			}
+		} finally {
+			jvmLock.unlock();
+		}
+	}
+
+	private void writeEntries(Map<String, List<ArtifactInfo>> entries, boolean onlyNew) throws IOException {
+		boolean compact;
+		try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+				StandardOpenOption.CREATE)) {
+			if (!hasValidHeader(ch)) {
+				initialize(ch);
+			}
+			for (Map.Entry<String, List<ArtifactInfo>> e : entries.entrySet()) {
+				if (!onlyNew || find(ch, e.getKey()) == null) {
+					append(ch, e.getKey(), e.getValue());
+				}
+			}
+			compact = ch.size() > Math.max(minCompactSize, 2 * 1024L * readCompactedSize(ch));
+		}
+		if (compact) {
+			compact();
+		}
+	}
+
+	/**
+	 * Copies all live records to a new file which then replaces the current one.
+	 * Must be called while holding the write lock.
+	 */
+	private void compact() throws IOException {
+		Path tmpFile = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+		try {
+			int count = 0;
+			try (FileChannel src = FileChannel.open(file, StandardOpenOption.READ);
+					FileChannel dest = FileChannel.open(tmpFile, StandardOpenOption.READ,
+							StandardOpenOption.WRITE)) {
+				initialize(dest);
+				for (int b = 0; b < BUCKET_COUNT; b++) {
+					Map<String, List<ArtifactInfo>> live = readChain(src, readLong(src, HEADER_SIZE + b * 8L));
+					// Append oldest first to keep the chain order the same
+					List<String> keys = new ArrayList<>(live.keySet());
+					Collections.reverse(keys);
+					for (String key : keys) {
+						append(dest, key, live.get(key));
+						count++;
+					}
+				}
+				writeCompactedSize(dest, dest.size());
+			}
+			try {
+				Files.move(tmpFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+				Util.verboseMsg("Compacted dependency cache, " + count + " entries");
+			} catch (IOException e) {
+				// Can happen on Windows when another process has the file open
+				Util.verboseMsg("Unable to compact dependency cache", e);
+				// Don't try again until the file has doubled in size again
+				try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+					writeCompactedSize(ch, ch.size());
+				}
+			}
+		} finally {
+			Files.deleteIfExists(tmpFile);
+		}
+	}
+
+	/**
+	 * Returns the live (ie not shadowed) entries of the chain starting at the
+	 * given offset, newest first
+	 */
+	private static Map<String, List<ArtifactInfo>> readChain(FileChannel ch, long offset) throws IOException {
+		Map<String, List<ArtifactInfo>> entries = new LinkedHashMap<>();
+		long size = ch.size();
+		ByteBuffer hdr = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+		for (int i = 0; offset != 0 && i < MAX_CHAIN_LENGTH; i++) {
+			if (offset < dataStart() || offset + RECORD_HEADER_SIZE > size) {
+				break;
+			}
+			hdr.clear();
+			readFully(ch, hdr, offset);
+			hdr.flip();
+			long next = hdr.getLong();
+			hdr.getInt();
+			int length = hdr.getInt();
+			int crc = hdr.getInt();
+			if (length < 0 || offset + RECORD_HEADER_SIZE + length > size) {
+				break;
+			}
+			ByteBuffer body = ByteBuffer.allocate(length);
+			readFully(ch, body, offset + RECORD_HEADER_SIZE);
+			if (crc(body.array()) == crc) {
+				body.flip();
+				String key = readString(body);
+				if (!entries.containsKey(key)) {
+					entries.put(key, readArtifacts(body));
+				}
+			}
+			offset = next;
+		}
+		return entries;
+	}
+
+	private static List<ArtifactInfo> find(FileChannel ch, String key) throws IOException {
+		if (!hasValidHeader(ch)) {
+			return null;
+		}
+		long size = ch.size();
+		int hash = key.hashCode();
+		long offset = readLong(ch, bucketPosition(hash));
+		ByteBuffer hdr = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+		for (int i = 0; offset != 0 && i < MAX_CHAIN_LENGTH; i++) {
+			if (offset < dataStart() || offset + RECORD_HEADER_SIZE > size) {
+				return null;
+			}
+			hdr.clear();
+			readFully(ch, hdr, offset);
+			hdr.flip();
+			long next = hdr.getLong();
+			int keyHash = hdr.getInt();
+			int length = hdr.getInt();
+			int crc = hdr.getInt();
+			if (keyHash == hash) {
+				if (length < 0 || offset + RECORD_HEADER_SIZE + length > size) {
+					return null;
+				}
+				ByteBuffer body = ByteBuffer.allocate(length);
+				readFully(ch, body, offset + RECORD_HEADER_SIZE);
+				if (crc(body.array()) == crc) {
+					body.flip();
+					if (key.equals(readString(body))) {
+						return readArtifacts(body);
+					}
+				}
+			}
+			offset = next;
+		}
+		return null;
+	}
+
+	private static void append(FileChannel ch, String key, List<ArtifactInfo> artifacts) throws IOException {
+		int hash = key.hashCode();
+		long bucket = bucketPosition(hash);
+		byte[] body = encode(key, artifacts);
+		ByteBuffer buf = ByteBuffer.allocate(RECORD_HEADER_SIZE + body.length);
+		buf.putLong(readLong(ch, bucket));
+		buf.putInt(hash);
+		buf.putInt(body.length);
+		buf.putInt(crc(body));
+		buf.put(body);
+		buf.flip();
+		long offset = ch.size();
+		writeFully(ch, buf, offset);
+		// Only now that the record is complete do we make it reachable
+		ByteBuffer ptr = ByteBuffer.allocate(8);
+		ptr.putLong(offset);
+		ptr.flip();
+		writeFully(ch, ptr, bucket);
+	}
+
+	private static boolean hasValidHeader(FileChannel ch) throws IOException {
+		if (ch.size() < dataStart()) {
+			return false;
+		}
+		ByteBuffer buf = ByteBuffer.allocate(HEADER_SIZE);
+		readFully(ch, buf, 0);
+		buf.flip();
+		return buf.getInt() == MAGIC && buf.getInt() == VERSION && buf.getInt() == BUCKET_COUNT;
+	}
+
+	private static void initialize(FileChannel ch) throws IOException {
+		ch.truncate(0);
+		ByteBuffer buf = ByteBuffer.allocate((int) dataStart());
+		buf.putInt(MAGIC);
+		buf.putInt(VERSION);
+		buf.putInt(BUCKET_COUNT);
+		buf.putInt((int) (dataStart() / 1024));
+		buf.position(buf.capacity());
+		buf.flip();
+		writeFully(ch, buf, 0);
+	}
+
+	private static long readCompactedSize(FileChannel ch) throws IOException {
+		ByteBuffer buf = ByteBuffer.allocate(4);
+		readFully(ch, buf, 12);
+		buf.flip();
+		return buf.getInt();
+	}
+
+	private static void writeCompactedSize(FileChannel ch, long size) throws IOException {
+		ByteBuffer buf = ByteBuffer.allocate(4);
+		buf.putInt((int) Math.min(Integer.MAX_VALUE, size / 1024));
+		buf.flip();
+		writeFully(ch, buf, 12);
+	}
+
+	private static long dataStart() {
+		return HEADER_SIZE + BUCKET_COUNT * 8L;
+	}
+
+	private static long bucketPosition(int hash) {
+		return HEADER_SIZE + ((hash & 0x7fffffff) % BUCKET_COUNT) * 8L;
+	}
+
+	private static byte[] encode(String key, List<ArtifactInfo> artifacts) throws IOException {
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		try (DataOutputStream out = new DataOutputStream(bos)) {
+			writeString(out, key);
+			out.writeInt(artifacts.size());
+			for (ArtifactInfo ai : artifacts) {
+				writeString(out, ai.getCoordinate().toCanonicalForm());
+				writeString(out, ai.getFile().toString());
+				out.writeLong(ai.getTimestamp());
+			}
+		}
+		return bos.toByteArray();
+	}
+
+	private static List<ArtifactInfo> readArtifacts(ByteBuffer body) {
+		int count = body.getInt();
+		List<ArtifactInfo> artifacts = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			MavenCoordinate gav = MavenCoordinate.fromCanonicalString(readString(body));
+			Path path = Paths.get(readString(body));
+			long ts = body.getLong();
+			artifacts.add(new ArtifactInfo(gav, path, ts));
+		}
+		return artifacts;
+	}
+
+	private static void writeString(DataOutputStream out, String str) throws IOException {
+		byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(ByteBuffer buf) {
+		byte[] bytes = new byte[buf.getInt()];
+		buf.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static int crc(byte[] bytes) {
+		CRC32 crc = new CRC32();
+		crc.update(bytes, 0, bytes.length);
+		return (int) crc.getValue();
+	}
+
+	private static long readLong(FileChannel ch, long position) throws IOException {
+		ByteBuffer buf = ByteBuffer.allocate(8);
+		readFully(ch, buf, position);
+		buf.flip();
+		return buf.getLong();
+	}
+
+	private static void readFully(FileChannel ch, ByteBuffer buf, long position) throws IOException {
+		while (buf.hasRemaining()) {
+			int n = ch.read(buf, position + buf.position());
+			if (n < 0) {
+				throw new IOException("Unexpected end of dependency cache file");
+			}
+		}
+	}
+
+	private static void writeFully(FileChannel ch, ByteBuffer buf, long position) throws IOException {
+		while (buf.hasRemaining()) {
+			ch.write(buf, position + buf.position());
+		}
+	}
+}
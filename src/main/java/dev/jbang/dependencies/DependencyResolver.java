@@ -63,10 +63,35 @@ public class DependencyResolver {
 	}
 
 	public ModularClassPath resolve() {
-		ModularClassPath mcp = DependencyUtil.resolveDependencies(
-				new ArrayList<>(dependencies), new ArrayList<>(repositories),
+		return resolveAll(Collections.singletonList(this)).get(0);
+	}
+
+	/**
+	 * Resolves the dependencies of all the given resolvers in one go. This way the
+	 * resolution of a project and its sub-projects shares a single resolver
+	 * session, while each of them still only uses its own repositories.
+	 *
+	 * @return The class paths for each of the resolvers, in the same order
+	 */
+	public static List<ModularClassPath> resolveAll(List<DependencyResolver> resolvers) {
+		List<List<String>> depsList = resolvers.stream()
+			.map(r -> (List<String>) new ArrayList<>(r.dependencies))
+			.collect(Collectors.toList());
+		List<List<MavenRepo>> reposList = resolvers.stream()
+			.map(r -> (List<MavenRepo>) new ArrayList<>(r.repositories))
+			.collect(Collectors.toList());
+		List<ModularClassPath> mcps = DependencyUtil.resolveAllDependencies(
+				depsList, reposList,
 				Util.isOffline(), Util.isIgnoreTransitiveRepositories(), Util.isFresh(), !Util.isQuiet(),
 				Util.downloadSources());
+		List<ModularClassPath> result = new ArrayList<>(resolvers.size());
+		for (int i = 0; i < resolvers.size(); i++) {
+			result.add(resolvers.get(i).withClassPaths(mcps.get(i)));
+		}
+		return result;
+	}
+
+	private ModularClassPath withClassPaths(ModularClassPath mcp) {
 		if (classPaths.isEmpty()) {
 			return mcp;
 		} else {
@@ -7,6 +7,7 @@ import static dev.jbang.util.Util.infoMsg;
 import static dev.jbang.util.Util.isWindows;
 import static dev.jbang.util.Util.verboseMsg;
 
+import java.io.Closeable;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
@@ -20,6 +21,7 @@ import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 import dev.jbang.ExitException;
+import dev.jbang.util.Timings;
 
 public class DependencyUtil {
 
@@ -61,51 +63,64 @@ public class DependencyUtil {
 	public static ModularClassPath resolveDependencies(List<String> deps, List<MavenRepo> repos,
 			boolean offline, boolean ignoreTransitiveRepositories, boolean updateCache, boolean loggingEnabled,
 			boolean downloadSources) {
+		return resolveAllDependencies(Collections.singletonList(deps), Collections.singletonList(repos), offline,
+				ignoreTransitiveRepositories,
+				updateCache, loggingEnabled, downloadSources)
+			.get(0);
+	}
+
+	/**
+	 * Resolves several sets of dependencies in one go, for example those of a
+	 * project and its sub-projects. The sets that can't be found in the cache all
+	 * get resolved using the same resolver session, so the artifacts and
+	 * descriptors they have in common are only looked up once. Each set is
+	 * resolved using only its own repositories, found at the same index in the
+	 * list of repositories.
+	 *
+	 * @return The class paths for each of the sets, in the same order
+	 */
+	public static List<ModularClassPath> resolveAllDependencies(List<List<String>> depsList,
+			List<List<MavenRepo>> reposList, boolean offline, boolean ignoreTransitiveRepositories, boolean updateCache,
+			boolean loggingEnabled, boolean downloadSources) {
 
 		// if no dependencies were provided we stop here
-		if (deps.isEmpty()) {
-			return new ModularClassPath(Collections.emptyList());
+		if (depsList.stream().allMatch(List::isEmpty)) {
+			return depsList.stream()
+				.map(deps -> new ModularClassPath(Collections.emptyList()))
+				.collect(Collectors.toList());
 		}
 
-		verboseMsg(String.format("Resolving artifact(s): %s", String.join(", ", deps)));
-
-		if (repos.isEmpty()) {
-			repos = new ArrayList<>();
-			repos.add(toMavenRepo("central"));
+		for (List<String> deps : depsList) {
+			if (!deps.isEmpty()) {
+				verboseMsg(String.format("Resolving artifact(s): %s", String.join(", ", deps)));
+			}
 		}
 
 		// Turn any URL dependencies into regular GAV coordinates
-		List<String> depIds = deps
-			.stream()
-			.map(JitPackUtil::ensureGAV)
+		List<List<String>> depIdsList = depsList.stream()
+			.map(deps -> deps.stream().map(JitPackUtil::ensureGAV).collect(Collectors.toList()))
 			.collect(Collectors.toList());
-		// And if we encountered URLs let's make sure the JitPack repo is available
-		if (!depIds.equals(deps) && repos.stream().noneMatch(r -> REPO_JITPACK.equals(r.getUrl()))) {
-			repos.add(toMavenRepo(ALIAS_JITPACK));
-		}
 
-		verboseMsg(String.format("Repositories: %s",
-				repos.stream().map(MavenRepo::toString).collect(Collectors.joining(", "))));
-
-		String depsHash = String.join(CP_SEPARATOR, depIds);
-
-		List<ArtifactInfo> cachedDeps = null;
-		if (!updateCache) {
-			cachedDeps = DependencyCache.findDependenciesByHash(depsHash);
-			if (cachedDeps != null) {
-				ModularClassPath mcp = new ModularClassPath(cachedDeps);
-				verboseMsg(String.format("Resolved artifact(s) from cache: %s", mcp));
-				return mcp;
+		List<List<MavenRepo>> allRepos = new ArrayList<>(depsList.size());
+		for (int i = 0; i < depsList.size(); i++) {
+			List<MavenRepo> repos = new ArrayList<>(reposList.get(i));
+			if (repos.isEmpty()) {
+				repos.add(toMavenRepo("central"));
 			}
+			// And if we encountered URLs let's make sure the JitPack repo is available
+			if (!depIdsList.get(i).equals(depsList.get(i))
+					&& repos.stream().noneMatch(r -> REPO_JITPACK.equals(r.getUrl()))) {
+				repos.add(toMavenRepo(ALIAS_JITPACK));
+			}
+			if (!depsList.get(i).isEmpty()) {
+				verboseMsg(String.format("Repositories: %s",
+						repos.stream().map(MavenRepo::toString).collect(Collectors.joining(", "))));
+			}
+			allRepos.add(repos);
 		}
 
-		if (loggingEnabled) {
-			infoMsg("Resolving dependencies...");
-		}
-
-		try (ArtifactResolver resolver = ArtifactResolver.Builder
+		ArtifactResolver.Builder builder = ArtifactResolver.Builder
 			.create()
-			.repositories(repos)
 			.withUserSettings(true)
 			.localFolder(getJBangLocalMavenRepoOverride())
 			.offline(offline)
@@ -113,9 +128,62 @@ public class DependencyUtil {
 					ignoreTransitiveRepositories)
 			.forceCacheUpdate(updateCache)
 			.logging(loggingEnabled)
-			.downloadSources(downloadSources)
-			.build()) {
-			List<ArtifactInfo> artifacts = resolver.resolve(depIds);
+			.downloadSources(downloadSources);
+
+		try (SharedResolver resolver = new SharedResolver(builder)) {
+			Map<String, ModularClassPath> resolved = new HashMap<>();
+			List<ModularClassPath> result = new ArrayList<>(depIdsList.size());
+			for (int i = 0; i < depIdsList.size(); i++) {
+				List<String> depIds = depIdsList.get(i);
+				List<MavenRepo> repos = allRepos.get(i);
+				if (depIds.isEmpty()) {
+					result.add(new ModularClassPath(Collections.emptyList()));
+					continue;
+				}
+				String depsHash = String.join(CP_SEPARATOR, depIds);
+				String resolvedKey = depsHash + repos;
+				ModularClassPath mcp = resolved.get(resolvedKey);
+				if (mcp == null) {
+					// Make sure the same dependencies don't get resolved concurrently, once
+					// we get the lock the cache will contain the result of whoever held it
+					mcp = DependencyCache.withLock(depsHash,
+							() -> resolveDependencies(depIds, repos, depsHash, resolver, updateCache,
+									loggingEnabled));
+					resolved.put(resolvedKey, mcp);
+				}
+				result.add(mcp);
+			}
+			return result;
+		}
+	}
+
+	private static ModularClassPath resolveDependencies(List<String> depIds, List<MavenRepo> repos,
+			String depsHash, SharedResolver resolver, boolean updateCache, boolean loggingEnabled) {
+		try (Timings.Span span = Timings.start("dependencies")) {
+			List<ArtifactInfo> cachedDeps = null;
+			if (!updateCache) {
+				cachedDeps = DependencyCache.findDependenciesByHash(depsHash);
+				if (cachedDeps != null) {
+					span.detail("cache hit, " + depIds.size() + " deps");
+					ModularClassPath mcp = new ModularClassPath(cachedDeps);
+					verboseMsg(String.format("Resolved artifact(s) from cache: %s", mcp));
+					return mcp;
+				}
+			}
+			span.detail("cache miss, " + depIds.size() + " deps");
+			return resolveUncached(depIds, repos, depsHash, resolver, loggingEnabled);
+		}
+	}
+
+	private static ModularClassPath resolveUncached(List<String> depIds, List<MavenRepo> repos,
+			String depsHash, SharedResolver resolver, boolean loggingEnabled) {
+
+		if (loggingEnabled) {
+			infoMsg("Resolving dependencies...");
+		}
+
+		try {
+			List<ArtifactInfo> artifacts = resolver.get().resolve(depIds, repos);
 
 			ModularClassPath mcp = new ModularClassPath(artifacts);
 
@@ -138,6 +206,33 @@ public class DependencyUtil {
 		}
 	}
 
+	/**
+	 * Creates the <code>ArtifactResolver</code> the first time it's needed, so
+	 * nothing gets set up when all dependencies can be found in the cache.
+	 */
+	private static class SharedResolver implements Closeable {
+		private final ArtifactResolver.Builder builder;
+		private ArtifactResolver resolver;
+
+		SharedResolver(ArtifactResolver.Builder builder) {
+			this.builder = builder;
+		}
+
+		ArtifactResolver get() {
+			if (resolver == null) {
+				resolver = builder.build();
+			}
+			return resolver;
+		}
+
+		@Override
+		public void close() {
+			if (resolver != null) {
+				resolver.close();
+			}
+		}
+	}
+
 	public static String decodeEnv(String value) {
 		if (value.startsWith("{{") && value.endsWith("}}")) {
 			String envKey = value.substring(2, value.length() - 2);
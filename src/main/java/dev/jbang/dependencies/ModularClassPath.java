@@ -153,7 +153,7 @@ public class ModularClassPath {
 	 * Determines if all artifacts actually exist and are up-to-date
 	 */
 	public boolean isValid() {
-		return artifacts.stream().allMatch(ArtifactInfo::isUpToDate);
+		return ArtifactInfo.allUpToDate(artifacts);
 	}
 
 	@Override
@@ -11,7 +11,6 @@ import java.util.regex.Pattern;
 import dev.jbang.Cache;
 import dev.jbang.ExitException;
 import dev.jbang.Settings;
-import dev.jbang.util.NetUtil;
 import dev.jbang.util.UnpackUtil;
 import dev.jbang.util.Util;
 
@@ -44,10 +43,9 @@ public class GroovyManager {
 		Util.deletePath(groovyTmpDir, false);
 		Util.deletePath(groovyOldDir, false);
 		try {
-			Path groovyPkg = NetUtil.downloadAndCacheFile(url);
 			Util.infoMsg("Installing Groovy " + version + "...");
 			Util.verboseMsg("Unpacking to " + groovyDir);
-			UnpackUtil.unpack(groovyPkg, groovyTmpDir);
+			UnpackUtil.downloadAndUnpack(url, groovyTmpDir);
 			if (Files.isDirectory(groovyDir)) {
 				Files.move(groovyDir, groovyOldDir);
 			}
@@ -9,7 +9,6 @@ import java.nio.file.Path;
 import dev.jbang.Cache;
 import dev.jbang.ExitException;
 import dev.jbang.Settings;
-import dev.jbang.util.NetUtil;
 import dev.jbang.util.UnpackUtil;
 import dev.jbang.util.Util;
 
@@ -45,10 +44,9 @@ public class KotlinManager {
 		Util.deletePath(kotlinTmpDir, false);
 		Util.deletePath(kotlinOldDir, false);
 		try {
-			Path kotlinPkg = NetUtil.downloadAndCacheFile(url);
 			Util.infoMsg("Installing Kotlin " + version + "...");
 			Util.verboseMsg("Unpacking to " + kotlinDir);
-			UnpackUtil.unpack(kotlinPkg, kotlinTmpDir);
+			UnpackUtil.downloadAndUnpack(url, kotlinTmpDir);
 			if (Files.isDirectory(kotlinDir)) {
 				Files.move(kotlinDir, kotlinOldDir);
 			}
@@ -7,6 +7,7 @@ import java.nio.file.Path;
 import dev.jbang.source.buildsteps.IntegrationBuildStep;
 import dev.jbang.source.buildsteps.JarBuildStep;
 import dev.jbang.source.buildsteps.NativeBuildStep;
+import dev.jbang.spi.IntegrationManager;
 import dev.jbang.spi.IntegrationResult;
 import dev.jbang.util.*;
 
@@ -83,6 +84,24 @@ public abstract class AppBuilder implements Builder<CmdGeneratorBuilder> {
 			Util.verboseMsg("Build required as " + outjar + " not readable or not found.");
 		}
 
+		BuildCache cache = buildRequired && !nativeBuildRequired ? BuildCache.get() : null;
+		if (cache != null && !project.disableIntegrations() && IntegrationManager.hasIntegrations(ctx)) {
+			// A cached jar can't restore what integrations return (like java
+			// options or a native image), so those projects always get built
+			Util.verboseMsg("Not using the build cache as the project has build integrations");
+			cache = null;
+		}
+		if (cache != null && !fresh && cache.fetch(ctx)) {
+			Project jarProject = Project.builder().build(outjar);
+			if (project.getMainClass() == null) {
+				project.setMainClass(jarProject.getMainClass());
+			}
+			if (!project.getModuleName().isPresent()) {
+				project.setModuleName(jarProject.getModuleName().orElse(null));
+			}
+			buildRequired = false;
+		}
+
 		if (buildRequired) {
 			// set up temporary folders for compilation
 			Path compileDir = ctx.getCompileDir();
@@ -93,12 +112,22 @@ public abstract class AppBuilder implements Builder<CmdGeneratorBuilder> {
 			generatedDir.toFile().mkdirs();
 
 			// do the actual building
+			String name = project.getResourceRef().getFile().getFileName().toString();
 			try {
-				getCompileBuildStep().build();
+				try (Timings.Span span = Timings.start("compile", name)) {
+					getCompileBuildStep().build();
+				}
 				if (!project.disableIntegrations()) {
-					integrationResult = getIntegrationBuildStep().build();
+					try (Timings.Span span = Timings.start("integrations", name)) {
+						integrationResult = getIntegrationBuildStep().build();
+					}
+				}
+				try (Timings.Span span = Timings.start("jar", name)) {
+					getJarBuildStep().build();
+				}
+				if (cache != null) {
+					cache.store(ctx);
 				}
-				getJarBuildStep().build();
 			} finally {
 				if (!keepClasses()) {
 					// clean up temporary folders
@@ -112,7 +141,9 @@ public abstract class AppBuilder implements Builder<CmdGeneratorBuilder> {
 			if (integrationResult.nativeImagePath != null) {
 				Files.move(integrationResult.nativeImagePath, ctx.getNativeImageFile());
 			} else {
-				getNativeBuildStep().build();
+				try (Timings.Span span = Timings.start("native", ctx.getNativeImageFile().getFileName().toString())) {
+					getNativeBuildStep().build();
+				}
 			}
 		}
 
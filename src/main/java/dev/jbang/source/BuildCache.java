@@ -0,0 +1,241 @@
+package dev.jbang.source;
+
+import static dev.jbang.ExitException.EXIT_GENERIC_ERROR;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.stream.Stream;
+
+import dev.jbang.ExitException;
+import dev.jbang.Settings;
+import dev.jbang.dependencies.ArtifactInfo;
+import dev.jbang.util.NetUtil;
+import dev.jbang.util.Util;
+
+/**
+ * A build cache that's shared between machines, for example between CI runners.
+ * Before a project gets compiled the cache is checked for a jar that was built
+ * from the exact same inputs and if found that jar is used instead. After a
+ * successful build the jar is pushed to the cache so others can use it.
+ *
+ * The cache is configured using the <code>build-cache</code> option, which can
+ * either be a folder (for example on a network share) or an HTTP(S) URL that
+ * supports GET and PUT requests. Pushing can be turned off by setting the
+ * <code>build-cache-push</code> option to <code>false</code>. Any problems
+ * talking to the cache are reported in verbose mode only, they never cause a
+ * build to fail.
+ */
+public class BuildCache {
+	private final Store store;
+	private final boolean push;
+
+	interface Store {
+		/**
+		 * Copies the entry with the given key to the target file
+		 *
+		 * @return <code>false</code> if the entry doesn't exist
+		 */
+		boolean get(String key, Path target) throws IOException;
+
+		void put(String key, Path source) throws IOException;
+	}
+
+	BuildCache(Store store, boolean push) {
+		this.store = store;
+		this.push = push;
+	}
+
+	/**
+	 * Returns the configured build cache or <code>null</code> if there is none
+	 */
+	public static BuildCache get() {
+		String location = Settings.getBuildCache();
+		if (location == null || location.trim().isEmpty()) {
+			return null;
+		}
+		return forLocation(location.trim(), Settings.isBuildCachePush());
+	}
+
+	static BuildCache forLocation(String location, boolean push) {
+		if (location.startsWith("http://") || location.startsWith("https://")) {
+			return new BuildCache(new HttpStore(location), push);
+		} else {
+			return new BuildCache(new DirectoryStore(Util.getCwd().resolve(location)), push);
+		}
+	}
+
+	/**
+	 * Tries to obtain the jar for the given context from the cache.
+	 *
+	 * @return <code>true</code> if the jar was found and copied into place
+	 */
+	public boolean fetch(BuildContext ctx) {
+		if (!isCacheable(ctx)) {
+			return false;
+		}
+		String key = getKey(ctx);
+		try {
+			Path jar = ctx.getJarFile();
+			Files.createDirectories(jar.getParent());
+			Path tmp = Files.createTempFile(jar.getParent(), "jbang-cache", ".jar");
+			try {
+				if (!store.get(key, tmp)) {
+					Util.verboseMsg("Build cache miss for " + key);
+					return false;
+				}
+				Files.move(tmp, jar, StandardCopyOption.REPLACE_EXISTING);
+			} finally {
+				Util.deletePath(tmp, true);
+			}
+			Util.verboseMsg("Using jar from build cache for " + key);
+			return true;
+		} catch (IOException e) {
+			Util.verboseMsg("Unable to fetch " + key + " from build cache", e);
+			return false;
+		}
+	}
+
+	/**
+	 * Pushes the jar that was just built for the given context to the cache
+	 */
+	public void store(BuildContext ctx) {
+		if (!push || !isCacheable(ctx) || !Files.isRegularFile(ctx.getJarFile())) {
+			return;
+		}
+		String key = getKey(ctx);
+		try {
+			store.put(key, ctx.getJarFile());
+			Util.verboseMsg("Pushed jar to build cache for " + key);
+		} catch (IOException e) {
+			Util.verboseMsg("Unable to push " + key + " to build cache", e);
+		}
+	}
+
+	private static boolean isCacheable(BuildContext ctx) {
+		Project prj = ctx.getProject();
+		return prj.getMainSource() != null && !prj.isJShell() && !prj.isExecutableArchive()
+				&& !prj.getResourceRef().isStdin() && ctx.getJarFile() != null;
+	}
+
+	/**
+	 * The build folder's name already identifies all the inputs of the build,
+	 * to that we add the Java version that will be used to compile it, the
+	 * artifacts on the resolved class path (their declared dependencies can
+	 * resolve differently on another machine) and the keys of any sub-projects it
+	 * will be compiled against
+	 */
+	static String getKey(BuildContext ctx) {
+		Project prj = ctx.getProject();
+		Stream<String> classPath = ctx.resolveClassPath().getArtifacts().stream().map(BuildCache::getArtifactKey);
+		Stream<String> subKeys = prj.getSubProjects().stream().map(p -> getKey(ctx.forSubProject(p)));
+		Stream<String> info = Stream.concat(
+				Stream.concat(
+						Stream.of(ctx.getBuildDir().getFileName().toString(),
+								Integer.toString(prj.projectJdk().majorVersion())),
+						classPath),
+				subKeys);
+		return prj.getResourceRef().getFile().getFileName() + "-" + Util.getStableID(info) + ".jar";
+	}
+
+	private static String getArtifactKey(ArtifactInfo art) {
+		String name = art.getCoordinate() != null ? art.getCoordinate().toCanonicalForm()
+				: art.getFile().getFileName().toString();
+		return name + "@" + checksum(art.getFile()) + "\n";
+	}
+
+	private static String checksum(Path file) {
+		if (!Files.isRegularFile(file)) {
+			// Folders and missing files can't be shared, use the name only
+			return file.getFileName().toString();
+		}
+		try (InputStream in = Files.newInputStream(file)) {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			byte[] buf = new byte[8192];
+			int n;
+			while ((n = in.read(buf)) != -1) {
+				digest.update(buf, 0, n);
+			}
+			StringBuilder sb = new StringBuilder();
+			for (byte b : digest.digest()) {
+				sb.append(String.format("%02x", b));
+			}
+			return sb.toString();
+		} catch (IOException | NoSuchAlgorithmException e) {
+			throw new ExitException(EXIT_GENERIC_ERROR, "Unable to compute checksum of " + file, e);
+		}
+	}
+
+	static class DirectoryStore implements Store {
+		private final Path dir;
+
+		DirectoryStore(Path dir) {
+			this.dir = dir;
+		}
+
+		@Override
+		public boolean get(String key, Path target) throws IOException {
+			Path file = dir.resolve(key);
+			if (!Files.isRegularFile(file)) {
+				return false;
+			}
+			Files.copy(file, target, StandardCopyOption.REPLACE_EXISTING);
+			return true;
+		}
+
+		@Override
+		public void put(String key, Path source) throws IOException {
+			Path file = dir.resolve(key);
+			if (Files.isRegularFile(file)) {
+				// The same key always has the same contents
+				return;
+			}
+			Files.createDirectories(dir);
+			// Copy under a temporary name first so nobody ever sees a partial file
+			Path tmp = Files.createTempFile(dir, key, ".tmp");
+			try {
+				Files.copy(source, tmp, StandardCopyOption.REPLACE_EXISTING);
+				Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE);
+			} finally {
+				Util.deletePath(tmp, true);
+			}
+		}
+	}
+
+	static class HttpStore implements Store {
+		private final String url;
+
+		HttpStore(String url) {
+			this.url = url.endsWith("/") ? url : url + "/";
+		}
+
+		@Override
+		public boolean get(String key, Path target) throws IOException {
+			if (Util.isOffline()) {
+				return false;
+			}
+			Path tmpDir = Files.createTempDirectory(target.getParent(), "jbang-cache");
+			try {
+				Path file = NetUtil.downloadFile(url + key, tmpDir);
+				Files.move(file, target, StandardCopyOption.REPLACE_EXISTING);
+				return true;
+			} catch (FileNotFoundException e) {
+				return false;
+			} finally {
+				Util.deletePath(tmpDir, true);
+			}
+		}
+
+		@Override
+		public void put(String key, Path source) throws IOException {
+			if (!Util.isOffline()) {
+				NetUtil.uploadFile(source, url + key);
+			}
+		}
+	}
+}
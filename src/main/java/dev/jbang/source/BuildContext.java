@@ -2,6 +2,14 @@ package dev.jbang.source;
 
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.jspecify.annotations.NonNull;
 
@@ -16,9 +24,48 @@ public class BuildContext {
 	private final Path buildDirOverride;
 	private final Path buildDir;
 
+	// Shared by the contexts of a project and all its sub-projects
+	private final ClassPaths classPaths;
+
 	// Cached values
 	private ModularClassPath mcp;
 
+	/**
+	 * Keeps the resolved class paths for all the projects that are part of the
+	 * same build, so their dependencies can all be resolved in one go.
+	 */
+	private static class ClassPaths {
+		private final BuildContext root;
+		private final Map<Project, ModularClassPath> resolved = new IdentityHashMap<>();
+
+		ClassPaths(BuildContext root) {
+			this.root = root;
+		}
+
+		synchronized ModularClassPath get(BuildContext ctx) {
+			ModularClassPath mcp = resolved.get(ctx.getProject());
+			if (mcp == null) {
+				// The first time around we resolve the entire build: the root project
+				// first, its dependencies are the union of all the others, followed by
+				// all its sub-projects, all using the same resolver session
+				List<BuildContext> ctxs = new ArrayList<>();
+				if (resolved.isEmpty()) {
+					root.collectContexts(ctxs, Collections.newSetFromMap(new IdentityHashMap<>()));
+				}
+				if (ctxs.stream().noneMatch(c -> c.getProject() == ctx.getProject())) {
+					ctxs.add(ctx);
+				}
+				List<ModularClassPath> mcps = DependencyResolver.resolveAll(
+						ctxs.stream().map(BuildContext::createDependencyResolver).collect(Collectors.toList()));
+				for (int i = 0; i < ctxs.size(); i++) {
+					resolved.putIfAbsent(ctxs.get(i).getProject(), mcps.get(i));
+				}
+				mcp = resolved.get(ctx.getProject());
+			}
+			return mcp;
+		}
+	}
+
 	public static BuildContext forProject(Project project) {
 		return forProject(project, null);
 	}
@@ -31,6 +78,13 @@ public class BuildContext {
 		}
 	}
 
+	/**
+	 * Returns the folder to build the project in. Its name is based on the name of
+	 * the resource and a hash of everything that determines the build output (the
+	 * contents of the sources and resources, the dependencies, the options and the
+	 * requested Java version), but not on its location. That way identical
+	 * projects that live in different folders share the same build.
+	 */
 	@NonNull
 	private static Path getBuildDir(Path baseDir, Project project) {
 		if (baseDir == null) {
@@ -44,10 +98,26 @@ public class BuildContext {
 		this.project = project;
 		this.buildDirOverride = buildDirOverride;
 		this.buildDir = buildDir;
+		this.classPaths = new ClassPaths(this);
+	}
+
+	private BuildContext(Project project, Path buildDirOverride, Path buildDir, ClassPaths classPaths) {
+		this.project = project;
+		this.buildDirOverride = buildDirOverride;
+		this.buildDir = buildDir;
+		this.classPaths = classPaths;
 	}
 
 	public BuildContext forSubProject(Project subProject) {
-		return forProject(subProject, getBuildDir(buildDirOverride, subProject));
+		if (buildDirOverride != null) {
+			// Sub-projects get built inside the explicitly requested build folder
+			Path dir = getBuildDir(buildDirOverride, subProject);
+			return new BuildContext(subProject, dir, dir, classPaths);
+		} else {
+			// While in the cache all projects end up next to each other, so a
+			// sub-project that's used by several projects only gets built once
+			return new BuildContext(subProject, null, getBuildDir(null, subProject), classPaths);
+		}
 	}
 
 	public Project getProject() {
@@ -71,6 +141,13 @@ public class BuildContext {
 		return getBasePath(".jsa");
 	}
 
+	public Path getAotFile() {
+		if (project.isJShell()) {
+			return null;
+		}
+		return getBasePath(".aot");
+	}
+
 	public Path getNativeImageFile() {
 		if (project.isJShell()) {
 			return null;
@@ -82,6 +159,11 @@ public class BuildContext {
 		}
 	}
 
+	@NonNull
+	public Path getBuildDir() {
+		return buildDir;
+	}
+
 	@NonNull
 	public Path getCompileDir() {
 		return buildDir.resolve("classes");
@@ -92,6 +174,24 @@ public class BuildContext {
 		return buildDir.resolve("generated");
 	}
 
+	/**
+	 * Returns the folder where the state for incremental compilation is kept.
+	 * Unlike the build folder, which changes whenever the project's sources
+	 * change, this folder is the same for every build of the same resource with
+	 * the same dependencies, options and Java version. Builds of the same file
+	 * with different options get their own state.
+	 */
+	@NonNull
+	public Path getIncrementalDir() {
+		if (buildDirOverride != null) {
+			return buildDir.resolve("incremental");
+		}
+		Path file = project.getResourceRef().getFile();
+		return Settings.getCacheDir(Cache.CacheClass.jars)
+			.resolve(file.getFileName() + ".incremental."
+					+ Util.getStableID(Stream.of(file.toAbsolutePath().toString(), project.getOptionsId())));
+	}
+
 	@NonNull
 	private Path getBasePath(String extension) {
 		return buildDir.resolve(
@@ -109,14 +209,27 @@ public class BuildContext {
 	@NonNull
 	public ModularClassPath resolveClassPath() {
 		if (mcp == null) {
-			DependencyResolver resolver = new DependencyResolver();
-			project.updateDependencyResolver(resolver);
+			mcp = classPaths.get(this);
+		}
+		return mcp;
+	}
+
+	private DependencyResolver createDependencyResolver() {
+		DependencyResolver resolver = new DependencyResolver();
+		project.updateDependencyResolver(resolver);
+		for (Project prj : project.getSubProjects()) {
+			prj.updateDependencyResolver(resolver);
+			resolver.addClassPath(forSubProject(prj).getJarFile().toAbsolutePath().toString());
+		}
+		return resolver;
+	}
+
+	private void collectContexts(List<BuildContext> ctxs, Set<Project> seen) {
+		if (seen.add(project)) {
+			ctxs.add(this);
 			for (Project prj : project.getSubProjects()) {
-				prj.updateDependencyResolver(resolver);
-				resolver.addClassPath(forSubProject(prj).getJarFile().toAbsolutePath().toString());
+				forSubProject(prj).collectContexts(ctxs, seen);
 			}
-			mcp = resolver.resolve();
 		}
-		return mcp;
 	}
 }
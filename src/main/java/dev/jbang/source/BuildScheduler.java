@@ -0,0 +1,196 @@
+package dev.jbang.source;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import dev.jbang.util.Util;
+
+/**
+ * Builds a project and all its sub-projects. Every project only gets built
+ * after all of its own sub-projects have been built, but sub-projects that
+ * don't depend on each other are built concurrently using at most
+ * <code>jbang.build.threads</code> threads (defaults to the number of
+ * available processors). Setting that system property to 1 builds the projects
+ * one after the other.
+ *
+ * While a project is being built its build folder is locked, so concurrent
+ * builds of the same project, in this process or in others, don't get in each
+ * other's way.
+ */
+class BuildScheduler {
+	private static final String LOCK_FILE = "build.lock";
+
+	private static final Map<Path, ReentrantLock> locks = new ConcurrentHashMap<>();
+
+	private final Map<Path, Node> nodes = new LinkedHashMap<>();
+	private final Function<BuildContext, Builder<CmdGeneratorBuilder>> builders;
+	private final Node root;
+
+	private static class Node {
+		final BuildContext ctx;
+		final Builder<CmdGeneratorBuilder> builder;
+		final List<Node> deps = new ArrayList<>();
+		CompletableFuture<CmdGeneratorBuilder> result;
+		long duration;
+
+		Node(BuildContext ctx, Builder<CmdGeneratorBuilder> builder) {
+			this.ctx = ctx;
+			this.builder = builder;
+		}
+
+		String name() {
+			return ctx.getProject().getResourceRef().getFile().getFileName().toString();
+		}
+	}
+
+	BuildScheduler(BuildContext ctx, Function<BuildContext, Builder<CmdGeneratorBuilder>> builders) {
+		this.builders = builders;
+		this.root = createNode(ctx);
+	}
+
+	private Node createNode(BuildContext ctx) {
+		Node node = nodes.get(ctx.getBuildDir());
+		if (node == null) {
+			node = new Node(ctx, builders.apply(ctx));
+			nodes.put(ctx.getBuildDir(), node);
+			for (Project prj : ctx.getProject().getSubProjects()) {
+				node.deps.add(createNode(ctx.forSubProject(prj)));
+			}
+		}
+		return node;
+	}
+
+	CmdGeneratorBuilder build() throws IOException {
+		int threads = Math.min(nodes.size() - 1,
+				Integer.getInteger("jbang.build.threads", Runtime.getRuntime().availableProcessors()));
+		ExecutorService pool = null;
+		Executor executor;
+		if (threads > 1) {
+			// Installing the same JDK from several threads at once is not a good idea
+			for (Node node : nodes.values()) {
+				if (node.ctx.getProject().getMainSource() != null) {
+					node.ctx.getProject().projectJdk();
+				}
+			}
+			pool = Executors.newFixedThreadPool(threads, r -> {
+				Thread t = new Thread(r, "jbang-build");
+				t.setDaemon(true);
+				return t;
+			});
+			executor = pool;
+		} else {
+			executor = Runnable::run;
+		}
+		long start = System.nanoTime();
+		try {
+			CompletableFuture<?>[] deps = root.deps.stream()
+				.map(n -> schedule(n, executor))
+				.toArray(CompletableFuture[]::new);
+			CompletableFuture.allOf(deps).join();
+			CmdGeneratorBuilder result = run(root);
+			report(System.nanoTime() - start);
+			return result;
+		} catch (CompletionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof UncheckedIOException) {
+				throw ((UncheckedIOException) cause).getCause();
+			} else if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw e;
+		} finally {
+			if (pool != null) {
+				pool.shutdownNow();
+			}
+		}
+	}
+
+	private CompletableFuture<CmdGeneratorBuilder> schedule(Node node, Executor executor) {
+		if (node.result == null) {
+			CompletableFuture<?>[] deps = node.deps.stream()
+				.map(n -> schedule(n, executor))
+				.toArray(CompletableFuture[]::new);
+			node.result = CompletableFuture.allOf(deps).thenApplyAsync(v -> {
+				try {
+					return run(node);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}, executor);
+		}
+		return node.result;
+	}
+
+	private CmdGeneratorBuilder run(Node node) throws IOException {
+		long start = System.nanoTime();
+		Path buildDir = node.ctx.getBuildDir();
+		ReentrantLock lock = locks.computeIfAbsent(buildDir, p -> new ReentrantLock());
+		lock.lock();
+		try {
+			Files.createDirectories(buildDir);
+			try (FileChannel ch = FileChannel.open(buildDir.resolve(LOCK_FILE), StandardOpenOption.CREATE,
+					StandardOpenOption.WRITE);
+					FileLock ignored = ch.lock()) {
+				return node.builder.build();
+			}
+		} finally {
+			lock.unlock();
+			node.duration = System.nanoTime() - start;
+		}
+	}
+
+	/**
+	 * Prints how long the build took and which chain of projects, each waiting
+	 * for the previous one to be built, determined that time.
+	 */
+	private void report(long total) {
+		Map<Node, Long> pathTimes = new HashMap<>();
+		long critical = criticalPath(root, pathTimes);
+		List<String> path = new ArrayList<>();
+		for (Node node = root; node != null; node = node.deps.stream()
+			.max((a, b) -> Long.compare(pathTimes.get(a), pathTimes.get(b)))
+			.orElse(null)) {
+			path.add(node.name() + " (" + TimeUnit.NANOSECONDS.toMillis(node.duration) + "ms)");
+		}
+		Collections.reverse(path);
+		Util.verboseMsg(String.format("Built %d projects in %dms, critical path %dms: %s", nodes.size(),
+				TimeUnit.NANOSECONDS.toMillis(total), TimeUnit.NANOSECONDS.toMillis(critical),
+				path.stream().collect(Collectors.joining(" -> "))));
+	}
+
+	private static long criticalPath(Node node, Map<Node, Long> pathTimes) {
+		Long time = pathTimes.get(node);
+		if (time == null) {
+			long longest = 0;
+			for (Node dep : node.deps) {
+				longest = Math.max(longest, criticalPath(dep, pathTimes));
+			}
+			time = node.duration + longest;
+			pathTimes.put(node, time);
+		}
+		return time;
+	}
+}
@@ -0,0 +1,305 @@
+package dev.jbang.source;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import dev.jbang.Cache;
+import dev.jbang.Settings;
+import dev.jbang.devkitman.Jdk;
+import dev.jbang.util.JavaUtil;
+import dev.jbang.util.Timings;
+import dev.jbang.util.Util;
+
+/**
+ * Manages the Class Data Sharing (CDS) archive of a project. Archives are used
+ * when requested with <code>--cds</code> or <code>//CDS</code> or, when the
+ * <code>cds-auto</code> option is enabled, for any script that has been run
+ * at least <code>cds-auto-runs</code> times.
+ *
+ * With <code>--aot</code> an Ahead-of-Time cache (JEP 483) is used instead on
+ * Java 24 and later, which besides the parsed classes also holds them linked
+ * and loaded. The first run is a training run that records what the
+ * application does. On Java 25+ the JVM creates the cache when the training
+ * run exits, on Java 24 the cache gets created on the next run. Older versions
+ * fall back to a CDS archive.
+ *
+ * Next to each archive an info file is kept that records the jar, the class
+ * path and the JDK the archive was made for. When any of those change the
+ * archive is thrown away and a new one gets made. On Java 19 and later the JVM
+ * is asked to do this itself using <code>-XX:+AutoCreateSharedArchive</code>.
+ * Archives whose jar no longer exists are removed from the cache now and then.
+ */
+public class ClassDataSharing {
+	private static final String INFO_SUFFIX = ".info";
+	private static final String AOT_CONFIG_SUFFIX = "conf";
+	private static final String GC_MARKER = ".cds-gc";
+	private static final long GC_INTERVAL = TimeUnit.DAYS.toMillis(1);
+
+	private static final List<String> ORPHAN_EXTENSIONS = Arrays.asList(".jsa", ".jsa" + INFO_SUFFIX, ".aot",
+			".aot" + AOT_CONFIG_SUFFIX);
+
+	private static final String KEY_RUNS = "runs";
+	private static final String KEY_JAR = "jar";
+	private static final String KEY_JDK = "jdk";
+
+	private ClassDataSharing() {
+	}
+
+	/**
+	 * Returns the JVM options needed to use or create the CDS archive for the
+	 * given project, if any. Each call counts as a run of the project.
+	 *
+	 * @param ctx       The build context of the project that will be run
+	 * @param jdk       The JDK that will run it
+	 * @param requested If CDS was explicitly requested
+	 * @param aot       If an AOT cache should be used when the JDK supports it
+	 * @param cpArgs    The class or module path options the project will be run
+	 *                  with, needed to create the AOT cache
+	 */
+	public static List<String> getOptions(BuildContext ctx, Jdk jdk, boolean requested, boolean aot,
+			List<String> cpArgs) {
+		boolean auto = !requested && Settings.isCdsAuto();
+		Path jsa = ctx.getJsaFile();
+		if ((!requested && !auto) || jsa == null || ctx.getJarFile() == null) {
+			return Collections.emptyList();
+		}
+		if (requested && jdk.majorVersion() < 13) {
+			Util.warnMsg(
+					"ClassDataSharing can only be used on Java versions 13 and later, you are on "
+							+ jdk.majorVersion() + ". Rerun with `--java 13+` to enforce the minimum version");
+			return Collections.emptyList();
+		}
+		jsa = jsa.toAbsolutePath();
+		Properties info = update(ctx, jdk, jsa);
+		if (auto) {
+			int runs = getRuns(info);
+			if (runs < Settings.getCdsAutoRuns()) {
+				Util.verboseMsg("CDS: Not archiving yet, run " + runs + " of " + Settings.getCdsAutoRuns());
+				return Collections.emptyList();
+			}
+			collectGarbage();
+			if (jdk.majorVersion() < 13) {
+				return Collections.emptyList();
+			}
+		}
+		if (aot && ctx.getAotFile() != null) {
+			if (jdk.majorVersion() >= 24 && !cpArgs.contains("-p")) {
+				return getAotOptions(ctx, jdk, cpArgs);
+			}
+			Util.verboseMsg("AOT: Cache needs Java 24+ and a class path, using CDS instead");
+		}
+		if (jdk.majorVersion() >= 19) {
+			Util.verboseMsg("CDS: Using automatically managed archive " + jsa);
+			return Arrays.asList("-XX:+AutoCreateSharedArchive", "-XX:SharedArchiveFile=" + jsa);
+		} else if (Files.exists(jsa)) {
+			Util.verboseMsg("CDS: Using shared archive classes from " + jsa);
+			return Collections.singletonList("-XX:SharedArchiveFile=" + jsa);
+		} else {
+			Util.verboseMsg("CDS: Archiving Classes At Exit at " + jsa);
+			return Collections.singletonList("-XX:ArchiveClassesAtExit=" + jsa);
+		}
+	}
+
+	/**
+	 * Returns <code>true</code> if the command line for the given project will
+	 * change on a later run because its runs are still being counted before an
+	 * archive gets created automatically.
+	 */
+	public static boolean isPending(BuildContext ctx) {
+		Path jsa = ctx.getJsaFile();
+		if (!Settings.isCdsAuto() || jsa == null || ctx.getProject().enableCDS()) {
+			return false;
+		}
+		return getRuns(readInfo(getInfoFile(jsa.toAbsolutePath()))) < Settings.getCdsAutoRuns();
+	}
+
+	private static List<String> getAotOptions(BuildContext ctx, Jdk jdk, List<String> cpArgs) {
+		Path aot = ctx.getAotFile().toAbsolutePath();
+		Path conf = getAotConfigFile(aot);
+		if (Files.exists(aot)) {
+			Util.verboseMsg("AOT: Using cache " + aot);
+			return Collections.singletonList("-XX:AOTCache=" + aot);
+		}
+		if (jdk.majorVersion() >= 25) {
+			Util.verboseMsg("AOT: Training run, the cache will be created at exit at " + aot);
+			return Collections.singletonList("-XX:AOTCacheOutput=" + aot);
+		}
+		if (Files.exists(conf)) {
+			createAotCache(ctx, jdk, conf, aot, cpArgs);
+			if (Files.exists(aot)) {
+				Util.verboseMsg("AOT: Using cache " + aot);
+				return Collections.singletonList("-XX:AOTCache=" + aot);
+			}
+			Util.deletePath(conf, true);
+		}
+		Util.verboseMsg("AOT: Training run, recording configuration at " + conf);
+		return Arrays.asList("-XX:AOTMode=record", "-XX:AOTConfiguration=" + conf);
+	}
+
+	/**
+	 * Creates the AOT cache from the configuration recorded by a training run.
+	 * Only needed on Java 24, later versions do this at the end of the training
+	 * run itself.
+	 */
+	private static void createAotCache(BuildContext ctx, Jdk jdk, Path conf, Path aot, List<String> cpArgs) {
+		List<String> cmd = new ArrayList<>();
+		cmd.add(JavaUtil.resolveInJavaHome("java", jdk));
+		cmd.add("-XX:AOTMode=create");
+		cmd.add("-XX:AOTConfiguration=" + conf);
+		cmd.add("-XX:AOTCache=" + aot);
+		if (ctx.getProject().enablePreview()) {
+			cmd.add("--enable-preview");
+		}
+		cmd.addAll(cpArgs);
+		try (Timings.Span span = Timings.start("aot-cache")) {
+			Util.verboseMsg("AOT: Creating cache at " + aot);
+			Util.runCommand(cmd.toArray(new String[0]));
+		}
+	}
+
+	public static Path getAotConfigFile(Path aot) {
+		return aot.resolveSibling(aot.getFileName() + AOT_CONFIG_SUFFIX);
+	}
+
+	private static Path getInfoFile(Path jsa) {
+		return jsa.resolveSibling(jsa.getFileName() + INFO_SUFFIX);
+	}
+
+	private static Properties readInfo(Path infoFile) {
+		Properties info = new Properties();
+		if (Files.isRegularFile(infoFile)) {
+			try (Reader r = Files.newBufferedReader(infoFile)) {
+				info.load(r);
+			} catch (IOException e) {
+				Util.verboseMsg("Unable to read " + infoFile, e);
+			}
+		}
+		return info;
+	}
+
+	private static int getRuns(Properties info) {
+		try {
+			return Integer.parseInt(info.getProperty(KEY_RUNS, "0"));
+		} catch (NumberFormatException e) {
+			return 0;
+		}
+	}
+
+	/**
+	 * Counts the run and removes the archive if it's no longer valid for the
+	 * current jar, class path and JDK.
+	 */
+	private static Properties update(BuildContext ctx, Jdk jdk, Path jsa) {
+		Path infoFile = getInfoFile(jsa);
+		Properties info = readInfo(infoFile);
+		String jar = jarFingerprint(ctx);
+		String jvm = jdkFingerprint(jdk);
+		if (!jar.equals(info.getProperty(KEY_JAR)) || !jvm.equals(info.getProperty(KEY_JDK))) {
+			if (Files.exists(jsa)) {
+				Util.verboseMsg("CDS: Archive " + jsa + " is outdated, recreating it");
+				Util.deletePath(jsa, true);
+			}
+			Path aotFile = ctx.getAotFile();
+			if (aotFile != null) {
+				if (Files.exists(aotFile)) {
+					Util.verboseMsg("AOT: Cache " + aotFile + " is outdated, recreating it");
+				}
+				Util.deletePath(aotFile, true);
+				Util.deletePath(getAotConfigFile(aotFile), true);
+			}
+			info.clear();
+			info.setProperty(KEY_JAR, jar);
+			info.setProperty(KEY_JDK, jvm);
+		}
+		info.setProperty(KEY_RUNS, Integer.toString(getRuns(info) + 1));
+		try {
+			Files.createDirectories(infoFile.getParent());
+			try (Writer w = Files.newBufferedWriter(infoFile)) {
+				info.store(w, null);
+			}
+		} catch (IOException e) {
+			Util.verboseMsg("Unable to write " + infoFile, e);
+		}
+		return info;
+	}
+
+	private static String jarFingerprint(BuildContext ctx) {
+		return Util.getStableID(Stream.of(fileState(ctx.getJarFile()), ctx.resolveClassPath().getClassPath()));
+	}
+
+	private static String jdkFingerprint(Jdk jdk) {
+		String java = JavaUtil.resolveInJavaHome("java", jdk);
+		Path home = Paths.get(java).toAbsolutePath().getParent().getParent();
+		// The modules file changes whenever the JDK gets updated in place
+		return jdk.majorVersion() + ":" + java + ":" + fileState(home.resolve("lib").resolve("modules"));
+	}
+
+	private static String fileState(Path file) {
+		try {
+			BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+			return attrs.lastModifiedTime().toMillis() + ":" + attrs.size();
+		} catch (IOException e) {
+			return "-";
+		}
+	}
+
+	/**
+	 * Removes the archives (and their info files) and AOT caches from the jar
+	 * cache whose jar doesn't exist anymore. Does nothing if this was already done recently.
+	 */
+	static void collectGarbage() {
+		Path jarsDir = Settings.getCacheDir(Cache.CacheClass.jars);
+		Path marker = jarsDir.resolve(GC_MARKER);
+		try {
+			if (Files.exists(marker)
+					&& System.currentTimeMillis() - Files.getLastModifiedTime(marker).toMillis() < GC_INTERVAL) {
+				return;
+			}
+			Files.createDirectories(jarsDir);
+			if (!Files.exists(marker)) {
+				Files.createFile(marker);
+			}
+			Files.setLastModifiedTime(marker, FileTime.fromMillis(System.currentTimeMillis()));
+			List<Path> orphans = findOrphans(jarsDir);
+			for (Path orphan : orphans) {
+				Util.verboseMsg("CDS: Removing orphaned archive " + orphan);
+				Util.deletePath(orphan, true);
+			}
+		} catch (IOException e) {
+			Util.verboseMsg("Unable to clean up CDS archives", e);
+		}
+	}
+
+	static List<Path> findOrphans(Path jarsDir) throws IOException {
+		if (!Files.isDirectory(jarsDir)) {
+			return Collections.emptyList();
+		}
+		try (Stream<Path> files = Files.walk(jarsDir, 2)) {
+			return files.filter(Files::isRegularFile).filter(f -> {
+				String name = f.getFileName().toString();
+				String base = null;
+				for (String ext : ORPHAN_EXTENSIONS) {
+					if (name.endsWith(ext)) {
+						base = name.substring(0, name.length() - ext.length());
+						break;
+					}
+				}
+				return base != null && !Files.exists(f.resolveSibling(base + ".jar"));
+			}).collect(Collectors.toCollection(ArrayList::new));
+		}
+	}
+}
@@ -24,6 +24,8 @@ public class CmdGeneratorBuilder {
 	private String flightRecorderString;
 	private Map<String, String> debugString;
 	private Boolean classDataSharing;
+	private Boolean aheadOfTimeCache;
+	private String runtimeProfile;
 
 	CmdGeneratorBuilder(BuildContext ctx) {
 		this.ctx = ctx;
@@ -92,6 +94,16 @@ public class CmdGeneratorBuilder {
 		return this;
 	}
 
+	public CmdGeneratorBuilder aheadOfTimeCache(Boolean aheadOfTimeCache) {
+		this.aheadOfTimeCache = aheadOfTimeCache;
+		return this;
+	}
+
+	public CmdGeneratorBuilder runtimeProfile(String runtimeProfile) {
+		this.runtimeProfile = runtimeProfile;
+		return this;
+	}
+
 	public CmdGenerator build() {
 		// If the project was created from an Alias, it might
 		// have some values we need to update
@@ -123,8 +135,9 @@ public class CmdGeneratorBuilder {
 			.moduleName(moduleName)
 			.assertions(enableAssertions == Boolean.TRUE)
 			.systemAssertions(enableSystemAssertions == Boolean.TRUE)
-			.classDataSharing(
-					Optional.ofNullable(classDataSharing).orElse(false))
+			.classDataSharing(classDataSharing)
+			.aheadOfTimeCache(aheadOfTimeCache == Boolean.TRUE)
+			.runtimeProfile(runtimeProfile)
 			.debugString(debugString)
 			.flightRecorderString(flightRecorderString);
 	}
@@ -1,8 +1,6 @@
 package dev.jbang.source;
 
-import java.util.List;
 import java.util.function.Supplier;
-import java.util.stream.Collectors;
 
 import org.jspecify.annotations.NonNull;
 
@@ -52,21 +50,12 @@ public class CodeBuilderProvider implements Supplier<Builder<CmdGeneratorBuilder
 
 	@NonNull
 	protected Builder<CmdGeneratorBuilder> get(BuildContext ctx) {
-		Builder<CmdGeneratorBuilder> builder = getBuilder(ctx);
 		Project prj = ctx.getProject();
 		if (!prj.getSubProjects().isEmpty()) {
-			List<Builder<CmdGeneratorBuilder>> subBuilders = prj.getSubProjects()
-				.stream()
-				.map(p -> get(ctx.forSubProject(p)))
-				.collect(Collectors.toList());
-			return () -> {
-				for (Builder<CmdGeneratorBuilder> b : subBuilders) {
-					b.build();
-				}
-				return builder.build();
-			};
+			BuildScheduler scheduler = new BuildScheduler(ctx, this::getBuilder);
+			return scheduler::build;
 		} else {
-			return builder;
+			return getBuilder(ctx);
 		}
 	}
 
@@ -0,0 +1,311 @@
+package dev.jbang.source;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import dev.jbang.Cache;
+import dev.jbang.Configuration;
+import dev.jbang.Settings;
+import dev.jbang.dependencies.ArtifactInfo;
+import dev.jbang.resources.ResourceRef;
+import dev.jbang.util.CommandBuffer;
+import dev.jbang.util.JavaUtil;
+import dev.jbang.util.Util;
+
+/**
+ * Remembers the command lines generated by <code>jbang run</code> for local
+ * scripts, so the next invocation with the same options can output the
+ * command line right away, without parsing the sources, building the project
+ * or resolving dependencies.
+ *
+ * Entries are keyed by the JBang version, the current directory, the shell,
+ * the relevant environment variables and system properties and the arguments
+ * up to and including the script (the arguments for the script itself are
+ * not part of the key and get appended to the cached command line). Each entry
+ * records the size and modification time of all the files that went into
+ * generating the command line: the sources, resources and jars of the project
+ * and its sub-projects, the dependencies, the Java executable and the
+ * configuration files. An entry is only used when none of those have changed.
+ * Projects with sources or files that were found using a pattern or folder
+ * don't get cached at all.
+ *
+ * The launch cache can be turned off by setting the system property
+ * <code>jbang.launch.cache</code> to <code>false</code>.
+ */
+public class LaunchCache {
+	private static final String ABSENT = "-";
+
+	// The maximum number of arguments we try as the possible script argument
+	private static final int MAX_CANDIDATES = 3;
+
+	private static String[] invocationArgs;
+
+	static class Entry {
+		String command;
+		Map<String, String> files = new TreeMap<>();
+		Map<String, String> links = new TreeMap<>();
+	}
+
+	private LaunchCache() {
+	}
+
+	public static boolean isEnabled() {
+		return !"false".equals(System.getProperty("jbang.launch.cache"));
+	}
+
+	/**
+	 * Remembers the arguments of the current invocation, these are needed to
+	 * determine the key when storing an entry later on.
+	 *
+	 * @param args The arguments as processed by <code>Main.handleDefaultRun()</code>
+	 */
+	public static void setInvocationArgs(String[] args) {
+		invocationArgs = args;
+	}
+
+	/**
+	 * Returns the command line for the given arguments if it was cached and is
+	 * still valid.
+	 *
+	 * @param args The arguments as processed by <code>Main.handleDefaultRun()</code>
+	 * @return The command line to execute or <code>null</code>
+	 */
+	public static String lookup(String[] args) {
+		if (!isEnabled() || args == null) {
+			return null;
+		}
+		int run = Arrays.asList(args).indexOf("run");
+		if (run < 0) {
+			return null;
+		}
+		int candidates = 0;
+		for (int i = run + 1; i < args.length && candidates < MAX_CANDIDATES; i++) {
+			if (args[i].startsWith("-")) {
+				continue;
+			}
+			candidates++;
+			Path entryFile = getEntryFile(Arrays.copyOfRange(args, 0, i + 1));
+			if (!Files.isRegularFile(entryFile)) {
+				continue;
+			}
+			List<String> userArgs = Arrays.asList(args).subList(i + 1, args.length);
+			String cmdline = validate(readEntry(entryFile), userArgs);
+			if (cmdline != null) {
+				return cmdline;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Stores the command line generated for the given build context, if it's
+	 * suitable for caching.
+	 *
+	 * @param ctx      The build context of the project that's being run
+	 * @param cmdline  The full command line including the user arguments
+	 * @param userArgs The user arguments that are part of the command line
+	 */
+	public static void store(BuildContext ctx, String cmdline, List<String> userArgs) {
+		String[] args = invocationArgs;
+		if (!isEnabled() || args == null || Util.isFresh() || !isCacheable(ctx)) {
+			return;
+		}
+		// Make sure the arguments end with the user arguments
+		int prefixLength = args.length - userArgs.size();
+		if (prefixLength <= 0
+				|| !Arrays.asList(args).subList(prefixLength, args.length).equals(userArgs)) {
+			return;
+		}
+		// Make sure the command line ends with the user arguments
+		String userPart = userArgsString(userArgs);
+		if (!cmdline.endsWith(userPart)) {
+			return;
+		}
+		Project prj = ctx.getProject();
+		Entry entry = new Entry();
+		entry.command = cmdline.substring(0, cmdline.length() - userPart.length());
+		try {
+			recordProject(entry, ctx);
+			for (ArtifactInfo ai : ctx.resolveClassPath().getArtifacts()) {
+				recordFile(entry, ai.getFile());
+			}
+			recordFile(entry, Paths.get(JavaUtil.resolveInJavaHome("java", prj.projectJdk())));
+			for (Path cfg : getConfigFiles()) {
+				recordFile(entry, cfg);
+			}
+			// Whether a CDS archive exists or not changes the command line
+			recordFile(entry, ctx.getJsaFile());
+			// Same for the AOT cache and its training data
+			recordFile(entry, ctx.getAotFile());
+			recordFile(entry, ClassDataSharing.getAotConfigFile(ctx.getAotFile()));
+			recordLink(entry, Settings.getDefaultJdkDir());
+			writeEntry(getEntryFile(Arrays.copyOfRange(args, 0, prefixLength)), entry);
+		} catch (IOException e) {
+			Util.verboseMsg("Unable to store launch cache entry", e);
+		}
+	}
+
+	private static boolean isCacheable(BuildContext ctx) {
+		Project prj = ctx.getProject();
+		ResourceRef ref = prj.getResourceRef();
+		if (ref.isURL() || ref.isStdin() || ref.getFile() == null || prj.isJShell()
+				|| Boolean.TRUE.equals(prj.isNativeImage())
+				|| ctx.getJarFile() == null || !Files.isRegularFile(ctx.getJarFile())) {
+			return false;
+		}
+		return isCacheable(prj);
+	}
+
+	private static boolean isCacheable(Project prj) {
+		// Files that get added to a folder or that match a pattern later on
+		// would go unnoticed
+		if (prj.usesPatterns()) {
+			return false;
+		}
+		// Remote sources might have changed without us noticing
+		return !prj.getResourceRef().isURL()
+				&& prj.getMainSourceSet().getSources().stream().noneMatch(ResourceRef::isURL)
+				&& prj.getMainSourceSet().getResources().stream().noneMatch(r -> r.getSource().isURL())
+				&& prj.getSubProjects().stream().allMatch(LaunchCache::isCacheable);
+	}
+
+	/**
+	 * Records the sources, resources and jar of the given project and those of
+	 * all its sub-projects
+	 */
+	private static void recordProject(Entry entry, BuildContext ctx) {
+		Project prj = ctx.getProject();
+		for (ResourceRef ref : prj.getMainSourceSet().getSources()) {
+			recordFile(entry, ref.getFile());
+		}
+		for (RefTarget ref : prj.getMainSourceSet().getResources()) {
+			recordFile(entry, ref.getSource().getFile());
+		}
+		if (ctx.getJarFile() != null) {
+			recordFile(entry, ctx.getJarFile());
+		}
+		for (Project sub : prj.getSubProjects()) {
+			recordProject(entry, ctx.forSubProject(sub));
+		}
+	}
+
+	private static String validate(Entry entry, List<String> userArgs) {
+		if (entry == null || entry.command == null) {
+			return null;
+		}
+		// These would need downloading first
+		if (userArgs.stream().anyMatch(a -> a.contains("%{"))) {
+			return null;
+		}
+		for (Map.Entry<String, String> e : entry.files.entrySet()) {
+			if (!e.getValue().equals(fileState(Paths.get(e.getKey())))) {
+				Util.verboseMsg("Launch cache entry outdated because of " + e.getKey());
+				return null;
+			}
+		}
+		for (Map.Entry<String, String> e : entry.links.entrySet()) {
+			if (!e.getValue().equals(fileState(Paths.get(e.getKey()), LinkOption.NOFOLLOW_LINKS))) {
+				Util.verboseMsg("Launch cache entry outdated because of " + e.getKey());
+				return null;
+			}
+		}
+		String cmdline = entry.command + userArgsString(userArgs);
+		if (Util.isWindows() && cmdline.length() > CommandBuffer.MAX_LENGTH_WINCLI) {
+			// Needs an @-file, let the normal code path deal with that
+			return null;
+		}
+		return cmdline;
+	}
+
+	private static String userArgsString(List<String> userArgs) {
+		StringBuilder sb = new StringBuilder();
+		for (String arg : userArgs) {
+			sb.append(' ').append(CommandBuffer.escapeShellArgument(arg, Util.getShell()));
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Returns all the files that <code>Configuration.getMerged()</code> would
+	 * look at, whether they exist or not
+	 */
+	private static List<Path> getConfigFiles() {
+		List<Path> files = new ArrayList<>();
+		Util.findNearestWith(null, dir -> {
+			files.add(dir.resolve(Configuration.JBANG_CONFIG_PROPS));
+			return null;
+		});
+		String cfgFileName = System.getenv("JBANG_CONFIG");
+		if (cfgFileName != null) {
+			files.add(Util.getCwd().resolve(cfgFileName));
+		}
+		return files;
+	}
+
+	private static void recordFile(Entry entry, Path file) {
+		entry.files.put(file.toAbsolutePath().toString(), fileState(file));
+	}
+
+	private static void recordLink(Entry entry, Path file) {
+		entry.links.put(file.toAbsolutePath().toString(), fileState(file, LinkOption.NOFOLLOW_LINKS));
+	}
+
+	private static String fileState(Path file, LinkOption... options) {
+		try {
+			BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class, options);
+			return attrs.lastModifiedTime().toMillis() + ":" + attrs.size();
+		} catch (IOException e) {
+			return ABSENT;
+		}
+	}
+
+	private static Path getEntryFile(String[] args) {
+		String key = Util.getStableID(Stream.of(
+				Stream.of(Util.getJBangVersion(), Util.getCwd().toString(), Util.getShell().name(),
+						Util.getEnvironmentFingerprint()),
+				System.getProperties()
+					.stringPropertyNames()
+					.stream()
+					.filter(p -> p.startsWith("jbang."))
+					.sorted()
+					.map(p -> p + "=" + System.getProperty(p)),
+				Arrays.stream(args))
+			.flatMap(s -> s)
+			.map(s -> s + "\n"));
+		return Settings.getCacheDir(Cache.CacheClass.launches).resolve(key + ".json");
+	}
+
+	private static Entry readEntry(Path entryFile) {
+		try (Reader r = Files.newBufferedReader(entryFile)) {
+			return new Gson().fromJson(r, Entry.class);
+		} catch (IOException | JsonParseException e) {
+			Util.verboseMsg("Unable to read launch cache entry " + entryFile, e);
+			return null;
+		}
+	}
+
+	private static void writeEntry(Path entryFile, Entry entry) throws IOException {
+		Files.createDirectories(entryFile.getParent());
+		Path tmp = Files.createTempFile(entryFile.getParent(), "launch", ".tmp");
+		try (Writer w = Files.newBufferedWriter(tmp)) {
+			new Gson().toJson(entry, w);
+		}
+		Files.move(tmp, entryFile, StandardCopyOption.REPLACE_EXISTING);
+	}
+}
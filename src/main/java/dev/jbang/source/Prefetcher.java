@@ -0,0 +1,73 @@
+package dev.jbang.source;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+import dev.jbang.resources.ResourceNotFoundException;
+import dev.jbang.resources.ResourceRef;
+import dev.jbang.resources.resolvers.RemoteResourceResolver;
+import dev.jbang.util.Timings;
+import dev.jbang.util.Util;
+
+/**
+ * Downloads the remote resources a source refers to (its //SOURCES, //FILES
+ * and //DOCS) concurrently, before they get accessed one by one. Remote
+ * references are lazy, so without this each of them would be downloaded at the
+ * moment it's first needed, one after the other.
+ *
+ * At most <code>jbang.download.threads</code> downloads (defaults to 8) run at
+ * the same time. Setting that system property to 1 turns prefetching off.
+ * Failures are ignored here, they get reported when the resource is accessed.
+ */
+class Prefetcher {
+	private static final int DEFAULT_THREADS = 8;
+
+	private Prefetcher() {
+	}
+
+	static void prefetch(List<ResourceRef> refs) {
+		// Only fetch the same URL once
+		Map<String, ResourceRef> remotes = new LinkedHashMap<>();
+		for (ResourceRef ref : refs) {
+			if (ref instanceof RemoteResourceResolver.RemoteResourceRef) {
+				remotes.putIfAbsent(ref.getOriginalResource(), ref);
+			}
+		}
+		int threads = Math.min(remotes.size(), Integer.getInteger("jbang.download.threads", DEFAULT_THREADS));
+		if (threads <= 1 || Util.isOffline()) {
+			return;
+		}
+		Util.verboseMsg("Prefetching " + remotes.size() + " remote resources using " + threads + " threads");
+		ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+			Thread t = new Thread(r, "jbang-prefetch");
+			t.setDaemon(true);
+			return t;
+		});
+		List<Callable<Object>> tasks = remotes.values()
+			.stream()
+			.map(ref -> (Callable<Object>) () -> fetch(ref))
+			.collect(Collectors.toCollection(ArrayList::new));
+		try (Timings.Span span = Timings.start("prefetch", remotes.size() + " resources")) {
+			pool.invokeAll(tasks);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	private static Object fetch(ResourceRef ref) {
+		try {
+			return ref.getFile();
+		} catch (ResourceNotFoundException e) {
+			Util.verboseMsg("Prefetching " + ref.getOriginalResource() + " failed", e);
+			return null;
+		}
+	}
+}
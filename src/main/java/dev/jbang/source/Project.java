@@ -43,6 +43,7 @@ public class Project {
 	private boolean nativeImage;
 	private boolean integrations = true;
 	private boolean enablePreviewRequested;
+	private boolean usesPatterns;
 
 	private JdkManager jdkManager;
 
@@ -245,6 +246,18 @@ public class Project {
 		this.nativeImage = isNative;
 	}
 
+	/**
+	 * Returns <code>true</code> if any of the sources or files of this project
+	 * were found by expanding a pattern or a folder
+	 */
+	public boolean usesPatterns() {
+		return usesPatterns;
+	}
+
+	public void setUsesPatterns(boolean usesPatterns) {
+		this.usesPatterns = usesPatterns;
+	}
+
 	public boolean disableIntegrations() {
 		return !integrations || (mainSource != null && mainSource.disableIntegrations());
 	}
@@ -257,6 +270,10 @@ public class Project {
 		return mainSource != null && mainSource.enableCDS();
 	}
 
+	public String getRuntimeProfile() {
+		return mainSource != null ? mainSource.getRuntimeProfile() : null;
+	}
+
 	@Nullable
 	public Source getMainSource() {
 		return mainSource;
@@ -272,7 +289,8 @@ public class Project {
 
 	protected String getStableId() {
 		if (stableId == null) {
-			Stream<String> sss = mainSourceSet.getStableIdInfo();
+			Stream<String> sss = Stream.concat(mainSourceSet.getStableIdInfo(),
+					Stream.of(String.valueOf(getJavaVersion())));
 			if (moduleName != null) {
 				Stream<String> s = Stream.of(ModuleUtil.getModuleName(this));
 				sss = Stream.concat(sss, s);
@@ -282,6 +300,20 @@ public class Project {
 		return stableId;
 	}
 
+	/**
+	 * Like the stable id but leaving out the contents of the sources and
+	 * resources, so it only changes when the dependencies, options or Java
+	 * version change
+	 */
+	protected String getOptionsId() {
+		Stream<String> sss = Stream.concat(mainSourceSet.getOptionsIdInfo(),
+				Stream.of(String.valueOf(getJavaVersion())));
+		if (moduleName != null) {
+			sss = Stream.concat(sss, Stream.of(ModuleUtil.getModuleName(this)));
+		}
+		return Util.getStableID(sss);
+	}
+
 	protected void updateDependencyResolver(DependencyResolver resolver) {
 		resolver.addRepositories(repositories);
 		getMainSourceSet().updateDependencyResolver(resolver);
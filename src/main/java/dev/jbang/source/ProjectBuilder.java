@@ -53,6 +53,7 @@ import dev.jbang.source.sources.JavaSource;
 import dev.jbang.util.JavaUtil;
 import dev.jbang.util.ModuleUtil;
 import dev.jbang.util.PropertiesValueResolver;
+import dev.jbang.util.Timings;
 import dev.jbang.util.Util;
 
 import eu.maveniverse.domtrip.Document;
@@ -261,7 +262,10 @@ public class ProjectBuilder {
 	}
 
 	public Project build(String resource) {
-		ResourceRef resourceRef = resolveChecked(getResourceResolver(), resource);
+		ResourceRef resourceRef;
+		try (Timings.Span span = Timings.start("resolve-resource", resource)) {
+			resourceRef = resolveChecked(getResourceResolver(), resource);
+		}
 		return build(resourceRef);
 	}
 
@@ -307,13 +311,15 @@ public class ProjectBuilder {
 		}
 
 		Project prj;
-		if (Project.hasExecutableExtension(resourceRef.getFile())) {
-			prj = createJarProject(resourceRef);
-		} else if (Util.isPreview()
-				&& resourceRef.getFile().getFileName().toString().equals(Project.BuildFile.jbang.fileName)) {
-			prj = createJbangProject(resourceRef);
-		} else {
-			prj = createSourceProject(resourceRef);
+		try (Timings.Span span = Timings.start("project", resourceRef.getFile().getFileName().toString())) {
+			if (Project.hasExecutableExtension(resourceRef.getFile())) {
+				prj = createJarProject(resourceRef);
+			} else if (Util.isPreview()
+					&& resourceRef.getFile().getFileName().toString().equals(Project.BuildFile.jbang.fileName)) {
+				prj = createJbangProject(resourceRef);
+			} else {
+				prj = createSourceProject(resourceRef);
+			}
 		}
 		return prj;
 	}
@@ -332,14 +338,16 @@ public class ProjectBuilder {
 		String contents = Util.readFileContent(resourceRef.getFile());
 		Directives directives = new Directives.JbangProject(contents, propertyReplacer());
 		ResourceResolver sibRes1 = getSiblingResolver(resourceRef);
+		List<DocRef> docs = allToDocRef(directives.collectDocs(), sibRes1);
+		List<RefTarget> files = allToFileRef(prj, directives.files(), resourceRef, sibRes1);
 		prj.setDescription(directives.description());
-		prj.addDocs(allToDocRef(directives.collectDocs(), sibRes1));
+		prj.addDocs(docs);
 		prj.setGav(directives.gav());
 		prj.setMainClass(directives.mainMethod());
 		prj.setModuleName(directives.module());
 
 		SourceSet ss = prj.getMainSourceSet();
-		ss.addResources(allToFileRef(directives.files(), resourceRef, sibRes1));
+		ss.addResources(files);
 		ss.addDependencies(directives.binaryDependencies());
 		ss.addCompileOptions(directives.compileOptions());
 		ss.addNativeOptions(directives.nativeOptions());
@@ -387,8 +395,10 @@ public class ProjectBuilder {
 				}
 			}
 		}
-		List<Source> includedSources = allToSource(sources, resourceRef, sibRes2);
-		for (Source includedSource : includedSources) {
+		List<ResourceRef> sourceRefs = allToSourceRef(prj, sources, resourceRef, sibRes2);
+		prefetch(sourceRefs, files, docs);
+		for (ResourceRef sourceRef : sourceRefs) {
+			Source includedSource = createSource(sourceRef);
 			updateProject(includedSource, prj, resolver);
 			if (first) {
 				prj.setMainSource(includedSource);
@@ -518,7 +528,8 @@ public class ProjectBuilder {
 		ss.addClassPaths(replaceAllProps(additionalClasspaths));
 		updateAllSources(prj, replaceAllProps(additionalSources));
 		ss.addResources(
-				allToFileRef(allToKV(replaceAllProps(additionalResources)), null, ResourceResolver.forResources()));
+				allToFileRef(prj, allToKV(replaceAllProps(additionalResources)), null,
+						ResourceResolver.forResources()));
 		ss.addCompileOptions(compileOptions);
 		ss.addNativeOptions(nativeOptions);
 		prj.putProperties(properties);
@@ -554,6 +565,7 @@ public class ProjectBuilder {
 
 	private void updateAllSources(Project prj, List<String> sources) {
 		ResourceResolver resolver = getResourceResolver();
+		sources.forEach(f -> checkPattern(prj, Util.getCwd(), f));
 		sources.stream()
 			.flatMap(f -> Util.explode(null, Util.getCwd(), f).stream())
 			.map(s -> resolveChecked(resolver, s))
@@ -569,24 +581,57 @@ public class ProjectBuilder {
 		return repos.stream().map(DependencyUtil::toMavenRepo).collect(Collectors.toList());
 	}
 
-	private List<Source> allToSource(List<String> sources, ResourceRef resourceRef, ResourceResolver resolver) {
+	private List<ResourceRef> allToSourceRef(Project prj, List<String> sources, ResourceRef resourceRef,
+			ResourceResolver resolver) {
 		String org = resourceRef != null ? resourceRef.getOriginalResource() : null;
 		Path baseDir = org != null ? resourceRef.getFile().toAbsolutePath().getParent() : Util.getCwd();
+		sources.forEach(line -> checkPattern(prj, baseDir, line));
 		return sources.stream()
 			.flatMap(line -> Util.explode(org, baseDir, line).stream())
-			.map(ref -> Source.forResource(resolver, ref, propertyReplacer()))
+			.map(ref -> {
+				ResourceRef resRef = resolver.resolve(ref);
+				return resRef != null ? resRef
+						: ResourceRef.forUnresolvable(ref, "not found from " + resolver.description());
+			})
 			.collect(Collectors.toList());
 	}
 
-	private List<RefTarget> allToFileRef(List<KeyValue> resources, ResourceRef ref, ResourceResolver resolver) {
+	/**
+	 * Downloads any of the given references that are remote concurrently, so they
+	 * don't each get downloaded on first access
+	 */
+	private static void prefetch(List<ResourceRef> sources, List<RefTarget> files, List<DocRef> docs) {
+		List<ResourceRef> refs = new ArrayList<>(sources);
+		files.forEach(f -> refs.add(f.getSource()));
+		docs.forEach(d -> refs.add(d.getRef()));
+		Prefetcher.prefetch(refs);
+	}
+
+	private List<RefTarget> allToFileRef(Project prj, List<KeyValue> resources, ResourceRef ref,
+			ResourceResolver resolver) {
 		String org = ref != null ? ref.getOriginalResource() : null;
 		Path baseDir = org != null ? ref.getFile().toAbsolutePath().getParent() : Util.getCwd();
+		resources.forEach(kv -> checkPattern(prj, baseDir, kv.getValue() != null ? kv.getValue() : kv.getKey()));
 		return resources.stream()
 			.flatMap(kv -> Directives.explodeFileRef(org, baseDir, kv).stream())
 			.map(f -> toFileRef(f, resolver))
 			.collect(Collectors.toList());
 	}
 
+	/**
+	 * Marks the project if the given reference is a pattern or a folder, because
+	 * then adding or removing files can change the project without any of its
+	 * known files changing
+	 */
+	private static void checkPattern(Project prj, Path baseDir, String ref) {
+		if (Util.isURL(ref) || Catalog.isValidCatalogReference(ref)) {
+			return;
+		}
+		if (Util.isPattern(ref) || (Util.isValidPath(ref) && Files.isDirectory(baseDir.resolve(ref)))) {
+			prj.setUsesPatterns(true);
+		}
+	}
+
 	private List<DocRef> allToDocRef(List<KeyValue> docs, ResourceResolver resolver) {
 		return docs.stream()
 			.map(kv -> DocRef.toDocRef(resolver, kv))
@@ -684,13 +729,18 @@ public class ProjectBuilder {
 				return prj;
 			}
 			ResourceResolver sibRes1 = getSiblingResolver(srcRef);
-			ss.addResources(allToFileRef(src.getDirectives().files(), srcRef, sibRes1));
+			ResourceResolver sibRes2 = getSiblingResolver(srcRef, resolver);
+			List<RefTarget> files = allToFileRef(prj, src.getDirectives().files(), srcRef, sibRes1);
+			List<DocRef> docs = allToDocRef(src.getDirectives().collectDocs(), sibRes1);
+			List<ResourceRef> sourceRefs = allToSourceRef(prj, src.getDirectives().sources(), srcRef, sibRes2);
+			prefetch(sourceRefs, files, docs);
+			ss.addResources(files);
 			ss.addDependencies(src.collectBinaryDependencies());
 			ss.addCompileOptions(src.getCompileOptions());
 			ss.addNativeOptions(src.getNativeOptions());
 			prj.addRepositories(src.getDirectives().repositories());
 			prj.addRuntimeOptions(src.getRuntimeOptions());
-			prj.addDocs(allToDocRef(src.getDirectives().collectDocs(), sibRes1));
+			prj.addDocs(docs);
 
 			src.getDirectives().manifestOptions().forEach(kv -> {
 				if (!kv.getKey().isEmpty()) {
@@ -712,10 +762,8 @@ public class ProjectBuilder {
 				ResourceRef subRef = sibRes1.resolve(srcDep, true);
 				prj.addSubProject(new ProjectBuilder(buildRefs).build(subRef));
 			}
-			ResourceResolver sibRes2 = getSiblingResolver(srcRef, resolver);
-			List<Source> includedSources = allToSource(src.getDirectives().sources(), srcRef, sibRes2);
-			for (Source includedSource : includedSources) {
-				updateProject(includedSource, prj, resolver);
+			for (ResourceRef sourceRef : sourceRefs) {
+				updateProject(createSource(sourceRef), prj, resolver);
 			}
 		}
 		return prj;
@@ -0,0 +1,109 @@
+package dev.jbang.source;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import dev.jbang.ExitException;
+import dev.jbang.devkitman.Jdk;
+
+/**
+ * Sets of JVM options that tune the runtime for a certain kind of use. They
+ * can be selected with <code>--runtime-profile</code>, the
+ * <code>//RUNTIME_PROFILE</code> directive or the <code>runtime-profile</code>
+ * configuration option (in that order of precedence).
+ *
+ * Options given by the user always win: a profile's option is left out when
+ * the user already set the same option (or, for garbage collectors, any
+ * garbage collector at all).
+ */
+public enum RuntimeProfile {
+	/**
+	 * The JVM's own defaults
+	 */
+	DEFAULT("default"),
+	/**
+	 * For scripts that only run for a short time. Compiles with C1 only, uses the
+	 * Serial GC (which has the least setup cost), skips the perf data file and
+	 * starts with a small heap and stack.
+	 */
+	FAST_START("fast-start");
+
+	private static final Pattern XX_OPTION = Pattern.compile("-XX:[+-]?([A-Za-z0-9]+).*");
+	private static final Pattern GC_OPTION = Pattern.compile("-XX:\\+Use[A-Za-z0-9]*GC");
+	private static final Pattern HEAP_OPTION = Pattern.compile("-Xm[sx].*|-XX:(Initial|Max|Min)HeapSize=.*");
+
+	private final String name;
+
+	RuntimeProfile(String name) {
+		this.name = name;
+	}
+
+	@Override
+	public String toString() {
+		return name;
+	}
+
+	public static RuntimeProfile of(String name) {
+		for (RuntimeProfile p : values()) {
+			if (p.name.equals(name)) {
+				return p;
+			}
+		}
+		throw new ExitException(ExitException.EXIT_INVALID_INPUT,
+				"Unknown runtime profile '" + name + "', should be one of: "
+						+ Arrays.stream(values()).map(RuntimeProfile::toString).collect(Collectors.joining(", ")));
+	}
+
+	/**
+	 * Returns the JVM options for this profile for the given JDK, leaving out any
+	 * that would conflict with the options the user passed already.
+	 */
+	public List<String> getOptions(Jdk jdk, List<String> userOptions) {
+		if (this == DEFAULT) {
+			return Collections.emptyList();
+		}
+		List<String> opts = new ArrayList<>();
+		opts.add("-XX:TieredStopAtLevel=1");
+		opts.add("-XX:+UseSerialGC");
+		opts.add("-XX:-UsePerfData");
+		opts.add("-Xss512k");
+		opts.add("-Xms8m");
+		if (jdk.majorVersion() < 12) {
+			// Later versions come with a default CDS archive that is used automatically
+			opts.add("-Xshare:auto");
+		}
+		if (jdk.majorVersion() >= 9 && jdk.majorVersion() < 17) {
+			// Segmented code cache isn't worth it when only C1 is used
+			opts.add("-XX:-SegmentedCodeCache");
+		}
+		return opts.stream().filter(o -> !isSetBy(o, userOptions)).collect(Collectors.toList());
+	}
+
+	private static boolean isSetBy(String opt, List<String> userOptions) {
+		if (GC_OPTION.matcher(opt).matches()) {
+			return userOptions.stream().anyMatch(u -> GC_OPTION.matcher(u).matches());
+		}
+		Matcher m = XX_OPTION.matcher(opt);
+		if (m.matches()) {
+			String name = m.group(1);
+			return userOptions.stream().anyMatch(u -> {
+				Matcher um = XX_OPTION.matcher(u);
+				return um.matches() && um.group(1).equals(name);
+			});
+		}
+		if (opt.startsWith("-Xms")) {
+			// A smaller maximum than our initial size would make the JVM fail
+			return userOptions.stream().anyMatch(u -> HEAP_OPTION.matcher(u).matches());
+		}
+		if (opt.startsWith("-Xss")) {
+			return userOptions.stream().anyMatch(u -> u.startsWith("-Xss") || u.startsWith("-XX:ThreadStackSize="));
+		}
+		String prefix = opt.contains(":") ? opt.substring(0, opt.indexOf(':') + 1) : opt;
+		return userOptions.stream().anyMatch(u -> u.startsWith(prefix));
+	}
+}
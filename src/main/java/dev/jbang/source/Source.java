@@ -15,6 +15,7 @@ import dev.jbang.source.parser.Directives;
 import dev.jbang.source.sources.*;
 import dev.jbang.source.sources.KotlinSource;
 import dev.jbang.source.sources.MarkdownSource;
+import dev.jbang.util.Timings;
 import dev.jbang.util.Util;
 
 /**
@@ -69,7 +70,9 @@ public abstract class Source {
 	@NonNull
 	public Directives getDirectives() {
 		if (directives == null) {
-			directives = directivesSupplier.get();
+			try (Timings.Span span = Timings.start("directives", resourceRef.getOriginalResource())) {
+				directives = directivesSupplier.get();
+			}
 		}
 		return directives;
 	}
@@ -124,6 +127,10 @@ public abstract class Source {
 		return getDirectives().enablePreview();
 	}
 
+	public String getRuntimeProfile() {
+		return getDirectives().runtimeProfile();
+	}
+
 	public boolean disableIntegrations() {
 		return getDirectives().disableIntegrations();
 	}
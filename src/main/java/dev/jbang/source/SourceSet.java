@@ -142,8 +142,15 @@ public class SourceSet {
 
 	protected Stream<String> getStableIdInfo() {
 		Stream<String> srcs = sources.stream().map(this::safeFileContents);
-		Stream<String> ress = resources.stream().map(res -> safeFileContents(res.getSource()));
-		return Stream.concat(srcs, ress);
+		Stream<String> ress = resources.stream()
+			.flatMap(res -> Stream.of(String.valueOf(res.getTarget()), safeFileContents(res.getSource())));
+		return Stream.of(srcs, ress, getOptionsIdInfo()).flatMap(s -> s);
+	}
+
+	// Everything besides the sources that can influence the build output
+	protected Stream<String> getOptionsIdInfo() {
+		return Stream.of(dependencies, classPaths, compileOptions, nativeOptions)
+			.map(l -> String.join(" ", l));
 	}
 
 	private String safeFileContents(ResourceRef ref) {
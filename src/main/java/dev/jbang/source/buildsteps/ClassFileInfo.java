@@ -0,0 +1,119 @@
+package dev.jbang.source.buildsteps;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import dev.jbang.util.Util;
+
+/**
+ * Extracts just the information from a class file that's needed for
+ * incremental compilation: the name of the class, the source file it was
+ * compiled from, the classes it references and a fingerprint of its
+ * compile-time constants (which get inlined by javac and therefore don't show
+ * up as references in the classes that use them).
+ */
+class ClassFileInfo {
+	private static final Pattern DESCRIPTOR_TYPE = Pattern.compile("L([\\w/$]+)[;<]");
+
+	final String name;
+	final String sourceFile;
+	final Set<String> references;
+	final String constants;
+
+	private ClassFileInfo(String name, String sourceFile, Set<String> references, String constants) {
+		this.name = name;
+		this.sourceFile = sourceFile;
+		this.references = references;
+		this.constants = constants;
+	}
+
+	/**
+	 * Returns the package part of the class name in internal form (using slashes)
+	 * or an empty string for the default package
+	 */
+	String packagePath() {
+		int idx = name.lastIndexOf('/');
+		return idx >= 0 ? name.substring(0, idx) : "";
+	}
+
+	static ClassFileInfo read(Path classFile) throws IOException {
+		try (InputStream is = Files.newInputStream(classFile)) {
+			return read(is);
+		}
+	}
+
+	static ClassFileInfo read(InputStream is) throws IOException {
+		ClassFileReader cf = new ClassFileReader(is);
+		DataInputStream in = cf.in;
+
+		List<String> constants = new ArrayList<>();
+		int fields = in.readUnsignedShort();
+		for (int i = 0; i < fields; i++) {
+			in.readUnsignedShort(); // access flags
+			String fieldName = cf.utf8(in.readUnsignedShort());
+			String fieldDesc = cf.utf8(in.readUnsignedShort());
+			int attrs = in.readUnsignedShort();
+			for (int j = 0; j < attrs; j++) {
+				String attrName = cf.utf8(in.readUnsignedShort());
+				int len = in.readInt();
+				if ("ConstantValue".equals(attrName) && len == 2) {
+					Object val = cf.constant(in.readUnsignedShort());
+					constants.add(fieldName + ":" + fieldDesc + "=" + val);
+				} else {
+					in.skipBytes(len);
+				}
+			}
+		}
+
+		cf.skipMembers(); // methods
+
+		String sourceFile = null;
+		int attrs = in.readUnsignedShort();
+		for (int i = 0; i < attrs; i++) {
+			String attrName = cf.utf8(in.readUnsignedShort());
+			int len = in.readInt();
+			if ("SourceFile".equals(attrName) && len == 2) {
+				sourceFile = cf.utf8(in.readUnsignedShort());
+			} else {
+				in.skipBytes(len);
+			}
+		}
+
+		Set<String> references = new TreeSet<>();
+		for (int i = 1; i < cf.tags.length; i++) {
+			if (cf.tags[i] == ClassFileReader.CONSTANT_CLASS) {
+				String ref = cf.utf8(cf.refs[i]);
+				if (ref.startsWith("[")) {
+					addDescriptorTypes(ref, references);
+				} else {
+					references.add(ref);
+				}
+			} else if (cf.tags[i] == ClassFileReader.CONSTANT_UTF8) {
+				// Types that are only mentioned in descriptors and signatures
+				addDescriptorTypes((String) cf.pool[i], references);
+			}
+		}
+		references.remove(cf.name);
+
+		return new ClassFileInfo(cf.name, sourceFile, references, Util.getStableID(constants.stream()));
+	}
+
+	private static void addDescriptorTypes(String str, Set<String> refs) {
+		if (str.indexOf(';') < 0) {
+			return;
+		}
+		Matcher m = DESCRIPTOR_TYPE.matcher(str);
+		while (m.find()) {
+			refs.add(m.group(1));
+		}
+	}
+}
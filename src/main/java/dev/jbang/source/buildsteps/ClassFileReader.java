@@ -0,0 +1,134 @@
+package dev.jbang.source.buildsteps;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Minimal class file reader shared by <code>ClassFileInfo</code> and
+ * <code>EntryPoints</code>. Creating the reader parses the constant pool and
+ * the class header (up to and including the interfaces), after that the
+ * fields, methods and attributes can be read from <code>in</code> in the order
+ * they appear in the class file, using the helper methods to resolve constant
+ * pool references and to skip the parts that aren't needed.
+ */
+class ClassFileReader {
+	static final int CONSTANT_UTF8 = 1;
+	static final int CONSTANT_CLASS = 7;
+	static final int CONSTANT_STRING = 8;
+
+	final DataInputStream in;
+	// The value of each Utf8, Integer, Float, Long and Double entry
+	final Object[] pool;
+	final int[] tags;
+	// The Utf8 entry that each Class and String entry points to
+	final int[] refs;
+	// The name of the class in internal form (using slashes)
+	final String name;
+
+	ClassFileReader(InputStream is) throws IOException {
+		in = new DataInputStream(new BufferedInputStream(is));
+		if (in.readInt() != 0xCAFEBABE) {
+			throw new IOException("Not a class file");
+		}
+		in.readUnsignedShort(); // minor
+		in.readUnsignedShort(); // major
+		int count = in.readUnsignedShort();
+		pool = new Object[count];
+		tags = new int[count];
+		refs = new int[count];
+		for (int i = 1; i < count; i++) {
+			int tag = in.readUnsignedByte();
+			tags[i] = tag;
+			switch (tag) {
+			case CONSTANT_UTF8:
+				pool[i] = in.readUTF();
+				break;
+			case 3: // Integer
+				pool[i] = in.readInt();
+				break;
+			case 4: // Float
+				pool[i] = in.readFloat();
+				break;
+			case 5: // Long
+				pool[i] = in.readLong();
+				i++;
+				break;
+			case 6: // Double
+				pool[i] = in.readDouble();
+				i++;
+				break;
+			case CONSTANT_CLASS:
+			case CONSTANT_STRING:
+				refs[i] = in.readUnsignedShort();
+				break;
+			case 16: // MethodType
+			case 19: // Module
+			case 20: // Package
+				in.skipBytes(2);
+				break;
+			case 15: // MethodHandle
+				in.skipBytes(3);
+				break;
+			case 9: // Fieldref
+			case 10: // Methodref
+			case 11: // InterfaceMethodref
+			case 12: // NameAndType
+			case 17: // Dynamic
+			case 18: // InvokeDynamic
+				in.skipBytes(4);
+				break;
+			default:
+				throw new IOException("Unknown constant pool tag " + tag);
+			}
+		}
+
+		in.readUnsignedShort(); // access flags
+		name = utf8(refs[in.readUnsignedShort()]);
+		in.readUnsignedShort(); // super class
+		in.skipBytes(2 * in.readUnsignedShort()); // interfaces
+	}
+
+	/**
+	 * Returns the string of the given Utf8 entry
+	 */
+	String utf8(int idx) throws IOException {
+		Object val = idx > 0 && idx < pool.length ? pool[idx] : null;
+		if (!(val instanceof String)) {
+			throw new IOException("Invalid constant pool reference " + idx);
+		}
+		return (String) val;
+	}
+
+	/**
+	 * Returns the value of the given constant, as referenced by a
+	 * <code>ConstantValue</code> attribute
+	 */
+	Object constant(int idx) throws IOException {
+		if (idx > 0 && idx < tags.length && tags[idx] == CONSTANT_STRING) {
+			// A String constant points to a Utf8 entry
+			return utf8(refs[idx]);
+		}
+		return idx > 0 && idx < pool.length ? pool[idx] : null;
+	}
+
+	/**
+	 * Skips all the fields or all the methods, whichever comes next
+	 */
+	void skipMembers() throws IOException {
+		int members = in.readUnsignedShort();
+		for (int i = 0; i < members; i++) {
+			in.skipBytes(6);
+			skipAttributes();
+		}
+	}
+
+	void skipAttributes() throws IOException {
+		int attrs = in.readUnsignedShort();
+		for (int i = 0; i < attrs; i++) {
+			in.readUnsignedShort();
+			in.skipBytes(in.readInt());
+		}
+	}
+}
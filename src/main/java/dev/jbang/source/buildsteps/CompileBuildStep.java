@@ -1,22 +1,15 @@
 package dev.jbang.source.buildsteps;
 
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.List;
-import java.util.Optional;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 import org.jboss.jandex.ClassInfo;
 import org.jboss.jandex.DotName;
-import org.jboss.jandex.Index;
-import org.jboss.jandex.Indexer;
 import org.jboss.jandex.Type;
 
 import dev.jbang.ExitException;
@@ -28,6 +21,7 @@ import dev.jbang.source.Project;
 import dev.jbang.util.CommandBuffer;
 import dev.jbang.util.ModuleUtil;
 import dev.jbang.util.TemplateEngine;
+import dev.jbang.util.Timings;
 import dev.jbang.util.Util;
 
 import io.quarkus.qute.Template;
@@ -56,18 +50,51 @@ public abstract class CompileBuildStep implements Builder<Project> {
 	protected Project compile() throws IOException {
 		List<String> compileCmd = getCompileCommand();
 
-		// add additional files
 		Project project = ctx.getProject();
+		IncrementalCompilation incremental = null;
+		List<String> sourceFiles = getSourceFiles();
+		List<String> cmd = compileCmd;
+		if (supportsIncrementalCompilation()) {
+			if (IncrementalCompilation.canUse(project, compileCmd)) {
+				incremental = new IncrementalCompilation(ctx);
+				cmd = incremental.prepare(compileCmd, sourceFiles);
+			} else {
+				// Make sure we don't leave any stale state behind
+				Util.deletePath(ctx.getIncrementalDir(), true);
+			}
+		}
+
+		// add additional files
 		project.getMainSourceSet().copyResourcesTo(ctx.getCompileDir());
 
 		generatePom();
 
 		Util.infoMsg(String.format("Building %s for %s...", project.getMainSource().isAgent() ? "javaagent" : "jar",
 				project.getResourceRef().getFile().getFileName().toString()));
-		Util.verboseMsg("Compile: " + String.join(" ", compileCmd));
-		runCompiler(compileCmd);
+		if (cmd != null) {
+			Util.verboseMsg("Compile: " + String.join(" ", cmd));
+			try (Timings.Span span = Timings.start("javac", incremental != null ? "incremental" : null)) {
+				runCompiler(cmd);
+			}
+		}
 
-		searchForMain(ctx.getCompileDir());
+		if (incremental != null && !incremental.complete(compileCmd, sourceFiles)) {
+			// The incremental build wasn't good enough, start over
+			Path compileDir = ctx.getCompileDir();
+			Util.deletePath(compileDir, true);
+			Files.createDirectories(compileDir);
+			project.getMainSourceSet().copyResourcesTo(compileDir);
+			generatePom();
+			Util.verboseMsg("Compile: " + String.join(" ", compileCmd));
+			try (Timings.Span span = Timings.start("javac")) {
+				runCompiler(compileCmd);
+			}
+			incremental.complete(compileCmd, sourceFiles);
+		}
+
+		try (Timings.Span span = Timings.start("search-main")) {
+			searchForMain(ctx.getCompileDir());
+		}
 
 		return project;
 	}
@@ -80,11 +107,7 @@ public abstract class CompileBuildStep implements Builder<Project> {
 		compileCmd.addAll(getCompileCommandOptions());
 
 		// add source files to compile
-		compileCmd.addAll(project.getMainSourceSet()
-			.getSources()
-			.stream()
-			.map(x -> x.getFile().toString())
-			.collect(Collectors.toList()));
+		compileCmd.addAll(getSourceFiles());
 
 		if (project.getModuleName().isPresent()) {
 			if (project.getMainSource() != null && !project.getMainSource().getJavaPackage().isPresent()) {
@@ -103,6 +126,15 @@ public abstract class CompileBuildStep implements Builder<Project> {
 		return compileCmd;
 	}
 
+	private List<String> getSourceFiles() {
+		return ctx.getProject()
+			.getMainSourceSet()
+			.getSources()
+			.stream()
+			.map(x -> x.getFile().toString())
+			.collect(Collectors.toList());
+	}
+
 	private boolean hasModuleInfoFile() {
 		return ctx.getProject()
 			.getMainSourceSet()
@@ -115,7 +147,29 @@ public abstract class CompileBuildStep implements Builder<Project> {
 
 	protected abstract List<String> getCompileCommandOptions() throws IOException;
 
+	/**
+	 * Returns <code>true</code> if the compiler used by this build step can be
+	 * run inside the current JVM when the project's JDK is the one JBang is
+	 * running on. By default compilers are always run as a separate process.
+	 */
+	protected boolean supportsInProcessCompiler() {
+		return false;
+	}
+
+	/**
+	 * Returns <code>true</code> if the compiler used by this build step produces
+	 * class files that can be tracked by <code>IncrementalCompilation</code>.
+	 */
+	protected boolean supportsIncrementalCompilation() {
+		return false;
+	}
+
 	protected void runCompiler(List<String> optionList) throws IOException {
+		if (supportsInProcessCompiler() && InProcessCompiler.canCompile(optionList)) {
+			Util.verboseMsg("Compiling in-process");
+			InProcessCompiler.compile(optionList);
+			return;
+		}
 		runCompiler(CommandBuffer.of(optionList)
 			.applyWindowsMaxProcessLimit()
 			.asProcessBuilder()
@@ -182,78 +236,45 @@ public abstract class CompileBuildStep implements Builder<Project> {
 
 	protected void searchForMain(Path tmpJarDir) {
 		try {
-			// using Files.walk method with try-with-resources
-			try (Stream<Path> paths = Files.walk(tmpJarDir)) {
-				List<Path> items = paths.filter(Files::isRegularFile)
-					.filter(f -> !f.toFile().getName().contains("$"))
-					.filter(f -> f.toFile().getName().endsWith(".class"))
-					.collect(Collectors.toList());
+			List<EntryPoints> classes = EntryPoints.scan(tmpJarDir);
 
-				Indexer indexer = new Indexer();
-				Index index;
-				for (Path item : items) {
-					try (InputStream stream = new FileInputStream(item.toFile())) {
-						indexer.index(stream);
-					}
-				}
-				index = indexer.complete();
-
-				Collection<ClassInfo> classes = index.getKnownClasses();
-
-				Project project = ctx.getProject();
-				if (project.getMainClass() == null) { // if non-null user forced set main
-					List<ClassInfo> mains = classes.stream()
-						.filter(getMainFinder())
+			Project project = ctx.getProject();
+			if (project.getMainClass() == null) { // if non-null user forced set main
+				List<EntryPoints> mains = classes.stream()
+					.filter(ep -> ep.main)
+					.collect(Collectors.toList());
+				String mainName = getSuggestedMain();
+				if (mains.size() > 1 && mainName != null) {
+					List<EntryPoints> suggestedmain = mains.stream()
+						.filter(ep -> ep.simpleName().equals(mainName))
 						.collect(Collectors.toList());
-					String mainName = getSuggestedMain();
-					if (mains.size() > 1 && mainName != null) {
-						List<ClassInfo> suggestedmain = mains.stream()
-							.filter(ci -> ci.simpleName().equals(mainName))
-							.collect(Collectors.toList());
-						if (!suggestedmain.isEmpty()) {
-							mains = suggestedmain;
-						}
+					if (!suggestedmain.isEmpty()) {
+						mains = suggestedmain;
 					}
+				}
 
-					if (!mains.isEmpty()) {
-						project.setMainClass(mains.get(0).name().toString());
-						if (mains.size() > 1) {
-							Util.warnMsg(
-									"Could not locate unique main() method. Use -m to specify explicit main method. Falling back to use first found: "
-											+ mains.stream()
-												.map(x -> x.name().toString())
-												.collect(Collectors.joining(",")));
-						}
+				if (!mains.isEmpty()) {
+					project.setMainClass(mains.get(0).name);
+					if (mains.size() > 1) {
+						Util.warnMsg(
+								"Could not locate unique main() method. Use -m to specify explicit main method. Falling back to use first found: "
+										+ mains.stream()
+											.map(ep -> ep.name)
+											.collect(Collectors.joining(",")));
 					}
 				}
+			}
 
-				if (project.getMainSource().isAgent()) {
-					Optional<ClassInfo> agentmain = classes.stream()
-						.filter(pubClass -> pubClass.method("agentmain",
-								STRINGTYPE,
-								INSTRUMENTATIONTYPE) != null
-								||
-								pubClass.method("agentmain",
-										STRINGTYPE) != null)
-						.findFirst();
-
-					if (agentmain.isPresent()) {
-						project.setAgentMainClass(agentmain.get().name().toString());
-					}
+			if (project.getMainSource().isAgent()) {
+				classes.stream()
+					.filter(ep -> ep.agentMain)
+					.findFirst()
+					.ifPresent(ep -> project.setAgentMainClass(ep.name));
 
-					Optional<ClassInfo> premain = classes.stream()
-						.filter(pubClass -> pubClass.method("premain",
-								STRINGTYPE,
-								INSTRUMENTATIONTYPE) != null
-								||
-								pubClass.method("premain",
-										STRINGTYPE) != null)
-						.findFirst();
-
-					if (premain.isPresent()) {
-						project.setPreMainClass(premain.get().name().toString());
-					}
-				}
+				classes.stream()
+					.filter(ep -> ep.preMain)
+					.findFirst()
+					.ifPresent(ep -> project.setPreMainClass(ep.name));
 			}
 		} catch (IOException e) {
 			throw new ExitException(1, e);
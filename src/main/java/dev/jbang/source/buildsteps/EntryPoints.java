@@ -0,0 +1,100 @@
+package dev.jbang.source.buildsteps;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * The methods of a class that can serve as the entry point of an application
+ * or an agent. Instead of indexing everything it only reads the constant pool
+ * and the method table of each class (using <code>ClassFileReader</code>), the
+ * rest of the class file is never looked at.
+ */
+class EntryPoints {
+	private static final String STRING_ARRAY_PARAMS = "([Ljava/lang/String;)";
+	private static final String NO_PARAMS = "()";
+	private static final String STRING_PARAMS = "(Ljava/lang/String;)";
+	private static final String AGENT_PARAMS = "(Ljava/lang/String;Ljava/lang/instrument/Instrumentation;)";
+
+	final String name;
+	final boolean main;
+	final boolean agentMain;
+	final boolean preMain;
+
+	private EntryPoints(String name, boolean main, boolean agentMain, boolean preMain) {
+		this.name = name;
+		this.main = main;
+		this.agentMain = agentMain;
+		this.preMain = preMain;
+	}
+
+	/**
+	 * Returns the name of the class without its package
+	 */
+	String simpleName() {
+		return name.substring(name.lastIndexOf('.') + 1);
+	}
+
+	/**
+	 * Scans all top-level classes in the given folder, the results are sorted by
+	 * path so they don't depend on the order the file system returns them in
+	 */
+	static List<EntryPoints> scan(Path dir) throws IOException {
+		List<Path> items;
+		try (Stream<Path> paths = Files.walk(dir)) {
+			items = paths.filter(Files::isRegularFile)
+				.filter(f -> !f.getFileName().toString().contains("$"))
+				.filter(f -> f.getFileName().toString().endsWith(".class"))
+				.sorted()
+				.collect(Collectors.toList());
+		}
+		List<EntryPoints> result = new ArrayList<>(items.size());
+		for (Path item : items) {
+			try (InputStream is = Files.newInputStream(item)) {
+				result.add(read(is));
+			}
+		}
+		return result;
+	}
+
+	static EntryPoints read(InputStream is) throws IOException {
+		ClassFileReader cf = new ClassFileReader(is);
+		DataInputStream in = cf.in;
+		String name = cf.name.replace('/', '.');
+
+		cf.skipMembers(); // fields
+
+		boolean main = false;
+		boolean agentMain = false;
+		boolean preMain = false;
+		int methods = in.readUnsignedShort();
+		for (int i = 0; i < methods; i++) {
+			in.readUnsignedShort(); // access flags
+			String methodName = cf.utf8(in.readUnsignedShort());
+			String desc = cf.utf8(in.readUnsignedShort());
+			String params = desc.substring(0, desc.indexOf(')') + 1);
+			switch (methodName) {
+			case "main":
+				main |= params.equals(STRING_ARRAY_PARAMS) || params.equals(NO_PARAMS);
+				break;
+			case "agentmain":
+				agentMain |= params.equals(STRING_PARAMS) || params.equals(AGENT_PARAMS);
+				break;
+			case "premain":
+				preMain |= params.equals(STRING_PARAMS) || params.equals(AGENT_PARAMS);
+				break;
+			default:
+				break;
+			}
+			cf.skipAttributes();
+		}
+		// We're not interested in anything that comes after the methods
+		return new EntryPoints(name, main, agentMain, preMain);
+	}
+}
@@ -0,0 +1,151 @@
+package dev.jbang.source.buildsteps;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import dev.jbang.ExitException;
+import dev.jbang.util.JavaUtil;
+import dev.jbang.util.Util;
+
+/**
+ * Runs <code>javac</code> inside the current JVM using the
+ * <code>javax.tools</code> API instead of forking a new process. This is only
+ * possible when the JDK that should be used for compilation is the same one
+ * JBang itself is running on. Each compilation gets its own
+ * <code>StandardJavaFileManager</code>, it caches the contents of the jars it
+ * opens and those can change between builds (for example in the daemon), and
+ * that way several projects can also be compiled at the same time.
+ *
+ * In-process compilation can be turned off by setting the system property
+ * <code>jbang.build.inprocess</code> to <code>false</code>.
+ */
+public class InProcessCompiler {
+	private static JavaCompiler compiler;
+
+	private InProcessCompiler() {
+	}
+
+	public static boolean isEnabled() {
+		return !"false".equals(System.getProperty("jbang.build.inprocess"));
+	}
+
+	/**
+	 * Determines if the given compile command can be run in-process. This is only
+	 * the case if the compiler binary belongs to the JDK we're currently running
+	 * on and if all the options are known to the in-process compiler.
+	 *
+	 * @param compileCmd The full compile command, including the binary
+	 * @return <code>true</code> if the command can be run in-process
+	 */
+	public static boolean canCompile(List<String> compileCmd) {
+		if (!isEnabled() || JavaUtil.inNativeImage() || compileCmd.isEmpty()) {
+			return false;
+		}
+		if (!isCurrentJavac(compileCmd.get(0))) {
+			return false;
+		}
+		JavaCompiler javac = getCompiler();
+		return javac != null && splitArguments(javac, compileCmd) != null;
+	}
+
+	/**
+	 * Compiles the given command in-process. Make sure to call
+	 * <code>canCompile()</code> first to see if that's possible.
+	 *
+	 * @param compileCmd The full compile command, including the binary
+	 */
+	public static void compile(List<String> compileCmd) throws IOException {
+		JavaCompiler javac = getCompiler();
+		if (javac == null) {
+			throw new ExitException(1, "No in-process Java compiler available");
+		}
+		List<List<String>> args = splitArguments(javac, compileCmd);
+		if (args == null) {
+			throw new ExitException(1, "Compile options not supported by the in-process Java compiler");
+		}
+		List<String> options = args.get(0);
+		List<String> sources = args.get(1);
+
+		PrintWriter out = new PrintWriter(System.err, true);
+		Boolean result;
+		try (StandardJavaFileManager fm = javac.getStandardFileManager(null, null, null)) {
+			Iterable<? extends JavaFileObject> units = fm.getJavaFileObjectsFromStrings(sources);
+			result = javac.getTask(out, fm, null, options, null, units).call();
+		} catch (IllegalArgumentException | IllegalStateException e) {
+			throw new ExitException(1, "Error during compile", e);
+		} finally {
+			out.flush();
+		}
+		if (!Boolean.TRUE.equals(result)) {
+			throw new ExitException(1, "Error during compile");
+		}
+	}
+
+	private static synchronized JavaCompiler getCompiler() {
+		if (compiler == null) {
+			compiler = ToolProvider.getSystemJavaCompiler();
+		}
+		return compiler;
+	}
+
+	/**
+	 * Splits the compile command into options and source files. Returns
+	 * <code>null</code> if the command contains anything the in-process compiler
+	 * can't handle (like unknown options or argument files).
+	 */
+	static List<List<String>> splitArguments(JavaCompiler javac, List<String> compileCmd) {
+		List<String> options = new ArrayList<>();
+		List<String> sources = new ArrayList<>();
+		for (int i = 1; i < compileCmd.size(); i++) {
+			String arg = compileCmd.get(i);
+			if (arg.startsWith("-")) {
+				int argCount = javac.isSupportedOption(arg);
+				if (argCount < 0 || i + argCount >= compileCmd.size()) {
+					Util.verboseMsg("Option not supported by in-process compiler: " + arg);
+					return null;
+				}
+				options.add(arg);
+				for (int j = 0; j < argCount; j++) {
+					options.add(compileCmd.get(++i));
+				}
+			} else if (arg.endsWith(".java")) {
+				sources.add(arg);
+			} else {
+				return null;
+			}
+		}
+		List<List<String>> result = new ArrayList<>();
+		result.add(options);
+		result.add(sources);
+		return result;
+	}
+
+	private static boolean isCurrentJavac(String compilerBinary) {
+		Path javac = Paths.get(compilerBinary);
+		if (!javac.isAbsolute() || !Files.isRegularFile(javac)) {
+			return false;
+		}
+		Path home = Paths.get(System.getProperty("java.home"));
+		String name = Util.isWindows() ? "javac.exe" : "javac";
+		Path current = home.resolve("bin").resolve(name);
+		if (!Files.isRegularFile(current) && home.getParent() != null) {
+			// Java 8 has its "java.home" pointing to the "jre" subfolder
+			current = home.getParent().resolve("bin").resolve(name);
+		}
+		try {
+			return Files.isRegularFile(current) && Files.isSameFile(javac, current);
+		} catch (IOException e) {
+			return false;
+		}
+	}
+}
@@ -0,0 +1,401 @@
+package dev.jbang.source.buildsteps;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.jar.JarFile;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import dev.jbang.source.BuildContext;
+import dev.jbang.source.Project;
+import dev.jbang.util.Util;
+
+/**
+ * Keeps track of the state of the previous build of a project so that the next
+ * build only has to recompile the sources that changed plus the sources that
+ * depend on them. The state consists of a copy of the previously compiled
+ * classes and a JSON file with the content hashes of all sources and the
+ * class-level dependencies between them. The state is stored in the folder
+ * returned by <code>BuildContext.getIncrementalDir()</code>, which is the same
+ * for each build of the same resource.
+ *
+ * Whenever anything unexpected is encountered (changed compiler options,
+ * classes that can't be mapped to sources, changed compile-time constants,
+ * etc.) we simply fall back to a full recompilation.
+ *
+ * Incremental compilation can be turned off by setting the system property
+ * <code>jbang.build.incremental</code> to <code>false</code>.
+ */
+public class IncrementalCompilation {
+	static final String STATE_FILE = "incremental.json";
+	static final String CLASSES_DIR = "classes";
+	static final String PROCESSOR_SERVICE = "META-INF/services/javax.annotation.processing.Processor";
+
+	private static final String NO_CONSTANTS = Util.getStableID(Stream.empty());
+
+	private final BuildContext ctx;
+	private final Path stateDir;
+	private State previous;
+	private List<String> affectedSources;
+
+	static class State {
+		String options;
+		Map<String, String> sources = new TreeMap<>();
+		Map<String, ClassEntry> classes = new TreeMap<>();
+		String jar;
+	}
+
+	static class ClassEntry {
+		String source;
+		String constants;
+		Set<String> references;
+	}
+
+	public IncrementalCompilation(BuildContext ctx) {
+		this.ctx = ctx;
+		this.stateDir = ctx.getIncrementalDir();
+	}
+
+	public static boolean isEnabled() {
+		return !"false".equals(System.getProperty("jbang.build.incremental"));
+	}
+
+	/**
+	 * Prepares the compile directory for an incremental build and returns the
+	 * compile command to use. If an incremental build is possible the previously
+	 * compiled classes will be restored to the compile directory and the returned
+	 * command will only contain the sources that need to be recompiled, otherwise
+	 * the original command will be returned unchanged.
+	 *
+	 * @param compileCmd  The full compile command
+	 * @param sourceFiles The source files that are part of the compile command
+	 * @return The compile command to run or <code>null</code> if no compilation
+	 *         is needed at all
+	 */
+	public List<String> prepare(List<String> compileCmd, List<String> sourceFiles) throws IOException {
+		previous = readState(stateDir);
+		affectedSources = null;
+		if (previous == null) {
+			Util.verboseMsg("Full compile, no previous build state found");
+			return compileCmd;
+		}
+		if (!optionsFingerprint(compileCmd, sourceFiles).equals(previous.options)) {
+			Util.verboseMsg("Full compile, compile options have changed since previous build");
+			return compileCmd;
+		}
+		Path prevClasses = stateDir.resolve(CLASSES_DIR);
+		if (!Files.isDirectory(prevClasses)) {
+			return compileCmd;
+		}
+
+		Map<String, String> hashes = hashSources(sourceFiles);
+		Set<String> changed = new TreeSet<>();
+		for (Map.Entry<String, String> e : hashes.entrySet()) {
+			if (!e.getValue().equals(previous.sources.get(e.getKey()))) {
+				changed.add(e.getKey());
+			}
+		}
+		Set<String> removed = new TreeSet<>(previous.sources.keySet());
+		removed.removeAll(hashes.keySet());
+		for (String src : removed) {
+			if (hasConstants(src)) {
+				Util.verboseMsg("Full compile, removed source " + src + " defined compile-time constants");
+				return compileCmd;
+			}
+		}
+
+		// Find all sources that (transitively) depend on the changed ones
+		Set<String> affected = new TreeSet<>(changed);
+		Set<String> dirty = new TreeSet<>(changed);
+		dirty.addAll(removed);
+		while (!dirty.isEmpty()) {
+			Set<String> dirtyClasses = classesOf(dirty);
+			dirty = new TreeSet<>();
+			for (ClassEntry ce : previous.classes.values()) {
+				if (ce.source != null && !affected.contains(ce.source) && hashes.containsKey(ce.source)
+						&& !Collections.disjoint(ce.references, dirtyClasses)) {
+					affected.add(ce.source);
+					dirty.add(ce.source);
+				}
+			}
+		}
+
+		// Restore the previous classes, minus the ones we're going to recompile
+		Set<String> staleClasses = classesOf(affected);
+		staleClasses.addAll(classesOf(removed));
+		Path compileDir = ctx.getCompileDir();
+		for (Map.Entry<String, ClassEntry> e : previous.classes.entrySet()) {
+			if (!staleClasses.contains(e.getKey())) {
+				Path src = prevClasses.resolve(e.getKey() + ".class");
+				Path dest = compileDir.resolve(e.getKey() + ".class");
+				if (!Files.isRegularFile(src)) {
+					Util.verboseMsg("Full compile, previously compiled class missing: " + src);
+					Util.deletePath(compileDir, true);
+					Files.createDirectories(compileDir);
+					return compileCmd;
+				}
+				Files.createDirectories(dest.getParent());
+				Files.copy(src, dest, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+			}
+		}
+
+		affectedSources = new ArrayList<>(affected);
+		Util.verboseMsg("Incremental compile of " + affected.size() + " out of " + sourceFiles.size()
+				+ " sources, changed: " + changed + ", removed: " + removed);
+		if (affected.isEmpty()) {
+			return null;
+		}
+		List<String> cmd = new ArrayList<>(compileCmd);
+		cmd.removeAll(sourceFiles);
+		cmd.addAll(affected);
+		addToClassPath(cmd, compileDir.toAbsolutePath().toString());
+		return cmd;
+	}
+
+	/**
+	 * Returns <code>true</code> if the last call to <code>prepare()</code> resulted
+	 * in an incremental build
+	 */
+	public boolean isIncremental() {
+		return affectedSources != null;
+	}
+
+	/**
+	 * Analyzes the result of the compilation and stores the build state for the
+	 * next build. Returns <code>false</code> if the result of the incremental
+	 * compilation can't be trusted and a full recompilation is needed.
+	 */
+	public boolean complete(List<String> compileCmd, List<String> sourceFiles) throws IOException {
+		Path compileDir = ctx.getCompileDir();
+		Map<String, ClassEntry> classes = analyzeClasses(compileDir, sourceFiles);
+		if (classes == null) {
+			// We can't do incremental builds for this project
+			Util.deletePath(stateDir, true);
+			return true;
+		}
+		if (isIncremental()) {
+			Set<String> recompiled = new HashSet<>(affectedSources);
+			for (Map.Entry<String, ClassEntry> e : classes.entrySet()) {
+				if (recompiled.contains(e.getValue().source)) {
+					ClassEntry prev = previous.classes.get(e.getKey());
+					String prevConstants = prev != null ? prev.constants : NO_CONSTANTS;
+					if (!prevConstants.equals(e.getValue().constants)) {
+						Util.verboseMsg("Compile-time constants changed in " + e.getKey() + ", full compile needed");
+						Util.deletePath(stateDir, true);
+						return false;
+					}
+				}
+			}
+		}
+
+		State state = new State();
+		state.options = optionsFingerprint(compileCmd, sourceFiles);
+		state.sources = hashSources(sourceFiles);
+		state.classes = classes;
+		state.jar = previous != null ? previous.jar : null;
+
+		Path classesDir = stateDir.resolve(CLASSES_DIR);
+		Util.deletePath(classesDir, true);
+		for (String cls : classes.keySet()) {
+			Path dest = classesDir.resolve(cls + ".class");
+			Files.createDirectories(dest.getParent());
+			Files.copy(compileDir.resolve(cls + ".class"), dest, StandardCopyOption.COPY_ATTRIBUTES);
+		}
+		writeState(stateDir, state);
+		return true;
+	}
+
+	/**
+	 * Records the location of the jar that was built from the compiled classes so
+	 * the next build can patch it instead of creating a new one from scratch.
+	 */
+	public static void recordJar(BuildContext ctx, Path jar) throws IOException {
+		State state = readState(ctx.getIncrementalDir());
+		if (state != null) {
+			state.jar = jar.toAbsolutePath().toString();
+			writeState(ctx.getIncrementalDir(), state);
+		}
+	}
+
+	/**
+	 * Returns the jar of the previous build, if any
+	 */
+	public static Optional<Path> previousJar(BuildContext ctx) {
+		State state = readState(ctx.getIncrementalDir());
+		if (state == null || state.jar == null) {
+			return Optional.empty();
+		}
+		Path jar = Paths.get(state.jar);
+		if (!Files.isRegularFile(jar) || jar.equals(ctx.getJarFile().toAbsolutePath())) {
+			return Optional.empty();
+		}
+		return Optional.of(jar);
+	}
+
+	/**
+	 * Determines if incremental compilation can be used for the given project.
+	 * That's not the case when annotation processors might run, because
+	 * processors that aggregate information from all sources (into service files,
+	 * native-image configuration, generated sources, etc) would only see the
+	 * sources that get recompiled.
+	 */
+	public static boolean canUse(Project project, List<String> compileCmd) {
+		if (!isEnabled()
+				|| Util.isFresh()
+				|| project.getModuleName().isPresent()
+				|| project.getMainSourceSet().getSources().size() <= 1) {
+			return false;
+		}
+		if (mayRunAnnotationProcessors(compileCmd)) {
+			Util.verboseMsg("No incremental compilation, annotation processors may be used");
+			return false;
+		}
+		return true;
+	}
+
+	static boolean mayRunAnnotationProcessors(List<String> compileCmd) {
+		if (compileCmd.contains("-proc:none")) {
+			return false;
+		}
+		for (int i = 0; i < compileCmd.size(); i++) {
+			String arg = compileCmd.get(i);
+			if (arg.equals("-processor") || arg.equals("-processorpath") || arg.equals("--processor-path")
+					|| arg.equals("--processor-module-path")) {
+				return true;
+			}
+			if ((arg.equals("-classpath") || arg.equals("-cp") || arg.equals("--class-path"))
+					&& i + 1 < compileCmd.size()) {
+				for (String entry : compileCmd.get(i + 1).split(File.pathSeparator)) {
+					if (!entry.isEmpty() && hasProcessorService(Paths.get(entry))) {
+						return true;
+					}
+				}
+			}
+		}
+		return false;
+	}
+
+	private static boolean hasProcessorService(Path path) {
+		if (Files.isDirectory(path)) {
+			return Files.isRegularFile(path.resolve(PROCESSOR_SERVICE));
+		}
+		if (Files.isRegularFile(path)) {
+			try (JarFile jar = new JarFile(path.toFile())) {
+				return jar.getEntry(PROCESSOR_SERVICE) != null;
+			} catch (IOException e) {
+				// Not a jar, can't contain processors
+			}
+		}
+		return false;
+	}
+
+	private Map<String, ClassEntry> analyzeClasses(Path compileDir, List<String> sourceFiles) throws IOException {
+		// Map "package/FileName.java" to the actual source file
+		Map<String, String> sourcesByName = new HashMap<>();
+		for (String file : sourceFiles) {
+			Path path = Paths.get(file);
+			String pkg = Util.getSourcePackage(Util.readString(path))
+				.map(p -> p.replace('.', '/') + "/")
+				.orElse("");
+			if (sourcesByName.put(pkg + path.getFileName(), file) != null) {
+				Util.verboseMsg("No incremental compilation, multiple sources named " + pkg + path.getFileName());
+				return null;
+			}
+		}
+		Map<String, ClassEntry> classes = new TreeMap<>();
+		List<Path> classFiles;
+		try (Stream<Path> files = Files.walk(compileDir)) {
+			classFiles = files.filter(f -> f.getFileName().toString().endsWith(".class"))
+				.collect(Collectors.toList());
+		}
+		for (Path classFile : classFiles) {
+			ClassFileInfo info = ClassFileInfo.read(classFile);
+			String source = info.sourceFile != null
+					? sourcesByName.get(info.packagePath().isEmpty() ? info.sourceFile
+							: info.packagePath() + "/" + info.sourceFile)
+					: null;
+			if (source == null) {
+				Util.verboseMsg("No incremental compilation, unable to determine source of class " + info.name);
+				return null;
+			}
+			ClassEntry ce = new ClassEntry();
+			ce.source = source;
+			ce.constants = info.constants;
+			ce.references = info.references;
+			classes.put(info.name, ce);
+		}
+		return classes;
+	}
+
+	private Set<String> classesOf(Set<String> sources) {
+		return previous.classes.entrySet()
+			.stream()
+			.filter(e -> sources.contains(e.getValue().source))
+			.map(Map.Entry::getKey)
+			.collect(Collectors.toCollection(TreeSet::new));
+	}
+
+	private boolean hasConstants(String source) {
+		return previous.classes.values()
+			.stream()
+			.anyMatch(ce -> source.equals(ce.source) && !NO_CONSTANTS.equals(ce.constants));
+	}
+
+	private static Map<String, String> hashSources(List<String> sourceFiles) throws IOException {
+		Map<String, String> hashes = new TreeMap<>();
+		for (String src : sourceFiles) {
+			hashes.put(src, Util.getStableID(Util.readString(Paths.get(src))));
+		}
+		return hashes;
+	}
+
+	private String optionsFingerprint(List<String> compileCmd, List<String> sourceFiles) {
+		// The output folder changes with each build, so we leave it out
+		String compileDir = ctx.getCompileDir().toAbsolutePath().toString();
+		return Util.getStableID(compileCmd.stream()
+			.filter(arg -> !sourceFiles.contains(arg) && !arg.equals(compileDir))
+			.map(arg -> arg + "\n"));
+	}
+
+	private static void addToClassPath(List<String> cmd, String path) {
+		int idx = cmd.indexOf("-classpath");
+		if (idx >= 0 && idx + 1 < cmd.size()) {
+			cmd.set(idx + 1, path + File.pathSeparator + cmd.get(idx + 1));
+		} else {
+			cmd.add(1, "-classpath");
+			cmd.add(2, path);
+		}
+	}
+
+	private static State readState(Path stateDir) {
+		Path stateFile = stateDir.resolve(STATE_FILE);
+		if (!Files.isReadable(stateFile)) {
+			return null;
+		}
+		try (Reader r = Files.newBufferedReader(stateFile)) {
+			return new Gson().fromJson(r, State.class);
+		} catch (IOException | JsonParseException e) {
+			Util.verboseMsg("Unable to read incremental build state " + stateFile, e);
+			return null;
+		}
+	}
+
+	private static void writeState(Path stateDir, State state) throws IOException {
+		Files.createDirectories(stateDir);
+		Path tmp = Files.createTempFile(stateDir, "incremental", ".tmp");
+		try (Writer w = Files.newBufferedWriter(tmp)) {
+			new Gson().toJson(state, w);
+		}
+		Files.move(tmp, stateDir.resolve(STATE_FILE), StandardCopyOption.REPLACE_EXISTING);
+	}
+}
@@ -3,6 +3,7 @@ package dev.jbang.source.buildsteps;
 import java.io.IOException;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.locks.ReentrantLock;
 
 import dev.jbang.source.BuildContext;
 import dev.jbang.source.Builder;
@@ -15,16 +16,31 @@ import dev.jbang.spi.IntegrationResult;
  * "compile" step and runs any integrations that might be found. Those
  * integration can make changes to the project that will be used as the input
  * for the next build step.
+ *
+ * Integrations change JVM-wide state (they replace the system properties and
+ * redirect <code>System.out</code>), so when sub-projects get built in
+ * parallel only one integration step is allowed to run at a time.
  */
 public class IntegrationBuildStep implements Builder<IntegrationResult> {
 	private final BuildContext ctx;
 
+	private static final ReentrantLock lock = new ReentrantLock();
+
 	public IntegrationBuildStep(BuildContext ctx) {
 		this.ctx = ctx;
 	}
 
 	@Override
 	public IntegrationResult build() throws IOException {
+		lock.lock();
+		try {
+			return runWithProperties();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private IntegrationResult runWithProperties() throws IOException {
 		// todo: setting properties to avoid loosing properties in integration call.
 		Project project = ctx.getProject();
 		Properties oldProps = System.getProperties();
@@ -4,6 +4,7 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Optional;
 import java.util.jar.Attributes;
 import java.util.jar.Manifest;
 
@@ -31,11 +32,53 @@ public class JarBuildStep implements Builder<Project> {
 	@Override
 	public Project build() throws IOException {
 		Project project = ctx.getProject();
-		createJar(project, ctx.getCompileDir(), ctx.getJarFile());
+		Optional<Path> previousJar = IncrementalCompilation.previousJar(ctx);
+		if (previousJar.isPresent()) {
+			patchJar(project, previousJar.get(), ctx.getCompileDir(), ctx.getJarFile());
+		} else {
+			createJar(project, ctx.getCompileDir(), ctx.getJarFile());
+		}
+		IncrementalCompilation.recordJar(ctx, ctx.getJarFile());
 		return project;
 	}
 
 	public static void createJar(Project prj, Path compileDir, Path jarFile) throws IOException {
+		Manifest manifest = createManifest(prj);
+		if (Files.isRegularFile(compileDir.resolve("module-info.class"))) {
+			// The jar tool also records the main class in the module descriptor
+			JarUtil.createJar(jarFile, compileDir, manifest, prj.getMainClass(), prj.projectJdk());
+		} else {
+			JarUtil.writeJar(jarFile, compileDir, manifest, prj.getMainClass(), isCompressed());
+		}
+		writeManifestCopy(prj, compileDir, manifest);
+	}
+
+	/**
+	 * Jars get compressed by default, setting the system property
+	 * <code>jbang.build.jar.compress</code> to <code>false</code> stores their
+	 * entries uncompressed instead. That's useful for jars that never leave the
+	 * cache, because they are faster to write and to load classes from.
+	 */
+	public static boolean isCompressed() {
+		return !"false".equals(System.getProperty("jbang.build.jar.compress"));
+	}
+
+	/**
+	 * Creates the jar by patching the jar of a previous build, only adding the
+	 * files that changed since that build. Falls back to creating the jar from
+	 * scratch if that's not possible.
+	 */
+	public static void patchJar(Project prj, Path previousJar, Path compileDir, Path jarFile)
+			throws IOException {
+		Manifest manifest = createManifest(prj);
+		if (JarUtil.patchJar(previousJar, jarFile, compileDir, manifest, prj.getMainClass(), isCompressed())) {
+			writeManifestCopy(prj, compileDir, manifest);
+		} else {
+			createJar(prj, compileDir, jarFile);
+		}
+	}
+
+	private static Manifest createManifest(Project prj) {
 		Manifest manifest = new Manifest();
 		manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
 
@@ -46,9 +89,10 @@ public class JarBuildStep implements Builder<Project> {
 			String val = buildJdk >= 9 ? Integer.toString(buildJdk) : "1." + buildJdk;
 			manifest.getMainAttributes().putValue(ATTR_BUILD_JDK, val);
 		}
+		return manifest;
+	}
 
-		JarUtil.createJar(jarFile, compileDir, manifest, prj.getMainClass(), prj.projectJdk());
-
+	private static void writeManifestCopy(Project prj, Path compileDir, Manifest manifest) throws IOException {
 		if (AppBuilder.keepClasses()) {
 			// In the case the "keep classes" option is specified we write
 			// an extra copy if the manifest to its proper location.
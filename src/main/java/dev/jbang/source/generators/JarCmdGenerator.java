@@ -24,7 +24,9 @@ import dev.jbang.ExitException;
 import dev.jbang.Settings;
 import dev.jbang.devkitman.Jdk;
 import dev.jbang.source.BuildContext;
+import dev.jbang.source.ClassDataSharing;
 import dev.jbang.source.Project;
+import dev.jbang.source.RuntimeProfile;
 import dev.jbang.source.buildsteps.CompileBuildStep;
 import dev.jbang.util.CommandBuffer;
 import dev.jbang.util.Glob;
@@ -36,7 +38,9 @@ public class JarCmdGenerator extends BaseCmdGenerator<JarCmdGenerator> {
 	private List<String> runtimeOptions = Collections.emptyList();
 	private boolean assertions;
 	private boolean systemAssertions;
-	private boolean classDataSharing;
+	private Boolean classDataSharing;
+	private boolean aheadOfTimeCache;
+	private String runtimeProfile;
 	private String mainClass;
 	private boolean mainRequired;
 	private String moduleName;
@@ -60,11 +64,21 @@ public class JarCmdGenerator extends BaseCmdGenerator<JarCmdGenerator> {
 		return this;
 	}
 
-	public JarCmdGenerator classDataSharing(boolean classDataSharing) {
+	public JarCmdGenerator classDataSharing(Boolean classDataSharing) {
 		this.classDataSharing = classDataSharing;
 		return this;
 	}
 
+	public JarCmdGenerator aheadOfTimeCache(boolean aheadOfTimeCache) {
+		this.aheadOfTimeCache = aheadOfTimeCache;
+		return this;
+	}
+
+	public JarCmdGenerator runtimeProfile(String runtimeProfile) {
+		this.runtimeProfile = runtimeProfile;
+		return this;
+	}
+
 	public JarCmdGenerator mainClass(String mainClass) {
 		this.mainClass = mainClass;
 		return this;
@@ -193,33 +207,36 @@ public class JarCmdGenerator extends BaseCmdGenerator<JarCmdGenerator> {
 				classpath = ctx.getJarFile().toAbsolutePath() + Settings.CP_SEPARATOR + classpath.trim();
 			}
 		}
+		List<String> classpathArgs = Collections.emptyList();
 		if (!Util.isBlankString(classpath)) {
 			if (runAsModule) {
-				optionalArgs.addAll(Arrays.asList("-p", classpath));
+				classpathArgs = Arrays.asList("-p", classpath);
 			} else {
-				optionalArgs.addAll(Arrays.asList("-classpath", classpath));
+				classpathArgs = Arrays.asList("-classpath", classpath);
 			}
+			optionalArgs.addAll(classpathArgs);
 		}
 
-		if (classDataSharing || project.enableCDS()) {
-			if (jdk.majorVersion() >= 13) {
-				Path cdsJsa = ctx.getJsaFile().toAbsolutePath();
-				if (Files.exists(cdsJsa)) {
-					Util.verboseMsg("CDS: Using shared archive classes from " + cdsJsa);
-					optionalArgs.add("-XX:SharedArchiveFile=" + cdsJsa);
-				} else {
-					Util.verboseMsg("CDS: Archiving Classes At Exit at " + cdsJsa);
-					optionalArgs.add("-XX:ArchiveClassesAtExit=" + cdsJsa);
-				}
-			} else {
-				Util.warnMsg(
-						"ClassDataSharing can only be used on Java versions 13 and later, you are on "
-								+ jdk.majorVersion() + ". Rerun with `--java 13+` to enforce the minimum version");
-			}
+		if (aheadOfTimeCache || !Boolean.FALSE.equals(classDataSharing) || project.enableCDS()) {
+			optionalArgs.addAll(ClassDataSharing.getOptions(ctx, jdk,
+					aheadOfTimeCache || Boolean.TRUE.equals(classDataSharing) || project.enableCDS(),
+					aheadOfTimeCache, classpathArgs));
 		}
 
 		fullArgs.add(javacmd);
 
+		String profileName = runtimeProfile != null ? runtimeProfile : project.getRuntimeProfile();
+		if (profileName == null) {
+			profileName = Settings.getRuntimeProfile();
+		}
+		if (profileName != null) {
+			List<String> userOptions = new ArrayList<>(project.getRuntimeOptions());
+			userOptions.addAll(runtimeOptions);
+			List<String> profileOptions = RuntimeProfile.of(profileName).getOptions(jdk, userOptions);
+			Util.verboseMsg("Runtime profile " + profileName + ": " + String.join(" ", profileOptions));
+			fullArgs.addAll(profileOptions);
+		}
+
 		fullArgs.addAll(project.getRuntimeOptions());
 		fullArgs.addAll(runtimeOptions);
 		fullArgs.addAll(ctx.resolveClassPath().getAutoDectectedModuleArguments(jdk));
@@ -47,6 +47,7 @@ public abstract class Directives {
 		public static final String PREVIEW = "PREVIEW";
 		public static final String REPOS = "REPOS";
 		public static final String RUNTIME_OPTIONS = "RUNTIME_OPTIONS";
+		public static final String RUNTIME_PROFILE = "RUNTIME_PROFILE";
 		public static final String SOURCES = "SOURCES";
 
 		// Directives introduced by non-Java source types extensions
@@ -246,6 +247,11 @@ public abstract class Directives {
 			.collect(Collectors.toList());
 	}
 
+	@Nullable
+	public String runtimeProfile() {
+		return collectOptions(Names.RUNTIME_PROFILE).reduce((first, second) -> second).orElse(null);
+	}
+
 	@NonNull
 	public List<String> nativeOptions() {
 		return collectOptions(Names.NATIVE_OPTIONS).collect(Collectors.toList());
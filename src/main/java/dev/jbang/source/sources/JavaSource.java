@@ -107,6 +107,16 @@ public class JavaSource extends Source {
 				return optionList;
 			}
 
+			@Override
+			protected boolean supportsInProcessCompiler() {
+				return true;
+			}
+
+			@Override
+			protected boolean supportsIncrementalCompilation() {
+				return true;
+			}
+
 			@Override
 			protected String getMainExtension() {
 				return Type.java.extension;
@@ -120,6 +120,22 @@ public class IntegrationManager {
 		return result;
 	}
 
+	/**
+	 * Checks if any of the dependencies of the project provide integrations
+	 */
+	public static boolean hasIntegrations(BuildContext ctx) {
+		List<Path> deps = ctx.resolveClassPath()
+			.getArtifacts()
+			.stream()
+			.map(ArtifactInfo::getFile)
+			.collect(Collectors.toList());
+		try (URLClassLoader integrationCl = getClassLoader(deps)) {
+			return !loadIntegrationClassNames(integrationCl).isEmpty();
+		} catch (IOException e) {
+			throw new ExitException(EXIT_GENERIC_ERROR, "Unable to look for integrations", e);
+		}
+	}
+
 	@NonNull
 	private static URLClassLoader getClassLoader(Collection<Path> deps) {
 		URL[] urls = deps.stream().map(path -> {
@@ -0,0 +1,14 @@
+package dev.jbang.util;
+
+/**
+ * Thrown when the user needs to be asked something while there is no way to
+ * interact with them (see {@link Util#setInputAvailable(boolean)}).
+ */
+public class InputRequiredException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	public InputRequiredException(String message) {
+		super(message);
+	}
+}
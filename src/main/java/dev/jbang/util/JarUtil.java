@@ -2,18 +2,47 @@ package dev.jbang.util;
 
 import static dev.jbang.util.JavaUtil.resolveInJavaHome;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.ArrayList;
-import java.util.List;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.jar.Attributes;
+import java.util.jar.JarFile;
 import java.util.jar.Manifest;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.ZipEntry;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipFile;
 
 import dev.jbang.ExitException;
 import dev.jbang.devkitman.Jdk;
 
 public final class JarUtil {
+	// Below this number of files compressing in parallel isn't worth the overhead
+	private static final int PARALLEL_THRESHOLD = 32;
+
+	// The timestamp used for all entries to make the jars we write reproducible,
+	// the same local date and time gets stored in the jar whatever the time zone
+	private static final long ENTRY_TIME = LocalDateTime.of(1980, 2, 1, 0, 0)
+		.atZone(ZoneId.systemDefault())
+		.toInstant()
+		.toEpochMilli();
+
 	private JarUtil() {
 	}
 
@@ -27,6 +56,259 @@ public final class JarUtil {
 		runJarCommand(jar, "u", null, manifest, mainClass, jdk);
 	}
 
+	/**
+	 * Creates a jar from all the files in the given folder without running the
+	 * <code>jar</code> tool. When compressing, and there are enough files to make
+	 * it worthwhile, the entries get compressed in parallel and are then streamed
+	 * into the jar. Otherwise the entries are written one by one, uncompressed
+	 * (STORED) entries make the jar faster to write and to load classes from.
+	 *
+	 * The result is reproducible: the entries are always written in the same
+	 * order and all get the same timestamp, so the same files result in a jar
+	 * with the exact same contents.
+	 *
+	 * @param jar       The jar to create
+	 * @param src       The folder with the files that should end up in the jar
+	 * @param manifest  The manifest to use for the new jar
+	 * @param mainClass The main class to add to the manifest or <code>null</code>
+	 * @param compress  Whether to compress the entries or to store them as-is
+	 */
+	public static void writeJar(Path jar, Path src, Manifest manifest, String mainClass, boolean compress)
+			throws IOException {
+		Map<String, Path> files = listFiles(src);
+		Set<String> dirs = dirsOf(files.keySet());
+
+		Util.verboseMsg("Writing " + files.size() + (compress ? " compressed" : " stored") + " entries to " + jar);
+		Path dir = jar.toAbsolutePath().getParent();
+		Files.createDirectories(dir);
+		Path tmpJar = Files.createTempFile(dir, "jbang-jar", ".jar");
+		try {
+			try (ZipArchiveOutputStream out = new ZipArchiveOutputStream(tmpJar.toFile())) {
+				writeManifest(out, manifest, mainClass);
+				for (String name : dirs) {
+					out.putArchiveEntry(newEntry(name));
+					out.closeArchiveEntry();
+				}
+				if (compress && files.size() >= PARALLEL_THRESHOLD) {
+					writeEntriesInParallel(out, files);
+				} else {
+					for (Map.Entry<String, Path> f : files.entrySet()) {
+						ZipArchiveEntry entry = newEntry(f.getKey());
+						entry.setMethod(compress ? ZipEntry.DEFLATED : ZipEntry.STORED);
+						out.putArchiveEntry(entry);
+						Files.copy(f.getValue(), out);
+						out.closeArchiveEntry();
+					}
+				}
+			}
+			Files.move(tmpJar, jar, StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			Util.deletePath(tmpJar, true);
+		}
+	}
+
+	/**
+	 * Compresses the files on a thread pool, a limited number of files ahead of
+	 * the one that's being written, while writing the results in order. That way
+	 * the jar's contents don't depend on which thread finished first.
+	 */
+	private static void writeEntriesInParallel(ZipArchiveOutputStream out, Map<String, Path> files)
+			throws IOException {
+		int threads = Math.min(Runtime.getRuntime().availableProcessors(), files.size() / PARALLEL_THRESHOLD + 1);
+		ExecutorService executor = Executors.newFixedThreadPool(threads, r -> {
+			Thread t = new Thread(r, "jbang-jar");
+			t.setDaemon(true);
+			return t;
+		});
+		try {
+			List<Map.Entry<String, Path>> todo = new ArrayList<>(files.entrySet());
+			Deque<Future<Deflated>> pending = new ArrayDeque<>();
+			int next = 0;
+			for (Map.Entry<String, Path> f : todo) {
+				while (next < todo.size() && pending.size() < threads * 4) {
+					Path file = todo.get(next++).getValue();
+					pending.add(executor.submit(() -> deflate(file)));
+				}
+				Deflated d = pending.remove().get();
+				ZipArchiveEntry entry = newEntry(f.getKey());
+				entry.setMethod(ZipEntry.DEFLATED);
+				entry.setSize(d.size);
+				entry.setCompressedSize(d.data.length);
+				entry.setCrc(d.crc);
+				out.addRawArchiveEntry(entry, new ByteArrayInputStream(d.data));
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while writing jar", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IOException("Error while writing jar", e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private static class Deflated {
+		final byte[] data;
+		final long size;
+		final long crc;
+
+		Deflated(byte[] data, long size, long crc) {
+			this.data = data;
+			this.size = size;
+			this.crc = crc;
+		}
+	}
+
+	private static Deflated deflate(Path file) throws IOException {
+		byte[] bytes = Files.readAllBytes(file);
+		CRC32 crc = new CRC32();
+		crc.update(bytes);
+		Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+		try {
+			ByteArrayOutputStream bos = new ByteArrayOutputStream(bytes.length / 2 + 64);
+			try (DeflaterOutputStream dos = new DeflaterOutputStream(bos, deflater)) {
+				dos.write(bytes);
+			}
+			return new Deflated(bos.toByteArray(), bytes.length, crc.getValue());
+		} finally {
+			deflater.end();
+		}
+	}
+
+	private static ZipArchiveEntry newEntry(String name) {
+		ZipArchiveEntry entry = new ZipArchiveEntry(name);
+		entry.setTime(ENTRY_TIME);
+		return entry;
+	}
+
+	private static Map<String, Path> listFiles(Path src) throws IOException {
+		Map<String, Path> files = new TreeMap<>();
+		try (Stream<Path> s = Files.walk(src)) {
+			s.filter(Files::isRegularFile)
+				.forEach(f -> files.put(src.relativize(f).toString().replace('\\', '/'), f));
+		}
+		files.remove(JarFile.MANIFEST_NAME);
+		return files;
+	}
+
+	private static void writeManifest(ZipArchiveOutputStream out, Manifest manifest, String mainClass)
+			throws IOException {
+		Manifest mf = manifest != null ? new Manifest(manifest) : new Manifest();
+		mf.getMainAttributes().putIfAbsent(Attributes.Name.MANIFEST_VERSION, "1.0");
+		if (mainClass != null) {
+			mf.getMainAttributes().put(Attributes.Name.MAIN_CLASS, mainClass);
+		}
+		out.putArchiveEntry(newEntry("META-INF/"));
+		out.closeArchiveEntry();
+		out.putArchiveEntry(newEntry(JarFile.MANIFEST_NAME));
+		mf.write(out);
+		out.closeArchiveEntry();
+	}
+
+	/**
+	 * Creates a new jar by patching a previously built one. Files in the
+	 * <code>src</code> folder whose size and CRC match an entry in the old jar
+	 * that was stored with the same method get that entry copied as-is (without
+	 * decompressing and recompressing it), all others are added from the folder.
+	 * The entries are written in the same order and with the same method and
+	 * timestamps as {@link #writeJar(Path, Path, Manifest, String, boolean)}
+	 * would, so the result is the same as building the jar from scratch. If the
+	 * old jar contains entries that no longer exist in the <code>src</code>
+	 * folder the jar can't be patched and <code>false</code> is returned.
+	 *
+	 * @param oldJar    The previously built jar
+	 * @param jar       The jar to create
+	 * @param src       The folder with the files that should end up in the jar
+	 * @param manifest  The manifest to use for the new jar
+	 * @param mainClass The main class to add to the manifest or <code>null</code>
+	 * @param compress  Whether to compress the entries or to store them as-is
+	 * @return <code>true</code> if the new jar was created
+	 */
+	public static boolean patchJar(Path oldJar, Path jar, Path src, Manifest manifest, String mainClass,
+			boolean compress) throws IOException {
+		Map<String, Path> files = listFiles(src);
+		int method = compress ? ZipEntry.DEFLATED : ZipEntry.STORED;
+
+		try (ZipFile old = ZipFile.builder().setFile(oldJar.toFile()).get()) {
+			Map<String, ZipArchiveEntry> oldEntries = new HashMap<>();
+			for (ZipArchiveEntry entry : Collections.list(old.getEntries())) {
+				if (entry.isDirectory() || entry.getName().equalsIgnoreCase(JarFile.MANIFEST_NAME)) {
+					continue;
+				}
+				if (!files.containsKey(entry.getName())) {
+					Util.verboseMsg("Can't patch jar, " + entry.getName() + " was removed");
+					return false;
+				}
+				oldEntries.put(entry.getName(), entry);
+			}
+
+			Files.createDirectories(jar.toAbsolutePath().getParent());
+			Path tmpJar = Files.createTempFile(jar.toAbsolutePath().getParent(), "jbang-patch", ".jar");
+			int reused = 0;
+			try {
+				try (ZipArchiveOutputStream out = new ZipArchiveOutputStream(tmpJar.toFile())) {
+					writeManifest(out, manifest, mainClass);
+					for (String name : dirsOf(files.keySet())) {
+						out.putArchiveEntry(newEntry(name));
+						out.closeArchiveEntry();
+					}
+					for (Map.Entry<String, Path> f : files.entrySet()) {
+						ZipArchiveEntry prev = oldEntries.get(f.getKey());
+						if (prev != null && prev.getMethod() == method && isSameContent(prev, f.getValue())) {
+							ZipArchiveEntry entry = newEntry(f.getKey());
+							entry.setMethod(method);
+							entry.setSize(prev.getSize());
+							entry.setCompressedSize(prev.getCompressedSize());
+							entry.setCrc(prev.getCrc());
+							out.addRawArchiveEntry(entry, old.getRawInputStream(prev));
+							reused++;
+						} else {
+							ZipArchiveEntry entry = newEntry(f.getKey());
+							entry.setMethod(method);
+							out.putArchiveEntry(entry);
+							Files.copy(f.getValue(), out);
+							out.closeArchiveEntry();
+						}
+					}
+				}
+				Files.move(tmpJar, jar, StandardCopyOption.REPLACE_EXISTING);
+			} finally {
+				Util.deletePath(tmpJar, true);
+			}
+			Util.verboseMsg("Patched " + oldJar + " into " + jar + ", reused " + reused + " of " + files.size()
+					+ " entries");
+		}
+		return true;
+	}
+
+	private static boolean isSameContent(ZipArchiveEntry entry, Path file) throws IOException {
+		if (entry.getSize() != Files.size(file)) {
+			return false;
+		}
+		CRC32 crc = new CRC32();
+		crc.update(Files.readAllBytes(file));
+		return entry.getCrc() == crc.getValue();
+	}
+
+	/**
+	 * Returns the folder entries that go with the given file entries
+	 */
+	private static Set<String> dirsOf(Set<String> names) {
+		Set<String> dirs = new TreeSet<>();
+		for (String name : names) {
+			for (int idx = name.indexOf('/'); idx >= 0; idx = name.indexOf('/', idx + 1)) {
+				String dir = name.substring(0, idx + 1);
+				if (!dir.equals("META-INF/")) {
+					dirs.add(dir);
+				}
+			}
+		}
+		return dirs;
+	}
+
 	private static void runJarCommand(Path jar, String action, Path src, Manifest manifest, String mainClass, Jdk jdk)
 			throws IOException {
 		assert (action.equals("c") || action.equals("u"));
@@ -15,22 +15,31 @@ import static dev.jbang.util.Util.writeString;
 
 import java.io.BufferedReader;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.net.URLConnection;
 import java.net.URLDecoder;
-import java.nio.channels.Channels;
-import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.nio.file.attribute.FileTime;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.Duration;
 import java.time.Instant;
 import java.time.ZoneId;
@@ -44,7 +53,16 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.BiFunction;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -74,6 +92,18 @@ public class NetUtil {
 	 */
 	private static final @NonNull Map<@NonNull String, @NonNull String> KNOWN_CONTENT_TYPES;
 
+	// How long JBang waits on exit for background revalidations to finish
+	private static final long REVALIDATE_EXIT_WAIT = 1000;
+
+	// How often a broken off download gets resumed
+	private static final int DEFAULT_DOWNLOAD_RETRIES = 3;
+
+	// How much of a download can be ahead of whoever processes it while it comes in
+	private static final int STREAM_BUFFER_SIZE = 1024 * 1024;
+
+	// The most we read of a response nobody needs just to be able to reuse its connection
+	private static final long MAX_DRAIN_BYTES = 64 * 1024;
+
 	static {
 		KNOWN_CONTENT_TYPES = new LinkedHashMap<>();
 		KNOWN_CONTENT_TYPES.put(".json", "application/json");
@@ -88,11 +118,36 @@ public class NetUtil {
 	 * @throws IOException
 	 */
 	public static Path downloadAndCacheFile(String fileURL) throws IOException {
+		return downloadAndCacheFile(fileURL, null);
+	}
+
+	/**
+	 * Either retrieves a previously downloaded file from the cache or downloads a
+	 * file from a URL and stores it in the cache. When the file actually gets
+	 * downloaded its content is also handed to the given consumer while it comes
+	 * in. The stream the consumer reads from throws an <code>IOException</code>
+	 * when it reaches its end without the download having completed
+	 * successfully. This method only returns once the consumer is done.
+	 *
+	 * @param fileURL  HTTP URL of the file to be downloaded
+	 * @param consumer gets the content of the file while it's downloaded, can be
+	 *                 <code>null</code>
+	 * @return Path to the downloaded file
+	 * @throws IOException
+	 */
+	public static Path downloadAndCacheFile(String fileURL, ContentConsumer consumer) throws IOException {
 		Path saveDir = getUrlCacheDir(fileURL);
 		Path metaSaveDir = getCacheMetaDir(saveDir);
+		promoteRevalidated(saveDir, metaSaveDir);
 		Path cachedFile = getCachedFile(saveDir);
-		if (cachedFile == null || isEvicted(cachedFile)) {
-			return downloadFileAndCache(fileURL, saveDir, metaSaveDir, cachedFile);
+		if (cachedFile == null || isEvicted(cachedFile, metaSaveDir)) {
+			if (cachedFile != null && !isFresh() && Settings.isCacheRevalidateInBackground()) {
+				verboseMsg(String.format("Using stale cached file %s for remote %s, revalidating in background",
+						cachedFile, fileURL));
+				revalidateInBackground(fileURL, saveDir, metaSaveDir, saveDir.resolve(cachedFile));
+				return saveDir.resolve(cachedFile);
+			}
+			return downloadFileAndCache(fileURL, saveDir, metaSaveDir, cachedFile, consumer);
 		} else {
 			verboseMsg(String.format("Using cached file %s for remote %s", cachedFile, fileURL));
 			return saveDir.resolve(cachedFile);
@@ -100,10 +155,10 @@ public class NetUtil {
 	}
 
 	// Returns true if the cached file doesn't exist or if its last
-	// modified time is longer ago than the configuration value
-	// indicated by "cache-evict" (defaults to "0" which will
-	// cause this method to always return "true").
-	private static boolean isEvicted(Path cachedFile) {
+	// modified time is longer ago than both the configuration value
+	// indicated by "cache-evict" and the lifetime the server gave
+	// it using Cache-Control max-age or Expires.
+	private static boolean isEvicted(Path cachedFile, Path metaSaveDir) {
 		if (isOffline()) {
 			return false;
 		}
@@ -111,6 +166,10 @@ public class NetUtil {
 			return true;
 		}
 		if (Files.isRegularFile(cachedFile)) {
+			Long expires = safeReadExpiresFile(cachedFile, metaSaveDir);
+			if (expires != null && System.currentTimeMillis() < expires) {
+				return false;
+			}
 			long cma = Settings.getCacheEvict();
 			if (cma == 0) {
 				return true;
@@ -129,8 +188,18 @@ public class NetUtil {
 		}
 	}
 
-	private static Path downloadFileAndCache(String fileURL, Path saveDir, Path metaSaveDir, Path cachedFile)
-			throws IOException {
+	private static Path downloadFileAndCache(String fileURL, Path saveDir, Path metaSaveDir, Path cachedFile,
+			ContentConsumer consumer) throws IOException {
+		return revalidate(fileURL, saveDir, metaSaveDir, cachedFile, saveDir, metaSaveDir, consumer);
+	}
+
+	/**
+	 * Does a conditional GET for the given URL. When the cached file is still up to
+	 * date only its freshness gets updated, otherwise the new content is
+	 * downloaded to <code>targetDir</code>.
+	 */
+	private static Path revalidate(String fileURL, Path saveDir, Path metaSaveDir, Path cachedFile, Path targetDir,
+			Path targetMetaDir, ContentConsumer consumer) throws IOException {
 		ConnectionConfigurator cfg = ConnectionConfigurator.all(
 				ConnectionConfigurator.userAgent(),
 				ConnectionConfigurator.authentication(),
@@ -138,13 +207,149 @@ public class NetUtil {
 				ConnectionConfigurator.accept(),
 				ConnectionConfigurator.cacheControl(cachedFile, metaSaveDir));
 		ResultHandler handler = ResultHandler.redirects(cfg,
-				ResultHandler.handleUnmodified(cachedFile,
+				ResultHandler.handleUnmodified(cachedFile, metaSaveDir,
 						ResultHandler.throwOnError(
-								ResultHandler.downloadToTempDir(saveDir, metaSaveDir,
-										ResultHandler::downloadTo))));
+								ResultHandler.downloadToTempDir(targetDir, targetMetaDir,
+										(dir, metaDir) -> ResultHandler.downloadTo(dir, metaDir, consumer)))));
 		return connect(fileURL, cfg, handler);
 	}
 
+	// Cache folders that are being revalidated in the background by this process
+	private static final Set<Path> revalidating = ConcurrentHashMap.newKeySet();
+	private static final List<Future<?>> pendingRevalidations = new CopyOnWriteArrayList<>();
+	private static ExecutorService revalidator;
+
+	/**
+	 * Starts a conditional GET for the given URL in the background. New content
+	 * gets stored next to the cached file (in a folder ending in
+	 * <code>.next</code>) and takes its place the next time the URL is requested
+	 * after the revalidation finished, so the caller keeps using the file it was
+	 * given. When JBang exits it waits a moment for revalidations that haven't
+	 * finished yet.
+	 */
+	private static synchronized void revalidateInBackground(String fileURL, Path saveDir, Path metaSaveDir,
+			Path cachedFile) {
+		if (!revalidating.add(saveDir)) {
+			return;
+		}
+		if (revalidator == null) {
+			revalidator = Executors.newCachedThreadPool(r -> {
+				Thread t = new Thread(r, "jbang-revalidate");
+				t.setDaemon(true);
+				return t;
+			});
+			Runtime.getRuntime().addShutdownHook(new Thread(NetUtil::awaitRevalidations));
+		}
+		pendingRevalidations.removeIf(Future::isDone);
+		pendingRevalidations.add(revalidator.submit(() -> {
+			try {
+				withCacheLock(saveDir, true, () -> revalidate(fileURL, saveDir, metaSaveDir, cachedFile,
+						nextDir(saveDir), nextDir(metaSaveDir), null));
+			} catch (IOException | RuntimeException e) {
+				verboseMsg("Revalidating " + fileURL + " failed", e);
+			} finally {
+				revalidating.remove(saveDir);
+			}
+		}));
+	}
+
+	interface LockedAction<T> {
+		T run() throws IOException;
+	}
+
+	private static final Map<Path, ReentrantLock> cacheLocks = new ConcurrentHashMap<>();
+
+	/**
+	 * Runs the given action while holding the lock for the given URL cache
+	 * folder, which other threads and JBang processes respect as well. When
+	 * <code>wait</code> is false and somebody else holds the lock the action
+	 * isn't run and <code>null</code> is returned.
+	 */
+	private static <T> T withCacheLock(Path saveDir, boolean wait, LockedAction<T> action) throws IOException {
+		ReentrantLock jvmLock = cacheLocks.computeIfAbsent(saveDir.toAbsolutePath(), k -> new ReentrantLock());
+		if (wait) {
+			jvmLock.lock();
+		} else if (!jvmLock.tryLock()) {
+			return null;
+		}
+		try {
+			Path lockFile = saveDir.getParent().resolve(saveDir.getFileName() + ".lock");
+			Files.createDirectories(saveDir.getParent());
+			try (FileChannel ch = FileChannel.open(lockFile, StandardOpenOption.WRITE, StandardOpenOption.CREATE)) {
+				try (FileLock lock = wait ? ch.lock() : ch.tryLock()) {
+					return lock != null ? action.run() : null;
+				}
+			}
+		} finally {
+			jvmLock.unlock();
+		}
+	}
+
+	static void awaitRevalidations() {
+		long deadline = System.currentTimeMillis() + REVALIDATE_EXIT_WAIT;
+		for (Future<?> f : pendingRevalidations) {
+			try {
+				f.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+			} catch (TimeoutException e) {
+				// Will be retried on the next run
+				return;
+			} catch (InterruptedException | ExecutionException e) {
+				// Ignore
+			}
+		}
+	}
+
+	private static Path nextDir(Path dir) {
+		return dir.getParent().resolve(dir.getFileName() + ".next");
+	}
+
+	/**
+	 * Replaces the cached content with what an earlier background revalidation
+	 * downloaded, if anything. Skipped while a revalidation is still going on.
+	 * The folders are swapped using atomic renames and the previous content is
+	 * kept around (in a folder ending in <code>.prev</code>) until the next
+	 * promotion, so other processes that still use its files aren't affected.
+	 */
+	private static void promoteRevalidated(Path saveDir, Path metaSaveDir) {
+		Path next = nextDir(saveDir);
+		if (!Files.isDirectory(next) || revalidating.contains(saveDir)) {
+			return;
+		}
+		try {
+			withCacheLock(saveDir, false, () -> {
+				if (Files.isDirectory(next)) {
+					swap(saveDir, next);
+					Path metaNext = nextDir(metaSaveDir);
+					if (Files.isDirectory(metaNext)) {
+						swap(metaSaveDir, metaNext);
+					}
+					verboseMsg("Using revalidated content for " + saveDir);
+				}
+				return null;
+			});
+		} catch (IOException e) {
+			verboseMsg("Unable to use revalidated content for " + saveDir, e);
+			deletePath(next, true);
+			deletePath(nextDir(metaSaveDir), true);
+		}
+	}
+
+	private static void swap(Path dir, Path next) throws IOException {
+		Path prev = dir.getParent().resolve(dir.getFileName() + ".prev");
+		deletePath(prev, true);
+		if (Files.isDirectory(dir)) {
+			Files.move(dir, prev, StandardCopyOption.ATOMIC_MOVE);
+		}
+		try {
+			Files.move(next, dir, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			if (Files.isDirectory(prev) && !Files.exists(dir)) {
+				Files.move(prev, dir, StandardCopyOption.ATOMIC_MOVE);
+			}
+			throw e;
+		}
+	}
+
 	/**
 	 * Downloads a file from a URL
 	 *
@@ -179,10 +384,98 @@ public class NetUtil {
 		return connect(fileURL, cfg, handler);
 	}
 
+	/**
+	 * Uploads a file to a URL using an HTTP PUT request
+	 *
+	 * @param file    path of the file to upload
+	 * @param fileURL HTTP URL to upload the file to
+	 * @throws IOException
+	 */
+	public static void uploadFile(Path file, String fileURL) throws IOException {
+		long size = Files.size(file);
+		ConnectionConfigurator cfg = ConnectionConfigurator.all(
+				ConnectionConfigurator.userAgent(),
+				ConnectionConfigurator.authentication(),
+				ConnectionConfigurator.timeout(null),
+				ConnectionConfigurator.forHttp(conn -> {
+					conn.setRequestMethod("PUT");
+					conn.setDoOutput(true);
+					conn.setFixedLengthStreamingMode(size);
+					conn.setRequestProperty("Content-Type", "application/octet-stream");
+				}));
+		ResultHandler handler = conn -> {
+			// The body needs to be sent before we can look at the response
+			try (OutputStream os = conn.getOutputStream()) {
+				Files.copy(file, os);
+			}
+			return ResultHandler.throwOnError(c -> {
+				verboseMsg(String.format("Uploaded file %s", c.getURL().toExternalForm()));
+				return file;
+			}).handle(conn);
+		};
+		connect(fileURL, cfg, handler);
+	}
+
 	static Path etagFile(Path cachedFile, Path metaSaveDir) {
 		return metaSaveDir.resolve(cachedFile.getFileName() + ".etag");
 	}
 
+	static Path expiresFile(Path cachedFile, Path metaSaveDir) {
+		return metaSaveDir.resolve(cachedFile.getFileName() + ".expires");
+	}
+
+	private static Long safeReadExpiresFile(Path cachedFile, Path metaSaveDir) {
+		Path expires = expiresFile(cachedFile, metaSaveDir);
+		if (Files.isRegularFile(expires)) {
+			try {
+				return Long.parseLong(readString(expires).trim());
+			} catch (IOException | NumberFormatException e) {
+				// Ignore
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Remembers until when the server says the given file can be used without
+	 * checking for a newer version, based on the response's
+	 * <code>Cache-Control</code> or <code>Expires</code> headers.
+	 */
+	private static void writeExpiresFile(URLConnection conn, Path file, Path metaSaveDir) {
+		Long expires = getExpiration(conn, System.currentTimeMillis());
+		Path expiresFile = expiresFile(file, metaSaveDir);
+		try {
+			if (expires != null) {
+				writeString(expiresFile, Long.toString(expires));
+			} else {
+				Files.deleteIfExists(expiresFile);
+			}
+		} catch (IOException e) {
+			verboseMsg("Unable to write " + expiresFile, e);
+		}
+	}
+
+	static Long getExpiration(URLConnection conn, long now) {
+		String cacheControl = conn.getHeaderField("Cache-Control");
+		if (cacheControl != null) {
+			for (String directive : cacheControl.toLowerCase(Locale.ROOT).split(",")) {
+				directive = directive.trim();
+				if (directive.equals("no-cache") || directive.equals("no-store")) {
+					return null;
+				}
+				if (directive.startsWith("max-age=")) {
+					try {
+						return now + Long.parseLong(unquote(directive.substring(8))) * 1000;
+					} catch (NumberFormatException e) {
+						return null;
+					}
+				}
+			}
+		}
+		long expires = conn.getExpiration();
+		return expires > 0 ? expires : null;
+	}
+
 	private static String safeReadEtagFile(Path cachedFile, Path metaSaveDir) {
 		Path etag = etagFile(cachedFile, metaSaveDir);
 		if (Files.isRegularFile(etag)) {
@@ -213,12 +506,308 @@ public class NetUtil {
 			verboseMsg(String.format("Requesting %s", urlConnection.getURL()));
 		}
 
+		boolean ok = false;
 		try {
-			return resultHandler.handle(urlConnection);
+			Path result = resultHandler.handle(urlConnection);
+			ok = true;
+			return result;
 		} finally {
 			if (urlConnection instanceof HttpURLConnection) {
-				((HttpURLConnection) urlConnection).disconnect();
+				if (ok) {
+					release((HttpURLConnection) urlConnection);
+				} else {
+					((HttpURLConnection) urlConnection).disconnect();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Makes sure the response body has been read completely and closed, which
+	 * returns the connection to the JDK's keep-alive pool so the next request to
+	 * the same host can reuse it (and skip the TCP and TLS handshakes). Calling
+	 * <code>disconnect()</code> instead would close the socket. Bodies that are
+	 * too large to be worth reading just to keep the connection are dropped.
+	 */
+	private static void release(HttpURLConnection httpConn) {
+		try {
+			InputStream is = httpConn.getResponseCode() >= 400 ? httpConn.getErrorStream()
+					: httpConn.getInputStream();
+			if (is != null) {
+				try (InputStream in = is) {
+					byte[] buf = new byte[8192];
+					long left = MAX_DRAIN_BYTES;
+					int n;
+					while ((n = in.read(buf)) != -1) {
+						left -= n;
+						if (left < 0) {
+							httpConn.disconnect();
+							break;
+						}
+					}
+				}
+			}
+		} catch (IOException e) {
+			// The body was consumed already, nothing left to do
+		}
+	}
+
+	/**
+	 * Copies the response body to the given file. When the transfer breaks off
+	 * before everything was received and the server supports byte ranges, the
+	 * rest is requested with a <code>Range</code> request (guarded by
+	 * <code>If-Range</code> so a file that changed in the meantime isn't stitched
+	 * together from two versions) and appended to what was received so far. At
+	 * most <code>jbang.download.retries</code> (defaults to 3) attempts are made
+	 * to resume. Afterwards the size and, when the server sent one, the checksum
+	 * of the file are verified.
+	 */
+	private static void copyResumable(URLConnection conn, Path file, ContentConsumer consumer) throws IOException {
+		ContentStreamer streamer = consumer != null ? new ContentStreamer(consumer) : null;
+		boolean complete = false;
+		try {
+			copyResumable(conn, file, streamer);
+			complete = true;
+		} finally {
+			if (streamer != null) {
+				streamer.finish(complete);
+			}
+		}
+	}
+
+	private static void copyResumable(URLConnection conn, Path file, ContentStreamer streamer) throws IOException {
+		long expected = conn.getContentLengthLong();
+		String validator = conn.getHeaderField("ETag");
+		if (validator == null) {
+			validator = conn.getHeaderField("Last-Modified");
+		}
+		boolean resumable = conn instanceof HttpURLConnection && expected > 0
+				&& "bytes".equalsIgnoreCase(conn.getHeaderField("Accept-Ranges"));
+		int retries = Integer.getInteger("jbang.download.retries", DEFAULT_DOWNLOAD_RETRIES);
+		Checksum checksum = Checksum.of(conn);
+		long received = 0;
+		int attempt = 0;
+		URLConnection current = conn;
+		try (OutputStream out = checksum != null ? new DigestOutputStream(Files.newOutputStream(file), checksum.digest)
+				: Files.newOutputStream(file)) {
+			while (true) {
+				IOException failure = null;
+				try (InputStream in = current.getInputStream()) {
+					byte[] buf = new byte[64 * 1024];
+					int n;
+					while ((n = in.read(buf)) != -1) {
+						out.write(buf, 0, n);
+						if (streamer != null) {
+							streamer.write(buf, 0, n);
+						}
+						received += n;
+					}
+				} catch (IOException e) {
+					failure = e;
+				} finally {
+					if (current != conn) {
+						((HttpURLConnection) current).disconnect();
+					}
+				}
+				if (failure == null && (expected < 0 || received >= expected)) {
+					break;
+				}
+				if (!resumable || attempt++ >= retries) {
+					throw failure != null ? failure
+							: new IOException(String.format("Download of %s ended after %d of %d bytes",
+									conn.getURL(), received, expected));
+				}
+				verboseMsg(String.format("Download of %s broke off after %d of %d bytes, resuming", conn.getURL(),
+						received, expected));
+				current = requestRange(conn, received, validator);
+				if (current == null) {
+					throw failure != null ? failure
+							: new IOException("Unable to resume download of " + conn.getURL());
+				}
 			}
+		} catch (IOException e) {
+			Files.deleteIfExists(file);
+			throw e;
+		}
+		if (expected >= 0 && received != expected) {
+			Files.deleteIfExists(file);
+			throw new IOException(String.format("Downloaded %d bytes from %s but expected %d", received,
+					conn.getURL(), expected));
+		}
+		if (checksum != null && !checksum.matches()) {
+			Files.deleteIfExists(file);
+			throw new IOException(String.format("Checksum of file downloaded from %s doesn't match, expected %s %s",
+					conn.getURL(), checksum.algorithm, checksum.expected));
+		}
+	}
+
+	/**
+	 * Receives the content of a file while it is being downloaded
+	 */
+	public interface ContentConsumer {
+		void accept(InputStream content) throws IOException;
+	}
+
+	/**
+	 * Hands the bytes of a download to a {@link ContentConsumer} running on its
+	 * own thread. When the consumer fails or stops reading, the download itself
+	 * just carries on without it.
+	 */
+	private static class ContentStreamer {
+		private final PipedOutputStream pipe;
+		private final Thread thread;
+		private volatile boolean complete;
+		private volatile boolean broken;
+
+		ContentStreamer(ContentConsumer consumer) throws IOException {
+			PipedInputStream pin = new PipedInputStream(STREAM_BUFFER_SIZE);
+			pipe = new PipedOutputStream(pin);
+			InputStream in = new FilterInputStream(pin) {
+				@Override
+				public int read() throws IOException {
+					return checkEnd(super.read());
+				}
+
+				@Override
+				public int read(byte[] b, int off, int len) throws IOException {
+					return checkEnd(super.read(b, off, len));
+				}
+
+				private int checkEnd(int n) throws IOException {
+					if (n == -1 && !complete) {
+						throw new IOException("Download did not complete");
+					}
+					return n;
+				}
+			};
+			thread = new Thread(() -> {
+				try {
+					consumer.accept(in);
+					// Keep the pipe flowing until the download is done
+					byte[] buf = new byte[8192];
+					while (in.read(buf) != -1) {
+					}
+				} catch (IOException | RuntimeException e) {
+					verboseMsg("Processing download while it came in failed", e);
+				} finally {
+					broken = true;
+					try {
+						pin.close();
+					} catch (IOException e) {
+						// Ignore
+					}
+				}
+			}, "jbang-stream");
+			thread.setDaemon(true);
+			thread.start();
+		}
+
+		void write(byte[] b, int off, int len) {
+			if (!broken) {
+				try {
+					pipe.write(b, off, len);
+				} catch (IOException e) {
+					broken = true;
+				}
+			}
+		}
+
+		void finish(boolean complete) {
+			this.complete = complete;
+			try {
+				pipe.close();
+			} catch (IOException e) {
+				// Ignore
+			}
+			try {
+				thread.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * Requests the part of the given connection's resource starting at the given
+	 * offset. Returns <code>null</code> if the server doesn't return exactly that.
+	 */
+	private static URLConnection requestRange(URLConnection conn, long offset, String validator)
+			throws IOException {
+		HttpURLConnection rangeConn = (HttpURLConnection) conn.getURL().openConnection();
+		ConnectionConfigurator.all(
+				ConnectionConfigurator.userAgent(),
+				ConnectionConfigurator.authentication(),
+				ConnectionConfigurator.timeout(null))
+			.configure(rangeConn);
+		rangeConn.setRequestProperty("Range", "bytes=" + offset + "-");
+		if (validator != null) {
+			rangeConn.setRequestProperty("If-Range", validator);
+		}
+		verboseMsg(String.format("Requesting HTTP GET %s from byte %d", rangeConn.getURL(), offset));
+		String range = rangeConn.getResponseCode() == HttpURLConnection.HTTP_PARTIAL
+				? rangeConn.getHeaderField("Content-Range")
+				: null;
+		if (range == null || !range.trim().startsWith("bytes " + offset + "-")) {
+			verboseMsg("Server did not return the requested range: " + rangeConn.getResponseCode() + " " + range);
+			rangeConn.disconnect();
+			return null;
+		}
+		return rangeConn;
+	}
+
+	/**
+	 * A checksum a server sent along with a file, either as a
+	 * <code>Digest</code> header or as the <code>X-Checksum-*</code> headers
+	 * that Maven repositories use.
+	 */
+	private static class Checksum {
+		final String algorithm;
+		final String expected;
+		final boolean base64;
+		final MessageDigest digest;
+
+		private Checksum(String algorithm, String expected, boolean base64) throws NoSuchAlgorithmException {
+			this.algorithm = algorithm;
+			this.expected = expected;
+			this.base64 = base64;
+			this.digest = MessageDigest.getInstance(algorithm);
+		}
+
+		static Checksum of(URLConnection conn) {
+			try {
+				String digest = conn.getHeaderField("Digest");
+				if (digest != null) {
+					for (String d : digest.split(",")) {
+						d = d.trim();
+						if (d.toLowerCase(Locale.ROOT).startsWith("sha-256=")) {
+							return new Checksum("SHA-256", d.substring(8), true);
+						}
+					}
+				}
+				String sha256 = conn.getHeaderField("X-Checksum-Sha256");
+				if (sha256 != null) {
+					return new Checksum("SHA-256", sha256.trim(), false);
+				}
+				String sha1 = conn.getHeaderField("X-Checksum-Sha1");
+				if (sha1 != null) {
+					return new Checksum("SHA-1", sha1.trim(), false);
+				}
+			} catch (NoSuchAlgorithmException e) {
+				// Can't verify then
+			}
+			return null;
+		}
+
+		boolean matches() {
+			byte[] actual = digest.digest();
+			if (base64) {
+				return Base64.getEncoder().encodeToString(actual).equals(expected);
+			}
+			StringBuilder sb = new StringBuilder();
+			for (byte b : actual) {
+				sb.append(String.format("%02x", b));
+			}
+			return sb.toString().equalsIgnoreCase(expected);
 		}
 	}
 
@@ -370,21 +959,23 @@ public class NetUtil {
 		}
 
 		static ResultHandler downloadTo(Path saveDir, Path metaSaveDir) {
+			return downloadTo(saveDir, metaSaveDir, null);
+		}
+
+		static ResultHandler downloadTo(Path saveDir, Path metaSaveDir, ContentConsumer consumer) {
 			return (conn) -> {
 				// copy content from connection to file
 				String fileName = extractFileName(conn);
 				Path file = saveDir.resolve(fileName);
 				Files.createDirectories(saveDir);
 				Files.createDirectories(metaSaveDir);
-				try (ReadableByteChannel readableByteChannel = Channels.newChannel(conn.getInputStream());
-						FileOutputStream fileOutputStream = new FileOutputStream(file.toFile())) {
-					fileOutputStream.getChannel().transferFrom(readableByteChannel, 0, Long.MAX_VALUE);
-				}
+				copyResumable(conn, file, consumer);
 				// create an .etag file if the information is present in the response headers
 				String etag = conn.getHeaderField("ETag");
 				if (etag != null) {
 					writeString(etagFile(file, metaSaveDir), etag);
 				}
+				writeExpiresFile(conn, file, metaSaveDir);
 				verboseMsg(String.format("Downloaded file %s", conn.getURL().toExternalForm()));
 				return file;
 			};
@@ -445,7 +1036,7 @@ public class NetUtil {
 			};
 		}
 
-		static ResultHandler handleUnmodified(Path cachedFile, ResultHandler okHandler) {
+		static ResultHandler handleUnmodified(Path cachedFile, Path metaSaveDir, ResultHandler okHandler) {
 			if (cachedFile != null) {
 				return (conn) -> {
 					if (conn instanceof HttpURLConnection) {
@@ -466,6 +1057,7 @@ public class NetUtil {
 								// re-downloaded every time.
 								verboseMsg("Unable to set last-modified time for " + cachedFile, e);
 							}
+							writeExpiresFile(conn, cachedFile, metaSaveDir);
 							return cachedFile;
 						}
 					}
@@ -533,6 +1125,7 @@ public class NetUtil {
 				// source files which just isn't the case (eg //FILES)
 				url = new URL(swizzleURL(url.toString()));
 				verboseMsg("Redirected to: " + url); // Should be debug info
+				release(httpConn);
 				httpConn = (HttpURLConnection) url.openConnection();
 				if (responseCode == HttpURLConnection.HTTP_SEE_OTHER) {
 					// This response code forces the method to GET
@@ -582,8 +1175,10 @@ public class NetUtil {
 		cachedNetrc = null;
 	}
 
-	// Visible for testing
-	static void resetNetrcCache() {
+	/**
+	 * Forgets the configured .netrc file and any credentials read so far
+	 */
+	public static void resetNetrcCache() {
 		cachedNetrc = null;
 		netrcFile = null;
 		netrcDisabled = false;
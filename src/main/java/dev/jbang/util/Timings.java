@@ -0,0 +1,281 @@
+package dev.jbang.util;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+/**
+ * Records how long the different phases of a JBang invocation take. Recording
+ * is off by default, in which case <code>start()</code> returns a shared no-op
+ * span, so the phases can be timed unconditionally:
+ *
+ * <pre>
+ * try (Timings.Span span = Timings.start("compile", name)) {
+ * 	...
+ * }
+ * </pre>
+ *
+ * Spans can be nested and may be started from any thread. When enabled (using
+ * <code>--timings</code>) a report gets written at the end of the command as a
+ * table, as JSON or in the Chrome trace event format (which can be opened in
+ * <code>chrome://tracing</code> or <a href="https://ui.perfetto.dev">Perfetto</a>).
+ */
+public final class Timings {
+	public enum Format {
+		table, json, trace
+	}
+
+	private static final Span NOOP = new Span(null, null);
+
+	private static volatile boolean enabled;
+	private static long origin;
+	private static final List<Span> spans = new ArrayList<>();
+	private static final ThreadLocal<Integer> depth = ThreadLocal.withInitial(() -> 0);
+
+	private Timings() {
+	}
+
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	public static synchronized void enable() {
+		if (!enabled) {
+			origin = System.nanoTime();
+			spans.clear();
+			enabled = true;
+		}
+	}
+
+	public static synchronized void disable() {
+		enabled = false;
+		spans.clear();
+	}
+
+	public static Span start(String phase) {
+		return start(phase, null);
+	}
+
+	public static Span start(String phase, String detail) {
+		if (!enabled) {
+			return NOOP;
+		}
+		Span span = new Span(phase, detail);
+		synchronized (Timings.class) {
+			spans.add(span);
+		}
+		return span;
+	}
+
+	public static class Span implements AutoCloseable {
+		final String phase;
+		String detail;
+		final String thread;
+		final long threadId;
+		final int level;
+		final long start;
+		long end;
+
+		Span(String phase, String detail) {
+			this.phase = phase;
+			this.detail = detail;
+			if (phase != null) {
+				Thread t = Thread.currentThread();
+				this.thread = t.getName();
+				this.threadId = t.getId();
+				this.level = depth.get();
+				depth.set(level + 1);
+				this.start = System.nanoTime();
+			} else {
+				this.thread = null;
+				this.threadId = 0;
+				this.level = 0;
+				this.start = 0;
+			}
+		}
+
+		/**
+		 * Sets (or replaces) the extra information shown for this span, for example
+		 * whether a cache was hit or not
+		 */
+		public Span detail(String detail) {
+			if (phase != null) {
+				this.detail = detail;
+			}
+			return this;
+		}
+
+		@Override
+		public void close() {
+			if (phase != null && end == 0) {
+				end = System.nanoTime();
+				depth.set(level);
+			}
+		}
+
+		long duration() {
+			return (end != 0 ? end : System.nanoTime()) - start;
+		}
+	}
+
+	/**
+	 * Writes the report in the given format to the given file, or to stderr if no
+	 * file was given. Does nothing if recording wasn't enabled.
+	 */
+	public static void report(Format format, Path file) throws IOException {
+		List<Span> snapshot;
+		long total;
+		synchronized (Timings.class) {
+			if (!enabled) {
+				return;
+			}
+			snapshot = new ArrayList<>(spans);
+			total = System.nanoTime() - origin;
+		}
+		String out;
+		switch (format) {
+		case json:
+			out = toJson(snapshot, total);
+			break;
+		case trace:
+			out = toTrace(snapshot);
+			break;
+		default:
+			out = toTable(snapshot, total);
+			break;
+		}
+		if (file != null) {
+			if (file.getParent() != null) {
+				Files.createDirectories(file.getParent());
+			}
+			try (Writer w = Files.newBufferedWriter(file)) {
+				w.write(out);
+			}
+		} else {
+			PrintStream err = System.err;
+			err.print(out);
+			err.flush();
+		}
+	}
+
+	static String toTable(List<Span> spans, long total) {
+		int width = "Phase".length();
+		for (Span s : spans) {
+			width = Math.max(width, label(s).length());
+		}
+		StringBuilder sb = new StringBuilder();
+		String fmt = "%-" + width + "s %10s %8s%n";
+		sb.append(String.format(fmt, "Phase", "Time (ms)", "Start"));
+		for (Span s : spans) {
+			sb.append(String.format(fmt, label(s), millis(s.duration()), millis(s.start - origin)));
+		}
+		sb.append(String.format(fmt, "total", millis(total), ""));
+
+		// Phases like compile can occur many times, so also show the sum per
+		// phase (only counting the outermost ones so nested spans of the same
+		// phase aren't counted twice)
+		Map<String, long[]> sums = new LinkedHashMap<>();
+		List<Span> open = new ArrayList<>();
+		for (Span s : spans) {
+			boolean nested = open.stream()
+				.anyMatch(o -> o.phase.equals(s.phase) && o.threadId == s.threadId && o.start <= s.start
+						&& s.start + s.duration() <= o.start + o.duration());
+			open.add(s);
+			if (!nested) {
+				long[] sum = sums.computeIfAbsent(s.phase, p -> new long[2]);
+				sum[0] += s.duration();
+				sum[1]++;
+			}
+		}
+		if (sums.values().stream().anyMatch(v -> v[1] > 1)) {
+			sb.append(String.format("%n"));
+			sb.append(String.format(fmt, "Sum per phase", "Time (ms)", "Count"));
+			sums.forEach((p, v) -> sb.append(String.format(fmt, p, millis(v[0]), v[1])));
+		}
+		return sb.toString();
+	}
+
+	private static String label(Span s) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < s.level; i++) {
+			sb.append("  ");
+		}
+		sb.append(s.phase);
+		if (s.detail != null) {
+			sb.append(" (").append(s.detail).append(")");
+		}
+		return sb.toString();
+	}
+
+	private static String millis(long nanos) {
+		return String.format("%.1f", nanos / 1_000_000.0);
+	}
+
+	static String toJson(List<Span> spans, long total) {
+		Map<String, Object> root = new LinkedHashMap<>();
+		root.put("totalMs", TimeUnit.NANOSECONDS.toMillis(total));
+		List<Map<String, Object>> phases = new ArrayList<>();
+		for (Span s : spans) {
+			Map<String, Object> m = new LinkedHashMap<>();
+			m.put("phase", s.phase);
+			if (s.detail != null) {
+				m.put("detail", s.detail);
+			}
+			m.put("thread", s.thread);
+			m.put("depth", s.level);
+			m.put("startMs", (s.start - origin) / 1_000_000.0);
+			m.put("durationMs", s.duration() / 1_000_000.0);
+			phases.add(m);
+		}
+		root.put("phases", phases);
+		Gson gson = new GsonBuilder().setPrettyPrinting().create();
+		return gson.toJson(root) + System.lineSeparator();
+	}
+
+	static String toTrace(List<Span> spans) {
+		List<Map<String, Object>> events = new ArrayList<>();
+		Map<Long, String> threads = new LinkedHashMap<>();
+		for (Span s : spans) {
+			Map<String, Object> e = new LinkedHashMap<>();
+			e.put("name", s.phase);
+			e.put("cat", "jbang");
+			e.put("ph", "X");
+			e.put("ts", TimeUnit.NANOSECONDS.toMicros(s.start - origin));
+			e.put("dur", TimeUnit.NANOSECONDS.toMicros(s.duration()));
+			e.put("pid", 1);
+			e.put("tid", s.threadId);
+			if (s.detail != null) {
+				Map<String, Object> args = new LinkedHashMap<>();
+				args.put("detail", s.detail);
+				e.put("args", args);
+			}
+			events.add(e);
+			threads.putIfAbsent(s.threadId, s.thread);
+		}
+		threads.forEach((id, name) -> {
+			Map<String, Object> e = new LinkedHashMap<>();
+			e.put("name", "thread_name");
+			e.put("ph", "M");
+			e.put("pid", 1);
+			e.put("tid", id);
+			Map<String, Object> args = new LinkedHashMap<>();
+			args.put("name", name);
+			e.put("args", args);
+			events.add(e);
+		});
+		Map<String, Object> root = new LinkedHashMap<>();
+		root.put("traceEvents", events);
+		root.put("displayTimeUnit", "ms");
+		return new Gson().toJson(root) + System.lineSeparator();
+	}
+}
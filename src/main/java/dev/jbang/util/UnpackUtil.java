@@ -3,6 +3,7 @@ package dev.jbang.util;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -14,10 +15,12 @@ import java.util.LinkedHashSet;
 import java.util.Locale;
 import java.util.Scanner;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
 import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
 import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveInputStream;
 import org.apache.commons.compress.archivers.zip.ZipFile;
 import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
 
@@ -64,28 +67,60 @@ public class UnpackUtil {
 		}
 	}
 
+	/**
+	 * Downloads the archive at the given URL (or takes it from the cache) and
+	 * unpacks it. When the archive actually needs to be downloaded it gets
+	 * unpacked while it comes in, instead of afterwards, unless the
+	 * <code>jbang.unpack.streaming</code> system property is set to false. If
+	 * that doesn't work out it's unpacked from the cache like it would otherwise.
+	 *
+	 * @return Path to the downloaded archive
+	 */
+	public static Path downloadAndUnpack(String url, Path outputDir) throws IOException {
+		return downloadAndUnpack(url, outputDir, false, null);
+	}
+
+	public static Path downloadAndUnpack(String url, Path outputDir, boolean stripRootFolder, Path selectFolder)
+			throws IOException {
+		String name = url.toLowerCase(Locale.ENGLISH);
+		boolean zip = name.endsWith(".zip") || name.endsWith(".jar");
+		boolean targz = name.endsWith(".tar.gz") || name.endsWith(".tgz");
+		if (!(zip || targz) || !Boolean.parseBoolean(System.getProperty("jbang.unpack.streaming", "true"))) {
+			Path archive = NetUtil.downloadAndCacheFile(url);
+			unpack(archive, outputDir, stripRootFolder, selectFolder);
+			return archive;
+		}
+		AtomicBoolean streamed = new AtomicBoolean();
+		Path archive = NetUtil.downloadAndCacheFile(url, in -> {
+			if (zip) {
+				unzip(in, outputDir, stripRootFolder, selectFolder);
+			} else {
+				untargz(in, outputDir, stripRootFolder, selectFolder);
+			}
+			streamed.set(true);
+		});
+		if (streamed.get()) {
+			Util.verboseMsg("Unpacked " + archive + " while downloading");
+			if (zip) {
+				fixupUnzipped(archive, outputDir, stripRootFolder, selectFolder);
+			}
+		} else {
+			Util.deletePath(outputDir, true);
+			unpack(archive, outputDir, stripRootFolder, selectFolder);
+		}
+		return archive;
+	}
+
 	public static void unzip(Path zip, Path outputDir, boolean stripRootFolder, Path selectFolder,
 			ZipFileHandler onZipFile) throws IOException {
 		try (ZipFile zipFile = ZipFile.builder().setFile(zip.toFile()).get()) {
 			Enumeration<ZipArchiveEntry> entries = zipFile.getEntries();
 			while (entries.hasMoreElements()) {
 				ZipArchiveEntry zipEntry = entries.nextElement();
-				Path entry = Paths.get(zipEntry.getName());
-				if (stripRootFolder) {
-					if (entry.getNameCount() == 1) {
-						continue;
-					}
-					entry = entry.subpath(1, entry.getNameCount());
-				}
-				if (selectFolder != null) {
-					if (!entry.startsWith(selectFolder) || entry.equals(selectFolder)) {
-						continue;
-					}
-					entry = entry.subpath(selectFolder.getNameCount(), entry.getNameCount());
-				}
-				entry = outputDir.resolve(entry).normalize();
-				if (!entry.startsWith(outputDir)) {
-					throw new IOException("Entry is outside of the target dir: " + zipEntry.getName());
+				Path entry = targetPath(Paths.get(zipEntry.getName()), zipEntry.getName(), outputDir,
+						stripRootFolder, selectFolder);
+				if (entry == null) {
+					continue;
 				}
 				try {
 					if (zipEntry.isDirectory() && checkValidParent(entry)) {
@@ -108,6 +143,94 @@ public class UnpackUtil {
 		}
 	}
 
+	/**
+	 * Unpacks a zip file from a stream, which means it can be unpacked while it's
+	 * still being downloaded. The file permissions and symbolic links are only
+	 * stored at the end of a zip file, so once it's complete
+	 * {@link #fixupUnzipped(Path, Path, boolean, Path)} has to be called to apply
+	 * them.
+	 */
+	public static void unzip(InputStream zip, Path outputDir, boolean stripRootFolder, Path selectFolder)
+			throws IOException {
+		try (ZipArchiveInputStream zis = new ZipArchiveInputStream(zip, StandardCharsets.UTF_8.name(), true, true)) {
+			ZipArchiveEntry zipEntry;
+			while ((zipEntry = zis.getNextEntry()) != null) {
+				Path entry = targetPath(Paths.get(zipEntry.getName()), zipEntry.getName(), outputDir,
+						stripRootFolder, selectFolder);
+				if (entry == null) {
+					continue;
+				}
+				if (zipEntry.isDirectory() && checkValidParent(entry)) {
+					Files.createDirectories(entry);
+				} else {
+					if (checkValidParent(entry.getParent())) {
+						Files.createDirectories(entry.getParent());
+					}
+					Files.copy(zis, entry, StandardCopyOption.REPLACE_EXISTING);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Applies the file permissions and symbolic links found in the given zip file
+	 * to the files that were unpacked from it by
+	 * {@link #unzip(InputStream, Path, boolean, Path)}. Only reads the zip's
+	 * central directory (and the contents of its links).
+	 */
+	public static void fixupUnzipped(Path zip, Path outputDir, boolean stripRootFolder, Path selectFolder)
+			throws IOException {
+		try (ZipFile zipFile = ZipFile.builder().setFile(zip.toFile()).get()) {
+			Enumeration<ZipArchiveEntry> entries = zipFile.getEntries();
+			while (entries.hasMoreElements()) {
+				ZipArchiveEntry zipEntry = entries.nextElement();
+				Path entry = targetPath(Paths.get(zipEntry.getName()), zipEntry.getName(), outputDir,
+						stripRootFolder, selectFolder);
+				if (entry == null || zipEntry.isDirectory()) {
+					continue;
+				}
+				if (zipEntry.isUnixSymlink()) {
+					try (Scanner s = new Scanner(zipFile.getInputStream(zipEntry)).useDelimiter("\\A")) {
+						String result = s.hasNext() ? s.next() : "";
+						Files.deleteIfExists(entry);
+						Files.createSymbolicLink(entry, Paths.get(result));
+					}
+				} else {
+					int mode = zipEntry.getUnixMode();
+					if (mode != 0 && !Util.isWindows()) {
+						Set<PosixFilePermission> permissions = PosixFilePermissionSupport.toPosixFilePermissions(mode);
+						Files.setPosixFilePermissions(entry, permissions);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns where the given archive entry should be unpacked to, or
+	 * <code>null</code> if it should be skipped.
+	 */
+	private static Path targetPath(Path entry, String entryName, Path outputDir, boolean stripRootFolder,
+			Path selectFolder) throws IOException {
+		if (stripRootFolder) {
+			if (entry.getNameCount() == 1) {
+				return null;
+			}
+			entry = entry.subpath(1, entry.getNameCount());
+		}
+		if (selectFolder != null) {
+			if (!entry.startsWith(selectFolder) || entry.equals(selectFolder)) {
+				return null;
+			}
+			entry = entry.subpath(selectFolder.getNameCount(), entry.getNameCount());
+		}
+		entry = outputDir.resolve(entry).normalize();
+		if (!entry.startsWith(outputDir)) {
+			throw new IOException("Entry is outside of the target dir: " + entryName);
+		}
+		return entry;
+	}
+
 	private static boolean checkValidParent(Path path) throws FileAlreadyExistsException {
 		while (path != null && !Files.exists(path)) {
 			path = path.getParent();
@@ -136,31 +259,22 @@ public class UnpackUtil {
 
 	public static void untargz(Path targz, Path outputDir, boolean stripRootFolder, Path selectFolder)
 			throws IOException {
+		try (InputStream in = new FileInputStream(targz.toFile())) {
+			untargz(in, outputDir, stripRootFolder, selectFolder);
+		}
+	}
+
+	public static void untargz(InputStream targz, Path outputDir, boolean stripRootFolder, Path selectFolder)
+			throws IOException {
 		try (TarArchiveInputStream tarArchiveInputStream = new TarArchiveInputStream(
-				new GzipCompressorInputStream(new FileInputStream(targz.toFile())))) {
+				new GzipCompressorInputStream(targz))) {
 
 			TarArchiveEntry targzEntry;
 			while ((targzEntry = tarArchiveInputStream.getNextEntry()) != null) {
-				Path entry = Paths.get(targzEntry.getName()).normalize();
-
-				if (stripRootFolder) {
-					if (entry.getNameCount() == 1) {
-						continue;
-					}
-					entry = entry.subpath(1, entry.getNameCount());
-				}
-
-				if (selectFolder != null) {
-					if (!entry.startsWith(selectFolder) || entry.equals(selectFolder)) {
-						continue;
-					}
-					entry = entry.subpath(selectFolder.getNameCount(), entry.getNameCount());
-				}
-
-				entry = outputDir.resolve(entry).normalize();
-
-				if (!entry.startsWith(outputDir)) {
-					throw new IOException("Entry is outside of the target dir: " + targzEntry.getName());
+				Path entry = targetPath(Paths.get(targzEntry.getName()).normalize(), targzEntry.getName(),
+						outputDir, stripRootFolder, selectFolder);
+				if (entry == null) {
+					continue;
 				}
 
 				if (targzEntry.isDirectory()) {
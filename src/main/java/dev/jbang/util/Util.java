@@ -120,6 +120,7 @@ public class Util {
 	private static Instant startTime = Instant.now();
 	private static boolean printExceptions = false;
 	private static int askInputTimeout = 30;
+	private static boolean inputAvailable = true;
 
 	public static void setVerbose(boolean verbose) {
 		Util.verbose = verbose;
@@ -164,6 +165,18 @@ public class Util {
 		Util.askInputTimeout = askInputTimeout;
 	}
 
+	public static boolean isInputAvailable() {
+		return inputAvailable;
+	}
+
+	/**
+	 * Determines if the user can be asked for input. When not,
+	 * <code>askInput()</code> throws an {@link InputRequiredException}.
+	 */
+	public static void setInputAvailable(boolean inputAvailable) {
+		Util.inputAvailable = inputAvailable;
+	}
+
 	public static void setOffline(boolean offline) {
 		Util.offline = offline;
 		if (offline) {
@@ -175,7 +188,12 @@ public class Util {
 		Util.ignoreTransitiveRepositories = ignoreTransitiveRepositories;
 	}
 
-	public static void setDownloadSources(boolean flag) {
+	/**
+	 * Sets if sources should be downloaded for dependencies. Passing
+	 * <code>null</code> means the <code>JBANG_DOWNLOAD_SOURCES</code> environment
+	 * variable decides.
+	 */
+	public static void setDownloadSources(Boolean flag) {
 		downloadSources = flag;
 	}
 
@@ -852,6 +870,19 @@ public class Util {
 		return getStableID(Stream.of(input));
 	}
 
+	/**
+	 * Returns a hash of the environment variables that influence the way JBang
+	 * works.
+	 */
+	public static String getEnvironmentFingerprint() {
+		Map<String, String> env = System.getenv();
+		return getStableID(env.keySet()
+			.stream()
+			.filter(k -> k.startsWith("JBANG_") || k.equals("JAVA_HOME") || k.equals("PATH"))
+			.sorted()
+			.map(k -> k + "=" + env.get(k) + "\n"));
+	}
+
 	public static String getStableID(Stream<String> inputs) {
 		final MessageDigest digest;
 		try {
@@ -1421,6 +1452,9 @@ public class Util {
 		if (options.length == 0) {
 			return -1;
 		}
+		if (!inputAvailable) {
+			throw new InputRequiredException(message);
+		}
 		ConsoleInput con = ConsoleInput.get(1, timeout, TimeUnit.SECONDS);
 		if (con != null) {
 			StringBuilder msg = new StringBuilder(message + "\n\n");
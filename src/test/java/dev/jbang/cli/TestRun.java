@@ -41,6 +41,7 @@ import java.util.jar.JarOutputStream;
 import java.util.jar.Manifest;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
@@ -870,6 +871,42 @@ public class TestRun extends BaseTest {
 
 	}
 
+	@Test
+	void testCreateStoredJar(@TempDir Path rootdir) throws IOException {
+		Path dir = rootdir.resolve("content");
+		Files.createDirectories(dir.resolve("a/b"));
+		for (int i = 0; i < 40; i++) {
+			Util.writeString(dir.resolve("a/b/file" + i + ".txt"), "content " + i);
+		}
+		Path compressed = rootdir.resolve("compressed.jar");
+		Path stored = rootdir.resolve("stored.jar");
+
+		Source src = new JavaSource(ResourceRef.forLiteral(""), null);
+		Project prj = Project.builder().build(src);
+		prj.setMainClass("wonkabear");
+
+		JarBuildStep.createJar(prj, dir, compressed);
+		System.setProperty("jbang.build.jar.compress", "false");
+		try {
+			JarBuildStep.createJar(prj, dir, stored);
+		} finally {
+			System.clearProperty("jbang.build.jar.compress");
+		}
+
+		try (JarFile jf = new JarFile(compressed.toFile())) {
+			assertThat(Collections.list(jf.entries()), IsCollectionWithSize.hasSize(44));
+			assertThat(jf.getEntry("a/b/file7.txt").getMethod(), equalTo(ZipEntry.DEFLATED));
+		}
+		try (JarFile jf = new JarFile(stored.toFile())) {
+			assertThat(Collections.list(jf.entries()), IsCollectionWithSize.hasSize(44));
+			assertThat(jf.getEntry("a/b/file7.txt").getMethod(), equalTo(ZipEntry.STORED));
+			assertThat(jf.getManifest().getMainAttributes().getValue(Attributes.Name.MAIN_CLASS), equalTo("wonkabear"));
+			try (InputStream is = jf.getInputStream(jf.getEntry("a/b/file7.txt"))) {
+				assertThat(new String(is.readAllBytes()), equalTo("content 7"));
+			}
+		}
+	}
+
 	@Test
 	void testGenArgs() {
 
@@ -1222,7 +1259,11 @@ public class TestRun extends BaseTest {
 
 		if (JavaUtil.getCurrentMajorJavaVersion() >= 13) {
 			String commandLine = run.updateGeneratorForRun(CmdGenerator.builder(code)).build().generate();
-			assertThat(commandLine, containsString("-XX:ArchiveClassesAtExit="));
+			if (JavaUtil.getCurrentMajorJavaVersion() >= 19) {
+				assertThat(commandLine, containsString("-XX:+AutoCreateSharedArchive"));
+			} else {
+				assertThat(commandLine, containsString("-XX:ArchiveClassesAtExit="));
+			}
 		} else {
 			CaptureResult<String> cap = captureOutput(
 					() -> run.updateGeneratorForRun(CmdGenerator.builder(code)).build().generate());
@@ -1239,6 +1280,52 @@ public class TestRun extends BaseTest {
 		assert (!run.runMixin.getCds());
 	}
 
+	@Test
+	void testRuntimeProfileInSource(@TempDir Path output) throws Exception {
+		String source = "//RUNTIME_PROFILE fast-start\n//RUNTIME_OPTIONS -XX:+UseParallelGC\nclass rp { }";
+		Path p = output.resolve("rp.java");
+		writeString(p, source);
+
+		Run run = JBang.parseCommand("run", p.toString());
+		ProjectBuilder pb = run.createProjectBuilderForRun();
+		pb.mainClass("fakemain");
+		Project code = pb.build(p);
+
+		String commandLine = run.updateGeneratorForRun(CmdGenerator.builder(code)).build().generate();
+		assertThat(commandLine, containsString("-XX:TieredStopAtLevel=1"));
+		assertThat(commandLine, containsString("-XX:+UseParallelGC"));
+		// The user's choice of GC wins
+		assertThat(commandLine, not(containsString("-XX:+UseSerialGC")));
+
+		run = JBang.parseCommand("run", "--runtime-profile=default", p.toString());
+		commandLine = run.updateGeneratorForRun(CmdGenerator.builder(code)).build().generate();
+		assertThat(commandLine, not(containsString("-XX:TieredStopAtLevel=1")));
+	}
+
+	@Test
+	void testRuntimeProfileUnknown(@TempDir Path output) throws Exception {
+		Path p = output.resolve("rp.java");
+		writeString(p, "class rp { }");
+
+		Run run = JBang.parseCommand("run", "--runtime-profile=slow-start", p.toString());
+		ProjectBuilder pb = run.createProjectBuilderForRun();
+		pb.mainClass("fakemain");
+		Project code = pb.build(p);
+
+		ExitException ex = assertThrows(ExitException.class,
+				() -> run.updateGeneratorForRun(CmdGenerator.builder(code)).build().generate());
+		assertThat(ex.getMessage(), containsString("Unknown runtime profile 'slow-start'"));
+	}
+
+	@Test
+	void testAotPresentOnCli() {
+		String arg = examplesTestFolder.resolve("helloworld.java").toAbsolutePath().toString();
+		Run run = JBang.parseCommand("run", "--aot", arg);
+
+		assert (run.runMixin.getAot() != null);
+		assert (run.runMixin.getAot());
+	}
+
 	String agent = "//JAVAAGENT Can-Redefine-Classes=false Can-Retransform-Classes\n" +
 			"public class Agent {\n" +
 			"public static void premain(String xyz) { };\n" +
@@ -0,0 +1,132 @@
+package dev.jbang.daemon;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Properties;
+
+import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLSocketFactory;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import dev.jbang.BaseTest;
+import dev.jbang.ExitException;
+import dev.jbang.Settings;
+import dev.jbang.util.Util;
+
+public class TestBuildDaemon extends BaseTest {
+
+	@Test
+	void testNoForwardWhenDisabled() {
+		assertThat(DaemonClient.canForward(new String[] { "run", "foo.java" }), is(false));
+	}
+
+	@Test
+	void testNoForwardForOtherCommands() throws Exception {
+		Util.withConfig(Settings.CONFIG_DAEMON, "true", () -> {
+			assertThat(DaemonClient.canForward(new String[] { "run", "foo.java" }), is(true));
+			assertThat(DaemonClient.canForward(new String[] { "--verbose", "build", "foo.java" }), is(true));
+			assertThat(DaemonClient.canForward(new String[] { "run", "-" }), is(false));
+			assertThat(DaemonClient.canForward(new String[] { "cache", "clear" }), is(false));
+			return null;
+		});
+	}
+
+	@Test
+	void testGlobalStateRestored() {
+		SSLSocketFactory factory = HttpsURLConnection.getDefaultSSLSocketFactory();
+		HostnameVerifier verifier = HttpsURLConnection.getDefaultHostnameVerifier();
+		GlobalState state = GlobalState.capture();
+		try {
+			Util.setOffline(true);
+			Util.setDownloadSources(true);
+			HttpsURLConnection.setDefaultHostnameVerifier((hostname, session) -> true);
+		} finally {
+			state.restore();
+		}
+		assertThat(Util.isOffline(), is(false));
+		assertThat(Util.downloadSources(), is(false));
+		assertThat(HttpsURLConnection.getDefaultSSLSocketFactory(), sameInstance(factory));
+		assertThat(HttpsURLConnection.getDefaultHostnameVerifier(), sameInstance(verifier));
+	}
+
+	@Test
+	void testStateFilePrivate(@TempDir Path dir) throws Exception {
+		Path file = BuildDaemon.createPrivateFile(dir);
+		assertThat(BuildDaemon.isPrivate(file), is(true));
+		if (!Util.isWindows()) {
+			Files.setPosixFilePermissions(file, PosixFilePermissions.fromString("rw-r--r--"));
+			assertThat(BuildDaemon.isPrivate(file), is(false));
+			assertThat(BuildDaemon.readState(file), nullValue());
+		}
+	}
+
+	@Test
+	void testNoRerunWhenConnectionLost() throws Exception {
+		try (ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+			Properties props = new Properties();
+			props.setProperty(BuildDaemon.KEY_PORT, Integer.toString(server.getLocalPort()));
+			props.setProperty(BuildDaemon.KEY_TOKEN, "token");
+			props.setProperty(BuildDaemon.KEY_JBANG_VERSION, Util.getJBangVersion());
+			Path stateFile = BuildDaemon.getStateFile();
+			Files.createDirectories(stateFile.getParent());
+			Path tmp = BuildDaemon.createPrivateFile(stateFile.getParent());
+			try (Writer w = Files.newBufferedWriter(tmp)) {
+				props.store(w, null);
+			}
+			Files.move(tmp, stateFile, StandardCopyOption.REPLACE_EXISTING);
+			// Accepts the request and then goes away
+			Thread t = new Thread(() -> {
+				try (Socket s = server.accept()) {
+					s.getOutputStream().write(BuildDaemon.FRAME_ACCEPT);
+					s.getOutputStream().flush();
+				} catch (IOException e) {
+					throw new RuntimeException(e);
+				}
+			});
+			t.start();
+			Util.withConfig(Settings.CONFIG_DAEMON, "true", () -> {
+				assertThrows(ExitException.class, () -> DaemonClient.tryForward(new String[] { "run", "foo.java" }));
+				return null;
+			});
+			t.join(10000);
+		}
+	}
+
+	@Test
+	void testStatusAndStop() throws Exception {
+		assertThat(DaemonClient.isRunning(), is(false));
+		BuildDaemon daemon = new BuildDaemon(BuildDaemon.getStateFile(), 60);
+		Thread t = new Thread(() -> {
+			try {
+				daemon.serve();
+			} catch (Exception e) {
+				throw new RuntimeException(e);
+			}
+		});
+		t.start();
+		for (int i = 0; i < 100 && !DaemonClient.isRunning(); i++) {
+			Thread.sleep(100);
+		}
+		assertThat(DaemonClient.isRunning(), is(true));
+		assertThat(DaemonClient.stop(), is(true));
+		t.join(10000);
+		assertThat(t.isAlive(), is(false));
+		assertThat(Files.exists(BuildDaemon.getStateFile()), is(false));
+	}
+}
@@ -160,6 +160,34 @@ class DependencyResolverTest extends BaseTest {
 		assertEquals(2, classpath.getClassPaths().size());
 	}
 
+	@Test
+	void testResolveAllDependencies() {
+		List<String> union = Arrays.asList("com.offbytwo:docopt:0.6.0.20150202", "log4j:log4j:1.2.17");
+		List<String> sub = Collections.singletonList("log4j:log4j:1.2.17");
+
+		List<ModularClassPath> classpaths = DependencyUtil.resolveAllDependencies(
+				Arrays.asList(union, sub, Collections.emptyList(), sub),
+				Collections.nCopies(4, Collections.emptyList()), false, false, false, true, false);
+
+		assertThat(classpaths, hasSize(4));
+		assertEquals(2, classpaths.get(0).getClassPaths().size());
+		assertEquals(1, classpaths.get(1).getClassPaths().size());
+		assertEquals(0, classpaths.get(2).getClassPaths().size());
+		assertEquals(classpaths.get(1).getClassPaths(), classpaths.get(3).getClassPaths());
+	}
+
+	@Test
+	void testResolveAllKeepsRepositoriesApart() {
+		DependencyResolver one = new DependencyResolver()
+			.addRepository(new MavenRepo("custom", "https://one.example.com/maven"));
+		DependencyResolver two = new DependencyResolver()
+			.addRepository(new MavenRepo("custom", "https://two.example.com/maven"));
+
+		List<ModularClassPath> classpaths = DependencyResolver.resolveAll(Arrays.asList(one, two));
+
+		assertThat(classpaths, hasSize(2));
+	}
+
 	@Test
 	void testResolveDependenciesNoDuplicates() {
 		List<String> deps = Arrays.asList("org.apache.commons:commons-configuration2:2.7",
@@ -4,15 +4,27 @@ import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.*;
 import static org.hamcrest.io.FileMatchers.aFileWithSize;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.hamcrest.MatcherAssert;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import dev.jbang.BaseTest;
+import dev.jbang.Main;
 import dev.jbang.Settings;
+import dev.jbang.util.Util;
 
 public class TestArtifactInfo extends BaseTest {
 
@@ -39,4 +51,142 @@ public class TestArtifactInfo extends BaseTest {
 
 		assertThat(wonka, contains(classpath.getArtifacts().toArray()));
 	}
+
+	@Test
+	public void testDependencyCacheFile(@TempDir Path dir) throws IOException {
+		DependencyCacheFile cf = new DependencyCacheFile(dir.resolve("deps.bin"));
+		assertThat(cf.get("foo"), nullValue());
+
+		List<ArtifactInfo> foo = Arrays.asList(artifact(dir, "foo:foo:1"), artifact(dir, "bar:bar:2"));
+		List<ArtifactInfo> baz = Collections.singletonList(artifact(dir, "baz:baz:3"));
+		cf.put("foo", foo);
+		cf.put("baz", baz);
+		assertThat(cf.get("foo"), contains(foo.toArray()));
+		assertThat(cf.get("foo").get(1).getTimestamp(), equalTo(foo.get(1).getTimestamp()));
+		assertThat(cf.get("baz"), contains(baz.toArray()));
+		assertThat(cf.get("bar"), nullValue());
+
+		// Later entries replace earlier ones
+		cf.put("foo", baz);
+		assertThat(cf.get("foo"), contains(baz.toArray()));
+
+		// Invalid files are treated as empty and get replaced
+		Util.writeString(cf.getFile(), "{}");
+		assertThat(cf.get("foo"), nullValue());
+		cf.put("foo", foo);
+		assertThat(cf.get("foo"), contains(foo.toArray()));
+	}
+
+	@Test
+	public void testDependencyCacheFileConcurrentWriters(@TempDir Path dir) throws Exception {
+		Path cacheFile = dir.resolve("deps.bin");
+		List<ArtifactInfo> foo = Collections.singletonList(artifact(dir, "foo:foo:1"));
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int t = 0; t < 8; t++) {
+				int thread = t;
+				futures.add(executor.submit(() -> {
+					// Separate instances, just like separate processes would have
+					DependencyCacheFile cf = new DependencyCacheFile(cacheFile, 64 * 1024);
+					for (int i = 0; i < 100; i++) {
+						cf.put("key-" + thread + "-" + i, foo);
+					}
+					return null;
+				}));
+			}
+			for (Future<?> f : futures) {
+				f.get();
+			}
+		} finally {
+			executor.shutdown();
+		}
+
+		DependencyCacheFile cf = new DependencyCacheFile(cacheFile);
+		for (int t = 0; t < 8; t++) {
+			for (int i = 0; i < 100; i++) {
+				assertThat(cf.get("key-" + t + "-" + i), contains(foo.toArray()));
+			}
+		}
+	}
+
+	@Test
+	public void testDependencyCacheFileCompaction(@TempDir Path dir) throws IOException {
+		DependencyCacheFile cf = new DependencyCacheFile(dir.resolve("deps.bin"), 64 * 1024);
+		List<ArtifactInfo> foo = Arrays.asList(artifact(dir, "foo:foo:1"), artifact(dir, "bar:bar:2"));
+		List<ArtifactInfo> baz = Collections.singletonList(artifact(dir, "baz:baz:3"));
+		cf.put("baz", baz);
+		for (int i = 0; i < 2000; i++) {
+			cf.put("foo", i % 2 == 0 ? baz : foo);
+		}
+		// Without compaction all those updates would take up way more space
+		assertThat(Files.size(cf.getFile()), lessThan(128 * 1024L));
+		assertThat(cf.get("foo"), contains(foo.toArray()));
+		assertThat(cf.get("baz"), contains(baz.toArray()));
+	}
+
+	@Test
+	public void testDependencyCacheMerge(@TempDir Path dir) throws IOException {
+		DependencyCacheFile cf = new DependencyCacheFile(dir.resolve("deps.bin"));
+		List<ArtifactInfo> foo = Collections.singletonList(artifact(dir, "foo:foo:1"));
+		List<ArtifactInfo> baz = Collections.singletonList(artifact(dir, "baz:baz:3"));
+		cf.put("foo", foo);
+		Map<String, List<ArtifactInfo>> entries = new HashMap<>();
+		entries.put("foo", baz);
+		entries.put("baz", baz);
+		cf.merge(entries);
+		assertThat(cf.get("foo"), contains(foo.toArray()));
+		assertThat(cf.get("baz"), contains(baz.toArray()));
+	}
+
+	@Test
+	public void testAllUpToDate(@TempDir Path dir) throws IOException {
+		ArtifactInfo.clearFileStates();
+		List<ArtifactInfo> artifacts = new ArrayList<>();
+		for (int i = 0; i < 20; i++) {
+			artifacts.add(artifact(dir, "foo:foo" + i + ":1"));
+		}
+		assertThat(ArtifactInfo.allUpToDate(artifacts), is(true));
+
+		// File states are remembered until cleared
+		Files.delete(artifacts.get(5).getFile());
+		assertThat(ArtifactInfo.allUpToDate(artifacts), is(true));
+		ArtifactInfo.clearFileStates();
+		assertThat(ArtifactInfo.allUpToDate(artifacts), is(false));
+
+		// Creating a new artifact refreshes the remembered state
+		Files.createFile(artifacts.get(5).getFile());
+		ArtifactInfo refreshed = new ArtifactInfo(artifacts.get(5).getCoordinate(), artifacts.get(5).getFile());
+		assertThat(refreshed.isUpToDate(), is(true));
+	}
+
+	@Test
+	public void testFileStatesClearedPerInvocation(@TempDir Path dir) throws IOException {
+		ArtifactInfo foo = artifact(dir, "foo:foo:1");
+		Files.delete(foo.getFile());
+		assertThat(foo.isUpToDate(), is(true));
+		Main.execute("--version");
+		assertThat(foo.isUpToDate(), is(false));
+	}
+
+	@Test
+	public void testLegacyDependencyCacheMigration() throws IOException {
+		DependencyCache.clear();
+		Path jar = Files.createFile(jbangTempDir.resolve("foo.jar"));
+		Util.writeString(Settings.getLegacyCacheDependencyFile(),
+				"{\"wonka\": [{\"gav\": \"foo:foo:1\", \"file\": \"" + jar.toString().replace("\\", "\\\\")
+						+ "\", \"ts\": " + jar.toFile().lastModified() + "}]}");
+
+		List<ArtifactInfo> wonka = DependencyCache.findDependenciesByHash("wonka");
+
+		assertThat(wonka, hasSize(1));
+		assertThat(wonka.get(0).getFile(), equalTo(jar));
+		assertThat(Files.exists(Settings.getLegacyCacheDependencyFile()), is(false));
+		assertThat(Files.isRegularFile(Settings.getCacheDependencyFile()), is(true));
+	}
+
+	private static ArtifactInfo artifact(Path dir, String gav) throws IOException {
+		Path file = Files.createFile(dir.resolve(gav.replace(':', '_') + ".jar"));
+		return new ArtifactInfo(MavenCoordinate.fromString(gav), file);
+	}
 }
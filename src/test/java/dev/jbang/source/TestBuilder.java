@@ -8,11 +8,16 @@ import static org.hamcrest.Matchers.*;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiConsumer;
@@ -30,6 +35,8 @@ import dev.jbang.ExitException;
 import dev.jbang.Settings;
 import dev.jbang.catalog.Alias;
 import dev.jbang.catalog.CatalogUtil;
+import dev.jbang.source.buildsteps.InProcessCompiler;
+import dev.jbang.source.buildsteps.IncrementalCompilation;
 import dev.jbang.source.buildsteps.IntegrationBuildStep;
 import dev.jbang.source.buildsteps.JarBuildStep;
 import dev.jbang.source.buildsteps.NativeBuildStep;
@@ -443,6 +450,74 @@ public class TestBuilder extends BaseTest {
 		assertThat(callCount.get(), equalTo(2));
 	}
 
+	@Test
+	void testBuildDirIsContentAddressed(@TempDir Path dir) throws IOException {
+		String script = "public class hello { public static void main(String... args) {} }\n";
+		Path one = dir.resolve("one").resolve("hello.java");
+		Path two = dir.resolve("two").resolve("hello.java");
+		one.getParent().toFile().mkdirs();
+		two.getParent().toFile().mkdirs();
+		writeString(one, script);
+		writeString(two, script);
+
+		Path jar1 = BuildContext.forProject(Project.builder().build(one.toString())).getJarFile();
+		Path jar2 = BuildContext.forProject(Project.builder().build(two.toString())).getJarFile();
+		assertThat(jar2, equalTo(jar1));
+
+		Path jar3 = BuildContext.forProject(
+				Project.builder().compileOptions(Arrays.asList("-g")).build(two.toString()))
+			.getJarFile();
+		assertThat(jar3, not(equalTo(jar1)));
+
+		Path jar4 = BuildContext.forProject(Project.builder().javaVersion("21+").build(two.toString()))
+			.getJarFile();
+		assertThat(jar4, not(equalTo(jar1)));
+	}
+
+	@Test
+	void testBuildCache(@TempDir Path dir) throws IOException {
+		Path src = dir.resolve("hello.java");
+		writeString(src, "public class hello { public static void main(String... args) {} }\n");
+		BuildContext ctx = BuildContext.forProject(Project.builder().build(src.toString()));
+		Path jar = ctx.getJarFile();
+		jar.getParent().toFile().mkdirs();
+		writeString(jar, "not really a jar");
+
+		BuildCache cache = BuildCache.forLocation(dir.resolve("cache").toString(), true);
+		cache.store(ctx);
+		assertThat(dir.resolve("cache").resolve(BuildCache.getKey(ctx)).toFile(), anExistingFile());
+
+		Util.deletePath(jar, false);
+		assertThat(cache.fetch(ctx), is(true));
+		assertThat(readString(jar), equalTo("not really a jar"));
+
+		BuildContext other = BuildContext.forProject(
+				Project.builder().compileOptions(Arrays.asList("-g")).build(src.toString()));
+		assertThat(cache.fetch(other), is(false));
+	}
+
+	@Test
+	void testParallelSourceDeps(@TempDir Path dir) throws IOException {
+		Path main = dir.resolve("main.java");
+		writeString(main, "//DEPS One.java Two.java\npublic class main {}\n");
+		writeString(dir.resolve("One.java"), "public class One {}\n");
+		writeString(dir.resolve("Two.java"), "//DEPS Three.java\npublic class Two {}\n");
+		writeString(dir.resolve("Three.java"), "public class Three {}\n");
+		Project prj = Project.builder().build(main.toString());
+		BuildContext ctx = BuildContext.forProject(prj);
+		List<String> built = new CopyOnWriteArrayList<>();
+		System.setProperty("jbang.build.threads", "4");
+		try {
+			runBuild(ctx, (ctxx, optionList) -> built.add(
+					ctxx.getProject().getResourceRef().getFile().getFileName().toString()), null, null, null);
+		} finally {
+			System.clearProperty("jbang.build.threads");
+		}
+		assertThat(built, containsInAnyOrder("main.java", "One.java", "Two.java", "Three.java"));
+		assertThat(built.get(3), equalTo("main.java"));
+		assertThat(built.indexOf("Three.java"), lessThan(built.indexOf("Two.java")));
+	}
+
 	@Test
 	void testSourceSelfDep() throws IOException {
 		try {
@@ -484,6 +559,145 @@ public class TestBuilder extends BaseTest {
 		assertThat(integrationStepCalled.get(), is(false));
 	}
 
+	@Test
+	void testInProcessCompiler(@TempDir Path out) throws IOException {
+		Path foo = examplesTestFolder.resolve("helloworld.java").toAbsolutePath();
+		Path home = Paths.get(System.getProperty("java.home"));
+		String javac = home.resolve("bin").resolve(Util.isWindows() ? "javac.exe" : "javac").toString();
+		List<String> cmd = Arrays.asList(javac, "-g", "-d", out.toString(), foo.toString());
+		assertThat(InProcessCompiler.canCompile(cmd), is(true));
+		assertThat(InProcessCompiler.canCompile(Arrays.asList(javac, "-J-Xmx1g", foo.toString())), is(false));
+		assertThat(InProcessCompiler.canCompile(Arrays.asList("javac", foo.toString())), is(false));
+		InProcessCompiler.compile(cmd);
+		assertThat(out.resolve("helloworld.class").toFile().exists(), is(true));
+	}
+
+	@Test
+	void testIncrementalCompile(@TempDir Path dir) throws IOException {
+		Path main = dir.resolve("main.java");
+		Path b = dir.resolve("B.java");
+		Path c = dir.resolve("C.java");
+		writeString(main,
+				"//SOURCES B.java C.java\npublic class main { public static void main(String... args) { new B(); } }\n");
+		writeString(b, "public class B {}\n");
+		writeString(c, "public class C {}\n");
+		List<List<String>> compiles = new ArrayList<>();
+		buildIncremental(main, compiles, null);
+		assertThat(compiles, hasSize(1));
+
+		// Nothing depends on C, so only C gets recompiled
+		compiles.clear();
+		writeString(c, "public class C { void foo() {} }\n");
+		buildIncremental(main, compiles, null);
+		assertThat(compiles, hasSize(1));
+		assertThat(compiles.get(0), hasItem(endsWith(File.separator + "C.java")));
+		assertThat(compiles.get(0), not(hasItem(endsWith(File.separator + "B.java"))));
+		assertThat(compiles.get(0), not(hasItem(endsWith(File.separator + "main.java"))));
+
+		// The main class uses B, so it gets recompiled as well
+		compiles.clear();
+		writeString(b, "public class B { void foo() {} }\n");
+		BuildContext ctx = buildIncremental(main, compiles, null);
+		assertThat(compiles, hasSize(1));
+		assertThat(compiles.get(0), hasItem(endsWith(File.separator + "B.java")));
+		assertThat(compiles.get(0), hasItem(endsWith(File.separator + "main.java")));
+		assertThat(compiles.get(0), not(hasItem(endsWith(File.separator + "C.java"))));
+		assertThat(jarEntries(ctx.getJarFile()), hasItems("main.class", "B.class", "C.class"));
+	}
+
+	@Test
+	void testIncrementalCompileConstantChanged(@TempDir Path dir) throws IOException {
+		Path main = dir.resolve("main.java");
+		Path b = dir.resolve("B.java");
+		writeString(main, "//SOURCES B.java C.java\n"
+				+ "public class main { public static void main(String... args) { System.out.println(B.X); } }\n");
+		writeString(b, "public class B { public static final int X = 1; }\n");
+		writeString(dir.resolve("C.java"), "public class C {}\n");
+		List<List<String>> compiles = new ArrayList<>();
+		buildIncremental(main, compiles, null);
+
+		// The constant got inlined into the main class, so everything is rebuilt
+		compiles.clear();
+		writeString(b, "public class B { public static final int X = 2; }\n");
+		buildIncremental(main, compiles, null);
+		assertThat(compiles, hasSize(2));
+		assertThat(compiles.get(0), hasItem(endsWith(File.separator + "B.java")));
+		assertThat(compiles.get(0), not(hasItem(endsWith(File.separator + "C.java"))));
+		assertThat(compiles.get(1), hasItems(endsWith(File.separator + "main.java"),
+				endsWith(File.separator + "B.java"), endsWith(File.separator + "C.java")));
+	}
+
+	@Test
+	void testIncrementalCompileSourceRemoved(@TempDir Path dir) throws IOException {
+		Path main = dir.resolve("main.java");
+		Path c = dir.resolve("C.java");
+		writeString(main, "//SOURCES B.java C.java\npublic class main { public static void main(String... args) {} }\n");
+		writeString(dir.resolve("B.java"), "public class B {}\n");
+		writeString(c, "public class C { class Inner {} }\n");
+		List<List<String>> compiles = new ArrayList<>();
+		BuildContext ctx = buildIncremental(main, compiles, null);
+		assertThat(jarEntries(ctx.getJarFile()), hasItems("C.class", "C$Inner.class"));
+
+		compiles.clear();
+		writeString(main, "//SOURCES B.java\npublic class main { public static void main(String... args) {} }\n");
+		Files.delete(c);
+		ctx = buildIncremental(main, compiles, null);
+		assertThat(compiles, hasSize(1));
+		assertThat(compiles.get(0), hasItem(endsWith(File.separator + "main.java")));
+		assertThat(compiles.get(0), not(hasItem(endsWith(File.separator + "B.java"))));
+		assertThat(jarEntries(ctx.getJarFile()), hasItems("main.class", "B.class"));
+		assertThat(jarEntries(ctx.getJarFile()), not(hasItem(startsWith("C"))));
+	}
+
+	@Test
+	void testIncrementalCompilePatchesJar(@TempDir Path dir) throws IOException {
+		Path main = dir.resolve("main.java");
+		Path b = dir.resolve("B.java");
+		writeString(main, "//SOURCES B.java\npublic class main { public static void main(String... args) {} }\n");
+		writeString(b, "public class B {}\n");
+		List<Optional<Path>> previousJars = new ArrayList<>();
+		Function<BuildContext, Project> jarStep = ctxx -> {
+			previousJars.add(IncrementalCompilation.previousJar(ctxx));
+			try {
+				return new JarBuildStep(ctxx).build();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		};
+		BuildContext ctx1 = buildIncremental(main, new ArrayList<>(), jarStep);
+		assertThat(previousJars.get(0).isPresent(), is(false));
+
+		writeString(b, "public class B { void foo() {} }\n");
+		BuildContext ctx2 = buildIncremental(main, new ArrayList<>(), jarStep);
+		assertThat(ctx2.getJarFile(), not(equalTo(ctx1.getJarFile())));
+		assertThat(previousJars.get(1).isPresent(), is(true));
+		assertThat(previousJars.get(1).get(), equalTo(ctx1.getJarFile().toAbsolutePath()));
+		assertThat(jarEntries(ctx2.getJarFile()), hasItems("main.class", "B.class"));
+		try (JarFile jf = new JarFile(ctx2.getJarFile().toFile())) {
+			assertThat(jf.getManifest().getMainAttributes().getValue(Attributes.Name.MAIN_CLASS), equalTo("main"));
+		}
+	}
+
+	private BuildContext buildIncremental(Path src, List<List<String>> compiles,
+			Function<BuildContext, Project> jarStep) throws IOException {
+		BuildContext ctx = BuildContext.forProject(Project.builder().build(src.toString()));
+		runBuild(ctx, (ctxx, optionList) -> {
+			compiles.add(new ArrayList<>(optionList));
+			try {
+				InProcessCompiler.compile(optionList);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}, null, jarStep, null);
+		return ctx;
+	}
+
+	private static List<String> jarEntries(Path jar) throws IOException {
+		try (JarFile jf = new JarFile(jar.toFile())) {
+			return jf.stream().map(e -> e.getName()).collect(Collectors.toList());
+		}
+	}
+
 	private void runBuild(BuildContext ctx, BiConsumer<BuildContext, List<String>> compileStep,
 			Function<BuildContext, IntegrationResult> integrationStep, Function<BuildContext, Project> jarStep,
 			BiConsumer<BuildContext, List<String>> nativeStep)
@@ -0,0 +1,118 @@
+package dev.jbang.source;
+
+import static dev.jbang.util.Util.writeString;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import dev.jbang.BaseTest;
+import dev.jbang.Configuration;
+import dev.jbang.Settings;
+import dev.jbang.devkitman.Jdk;
+import dev.jbang.util.JavaUtil;
+
+public class TestClassDataSharing extends BaseTest {
+
+	@Test
+	void testNotRequested(@TempDir Path dir) throws IOException {
+		BuildContext ctx = context(dir);
+		Jdk jdk = ctx.getProject().projectJdk();
+		assertThat(ClassDataSharing.getOptions(ctx, jdk, false, false, Collections.emptyList()), empty());
+		assertThat(ClassDataSharing.isPending(ctx), is(false));
+	}
+
+	@Test
+	void testAutoAfterRuns(@TempDir Path dir) throws IOException {
+		assumeTrue(JavaUtil.getCurrentMajorJavaVersion() >= 13);
+		Configuration.instance().put(Settings.CONFIG_CDS_AUTO, "true");
+		Configuration.instance().put(Settings.CONFIG_CDS_AUTO_RUNS, "2");
+		BuildContext ctx = context(dir);
+		Jdk jdk = ctx.getProject().projectJdk();
+
+		assertThat(ClassDataSharing.isPending(ctx), is(true));
+		assertThat(ClassDataSharing.getOptions(ctx, jdk, false, false, Collections.emptyList()), empty());
+		assertThat(ClassDataSharing.isPending(ctx), is(true));
+		List<String> opts = ClassDataSharing.getOptions(ctx, jdk, false, false, Collections.emptyList());
+		assertThat(opts,
+				hasItem(anyOf(startsWith("-XX:ArchiveClassesAtExit="), equalTo("-XX:+AutoCreateSharedArchive"))));
+		assertThat(ClassDataSharing.isPending(ctx), is(false));
+	}
+
+	@Test
+	void testOutdatedArchive(@TempDir Path dir) throws IOException {
+		assumeTrue(JavaUtil.getCurrentMajorJavaVersion() >= 13);
+		BuildContext ctx = context(dir);
+		Jdk jdk = ctx.getProject().projectJdk();
+		Path jsa = ctx.getJsaFile();
+
+		ClassDataSharing.getOptions(ctx, jdk, true, false, Collections.emptyList());
+		writeString(jsa, "archive");
+		assertThat(ClassDataSharing.getOptions(ctx, jdk, true, false, Collections.emptyList()),
+				hasItem("-XX:SharedArchiveFile=" + jsa.toAbsolutePath()));
+		assertThat(Files.exists(jsa), is(true));
+
+		// A different jar means the archive can't be used anymore
+		writeString(ctx.getJarFile(), "a different jar");
+		ClassDataSharing.getOptions(ctx, jdk, true, false, Collections.emptyList());
+		assertThat(Files.exists(jsa), is(false));
+	}
+
+	@Test
+	void testAotCache(@TempDir Path dir) throws IOException {
+		BuildContext ctx = context(dir);
+		Jdk jdk = ctx.getProject().projectJdk();
+		List<String> cpArgs = Arrays.asList("-classpath", ctx.getJarFile().toString());
+
+		List<String> opts = ClassDataSharing.getOptions(ctx, jdk, true, true, cpArgs);
+		if (jdk.majorVersion() >= 25) {
+			assertThat(opts, contains("-XX:AOTCacheOutput=" + ctx.getAotFile().toAbsolutePath()));
+		} else if (jdk.majorVersion() >= 24) {
+			assertThat(opts, hasItem("-XX:AOTMode=record"));
+		} else if (jdk.majorVersion() >= 13) {
+			assertThat(opts, not(hasItem(startsWith("-XX:AOT"))));
+		}
+
+		if (jdk.majorVersion() >= 24) {
+			writeString(ctx.getAotFile(), "cache");
+			assertThat(ClassDataSharing.getOptions(ctx, jdk, true, true, cpArgs),
+					contains("-XX:AOTCache=" + ctx.getAotFile().toAbsolutePath()));
+		}
+	}
+
+	@Test
+	void testFindOrphans(@TempDir Path dir) throws IOException {
+		Path sub = dir.resolve("app.java.123");
+		Files.createDirectories(sub);
+		writeString(sub.resolve("app.jar"), "");
+		writeString(sub.resolve("app.jsa"), "");
+		writeString(sub.resolve("app.jsa.info"), "");
+		writeString(sub.resolve("gone.jsa"), "");
+		writeString(sub.resolve("gone.jsa.info"), "");
+		writeString(sub.resolve("app.aot"), "");
+		writeString(sub.resolve("gone.aot"), "");
+		writeString(sub.resolve("gone.aotconf"), "");
+
+		assertThat(ClassDataSharing.findOrphans(dir),
+				containsInAnyOrder(sub.resolve("gone.jsa"), sub.resolve("gone.jsa.info"), sub.resolve("gone.aot"),
+						sub.resolve("gone.aotconf")));
+	}
+
+	private BuildContext context(Path dir) throws IOException {
+		Path src = dir.resolve("app.java");
+		writeString(src, "public class app { public static void main(String... args) {} }\n");
+		BuildContext ctx = BuildContext.forProject(Project.builder().build(src.toString()));
+		Files.createDirectories(ctx.getJarFile().getParent());
+		writeString(ctx.getJarFile(), "not really a jar");
+		return ctx;
+	}
+}
@@ -0,0 +1,89 @@
+package dev.jbang.source;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import org.junit.jupiter.api.Test;
+
+import dev.jbang.BaseTest;
+import dev.jbang.ExitException;
+import dev.jbang.Main;
+import dev.jbang.util.Util;
+
+public class TestLaunchCache extends BaseTest {
+
+	@Test
+	void testLaunchCache() throws IOException {
+		Path script = cwdDir.resolve("helloworld.java");
+		Files.copy(examplesTestFolder.resolve("helloworld.java"), script);
+
+		assertThat(LaunchCache.lookup(new String[] { "run", "helloworld.java" }), nullValue());
+
+		int exitCode = Main.execute("run", "helloworld.java", "first");
+		assertThat(exitCode, equalTo(ExitException.EXIT_EXECUTE));
+
+		String cmdline = LaunchCache.lookup(new String[] { "run", "helloworld.java", "second", "third" });
+		assertThat(cmdline, notNullValue());
+		assertThat(cmdline, containsString("helloworld"));
+		assertThat(cmdline, endsWith(" second third"));
+		assertThat(cmdline, not(containsString("first")));
+
+		// Different options mean a different entry
+		assertThat(LaunchCache.lookup(new String[] { "run", "--enable-preview", "helloworld.java" }), nullValue());
+
+		// Changing the script invalidates the entry
+		Files.setLastModifiedTime(script, FileTime.fromMillis(System.currentTimeMillis() + 10000));
+		assertThat(LaunchCache.lookup(new String[] { "run", "helloworld.java" }), nullValue());
+	}
+
+	@Test
+	void testLaunchCacheSubProject() throws IOException {
+		Path lib = cwdDir.resolve("lib.java");
+		Util.writeString(lib, "public class lib { public static String hi() { return \"hi\"; } }\n");
+		Util.writeString(cwdDir.resolve("main.java"), "//DEPS lib.java\n"
+				+ "public class main { public static void main(String... args) { System.out.println(lib.hi()); } }\n");
+
+		int exitCode = Main.execute("run", "main.java");
+		assertThat(exitCode, equalTo(ExitException.EXIT_EXECUTE));
+		assertThat(LaunchCache.lookup(new String[] { "run", "main.java" }), notNullValue());
+
+		// Changing the sources of a sub-project invalidates the entry
+		Files.setLastModifiedTime(lib, FileTime.fromMillis(System.currentTimeMillis() + 10000));
+		assertThat(LaunchCache.lookup(new String[] { "run", "main.java" }), nullValue());
+	}
+
+	@Test
+	void testLaunchCacheSkipsPatterns() throws IOException {
+		Path util = cwdDir.resolve("util");
+		Files.createDirectories(util);
+		Util.writeString(util.resolve("One.java"), "package util; public class One {}\n");
+		Util.writeString(cwdDir.resolve("sources.java"), "//SOURCES util/*.java\n"
+				+ "public class sources { public static void main(String... args) {} }\n");
+		Util.writeString(cwdDir.resolve("files.java"), "//FILES util\n"
+				+ "public class files { public static void main(String... args) {} }\n");
+
+		// New files matching the pattern or added to the folder would go unnoticed
+		assertThat(Main.execute("run", "sources.java"), equalTo(ExitException.EXIT_EXECUTE));
+		assertThat(LaunchCache.lookup(new String[] { "run", "sources.java" }), nullValue());
+		assertThat(Main.execute("run", "files.java"), equalTo(ExitException.EXIT_EXECUTE));
+		assertThat(LaunchCache.lookup(new String[] { "run", "files.java" }), nullValue());
+	}
+
+	@Test
+	void testLaunchCacheDisabled() throws IOException {
+		Path script = cwdDir.resolve("helloworld.java");
+		Files.copy(examplesTestFolder.resolve("helloworld.java"), script);
+		System.setProperty("jbang.launch.cache", "false");
+		try {
+			Main.execute("run", "helloworld.java");
+		} finally {
+			System.clearProperty("jbang.launch.cache");
+		}
+		assertThat(LaunchCache.lookup(new String[] { "run", "helloworld.java" }), nullValue());
+	}
+}
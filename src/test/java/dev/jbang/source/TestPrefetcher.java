@@ -0,0 +1,63 @@
+package dev.jbang.source;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.jupiter.api.Test;
+
+import dev.jbang.BaseTest;
+import dev.jbang.resources.ResourceNotFoundException;
+import dev.jbang.resources.ResourceRef;
+import dev.jbang.resources.resolvers.RemoteResourceResolver;
+
+public class TestPrefetcher extends BaseTest {
+
+	@Test
+	void testPrefetchRemoteOnly() {
+		Map<String, String> fetchedBy = new ConcurrentHashMap<>();
+		List<ResourceRef> refs = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			refs.add(remote("https://example.com/src" + i + ".java", fetchedBy));
+		}
+		// Fails, but shouldn't stop the others
+		refs.add(new RemoteResourceResolver.RemoteResourceRef("https://example.com/missing.java", r -> {
+			throw new ResourceNotFoundException(r, "not there");
+		}, null));
+		refs.add(ResourceRef.forFile(Paths.get("local.java")));
+
+		Prefetcher.prefetch(refs);
+
+		assertThat(fetchedBy.keySet(), hasSize(4));
+		assertThat(fetchedBy.values(), everyItem(equalTo("jbang-prefetch")));
+		// Accessing them now doesn't fetch again
+		refs.get(0).getFile();
+		assertThat(fetchedBy.values(), not(hasItem(Thread.currentThread().getName())));
+	}
+
+	@Test
+	void testPrefetchDisabled() {
+		Map<String, String> fetchedBy = new ConcurrentHashMap<>();
+		System.setProperty("jbang.download.threads", "1");
+		try {
+			Prefetcher.prefetch(Arrays.asList(remote("https://example.com/a.java", fetchedBy),
+					remote("https://example.com/b.java", fetchedBy)));
+		} finally {
+			System.clearProperty("jbang.download.threads");
+		}
+		assertThat(fetchedBy.keySet(), empty());
+	}
+
+	private static ResourceRef remote(String url, Map<String, String> fetchedBy) {
+		return new RemoteResourceResolver.RemoteResourceRef(url, r -> {
+			fetchedBy.put(r, Thread.currentThread().getName());
+			return Paths.get(r.substring(r.lastIndexOf('/') + 1));
+		}, null);
+	}
+}
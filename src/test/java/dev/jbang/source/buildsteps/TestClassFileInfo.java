@@ -0,0 +1,61 @@
+package dev.jbang.source.buildsteps;
+
+import static dev.jbang.util.Util.writeString;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import dev.jbang.BaseTest;
+import dev.jbang.util.Util;
+
+public class TestClassFileInfo extends BaseTest {
+
+	@Test
+	void testReadClassFile(@TempDir Path dir) throws IOException {
+		Path src = dir.resolve("src");
+		Path out = dir.resolve("out");
+		Files.createDirectories(src.resolve("pkg"));
+		Path a = src.resolve("pkg").resolve("A.java");
+		Path b = src.resolve("pkg").resolve("B.java");
+		writeString(a, "package pkg;\npublic class A { public static final int X = 42; java.util.List<B> bs; }\n");
+		writeString(b, "package pkg;\npublic class B { void foo(java.io.File f) {} }\n");
+		compile(out, a, b);
+
+		ClassFileInfo infoA = ClassFileInfo.read(out.resolve("pkg/A.class"));
+		assertThat(infoA.name, equalTo("pkg/A"));
+		assertThat(infoA.packagePath(), equalTo("pkg"));
+		assertThat(infoA.sourceFile, equalTo("A.java"));
+		assertThat(infoA.references, hasItems("pkg/B", "java/util/List"));
+		assertThat(infoA.references, not(hasItem("pkg/A")));
+
+		ClassFileInfo infoB = ClassFileInfo.read(out.resolve("pkg/B.class"));
+		assertThat(infoB.references, hasItem("java/io/File"));
+		assertThat(infoB.constants, not(equalTo(infoA.constants)));
+
+		// Changing the value of a constant changes the fingerprint
+		String oldConstants = infoA.constants;
+		writeString(a, "package pkg;\npublic class A { public static final int X = 43; java.util.List<B> bs; }\n");
+		compile(out, a, b);
+		assertThat(ClassFileInfo.read(out.resolve("pkg/A.class")).constants, not(equalTo(oldConstants)));
+	}
+
+	static void compile(Path out, Path... sources) throws IOException {
+		Path home = Paths.get(System.getProperty("java.home"));
+		String javac = home.resolve("bin").resolve(Util.isWindows() ? "javac.exe" : "javac").toString();
+		List<String> cmd = new ArrayList<>(Arrays.asList(javac, "-g", "-d", out.toString()));
+		for (Path s : sources) {
+			cmd.add(s.toString());
+		}
+		InProcessCompiler.compile(cmd);
+	}
+}
@@ -0,0 +1,49 @@
+package dev.jbang.source.buildsteps;
+
+import static dev.jbang.source.buildsteps.TestClassFileInfo.compile;
+import static dev.jbang.util.Util.writeString;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import dev.jbang.BaseTest;
+
+public class TestEntryPoints extends BaseTest {
+
+	@Test
+	void testEntryPoints(@TempDir Path dir) throws IOException {
+		Path src = dir.resolve("src");
+		Path out = dir.resolve("out");
+		Files.createDirectories(src.resolve("pkg"));
+		Path a = src.resolve("pkg").resolve("A.java");
+		Path b = src.resolve("B.java");
+		Path c = src.resolve("C.java");
+		writeString(a, "package pkg;\npublic class A { public static void main(String... args) {} "
+				+ "class Inner { void main(String[] args) {} } }\n");
+		writeString(b, "public class B { public static void premain(String args, "
+				+ "java.lang.instrument.Instrumentation inst) {} static void main(int x) {} }\n");
+		writeString(c, "public class C { public static void agentmain(String args) {} void main() {} "
+				+ "public static final long L = 1L; public static final double D = 2.0; }\n");
+		compile(out, a, b, c);
+
+		List<EntryPoints> eps = EntryPoints.scan(out);
+		assertThat(eps.stream().map(ep -> ep.name).toArray(), arrayContaining("B", "C", "pkg.A"));
+		EntryPoints epA = eps.get(2);
+		assertThat(epA.simpleName(), equalTo("A"));
+		assertThat(epA.main, is(true));
+		assertThat(epA.agentMain || epA.preMain, is(false));
+		EntryPoints epB = eps.get(0);
+		assertThat(epB.main, is(false));
+		assertThat(epB.preMain, is(true));
+		EntryPoints epC = eps.get(1);
+		assertThat(epC.main, is(true));
+		assertThat(epC.agentMain, is(true));
+	}
+}
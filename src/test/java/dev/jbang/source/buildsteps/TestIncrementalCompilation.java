@@ -0,0 +1,46 @@
+package dev.jbang.source.buildsteps;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import dev.jbang.BaseTest;
+
+public class TestIncrementalCompilation extends BaseTest {
+
+	@Test
+	void testAnnotationProcessorsDetected(@TempDir Path dir) throws IOException {
+		Path lib = dir.resolve("lib.jar");
+		Path processor = dir.resolve("processor.jar");
+		writeJar(lib, "META-INF/MANIFEST.MF");
+		writeJar(processor, IncrementalCompilation.PROCESSOR_SERVICE);
+
+		assertThat(IncrementalCompilation.mayRunAnnotationProcessors(
+				Arrays.asList("javac", "-classpath", lib.toString(), "A.java")), is(false));
+		assertThat(IncrementalCompilation.mayRunAnnotationProcessors(
+				Arrays.asList("javac", "-classpath", lib + File.pathSeparator + processor, "A.java")),
+				is(true));
+		assertThat(IncrementalCompilation.mayRunAnnotationProcessors(
+				Arrays.asList("javac", "-proc:none", "-classpath", processor.toString(), "A.java")), is(false));
+		assertThat(IncrementalCompilation.mayRunAnnotationProcessors(
+				Arrays.asList("javac", "-processor", "foo.Processor", "A.java")), is(true));
+	}
+
+	private static void writeJar(Path jar, String entry) throws IOException {
+		try (OutputStream os = Files.newOutputStream(jar); JarOutputStream jos = new JarOutputStream(os)) {
+			jos.putNextEntry(new JarEntry(entry));
+			jos.closeEntry();
+		}
+	}
+}
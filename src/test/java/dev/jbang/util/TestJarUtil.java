@@ -0,0 +1,78 @@
+package dev.jbang.util;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import dev.jbang.BaseTest;
+
+public class TestJarUtil extends BaseTest {
+
+	@Test
+	void testPatchJarSameAsWriteJar(@TempDir Path dir) throws IOException {
+		Path src = dir.resolve("classes");
+		Files.createDirectories(src.resolve("a/b"));
+		Util.writeString(src.resolve("a/One.class"), "one");
+		Util.writeString(src.resolve("a/b/Two.class"), "two");
+		Path oldJar = dir.resolve("old.jar");
+		JarUtil.writeJar(oldJar, src, new Manifest(), null, false);
+
+		// Same size and an old timestamp, only the contents tell it apart
+		FileTime time = Files.getLastModifiedTime(src.resolve("a/One.class"));
+		Util.writeString(src.resolve("a/One.class"), "eno");
+		Files.setLastModifiedTime(src.resolve("a/One.class"), FileTime.fromMillis(time.toMillis() - 10000));
+		Util.writeString(src.resolve("a/b/Three.class"), "three");
+
+		Path patched = dir.resolve("patched.jar");
+		Path written = dir.resolve("written.jar");
+		assertThat(JarUtil.patchJar(oldJar, patched, src, new Manifest(), null, false), is(true));
+		JarUtil.writeJar(written, src, new Manifest(), null, false);
+
+		assertThat(contents(patched), equalTo(contents(written)));
+		assertThat(contents(patched), hasItem(allOf(startsWith("a/One.class "), endsWith(" STORED eno"))));
+	}
+
+	@Test
+	void testPatchJarRemovedFile(@TempDir Path dir) throws IOException {
+		Path src = dir.resolve("classes");
+		Files.createDirectories(src);
+		Util.writeString(src.resolve("One.class"), "one");
+		Util.writeString(src.resolve("Two.class"), "two");
+		Path oldJar = dir.resolve("old.jar");
+		JarUtil.writeJar(oldJar, src, new Manifest(), null, true);
+		Files.delete(src.resolve("Two.class"));
+
+		assertThat(JarUtil.patchJar(oldJar, dir.resolve("patched.jar"), src, new Manifest(), null, true), is(false));
+	}
+
+	private static List<String> contents(Path jar) throws IOException {
+		List<String> result = new ArrayList<>();
+		try (ZipFile zf = ZipFile.builder().setFile(jar.toFile()).get()) {
+			for (ZipArchiveEntry e : Collections.list(zf.getEntriesInPhysicalOrder())) {
+				String content;
+				try (InputStream in = zf.getInputStream(e)) {
+					content = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+				}
+				String method = e.getMethod() == ZipEntry.STORED ? "STORED" : "DEFLATED";
+				result.add(e.getName() + " " + e.getTime() + (e.isDirectory() ? "" : " " + method + " " + content));
+			}
+		}
+		return result;
+	}
+}
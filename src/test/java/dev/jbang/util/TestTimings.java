@@ -0,0 +1,69 @@
+package dev.jbang.util;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.google.gson.Gson;
+
+import dev.jbang.BaseTest;
+
+public class TestTimings extends BaseTest {
+
+	@AfterEach
+	void cleanup() {
+		Timings.disable();
+	}
+
+	@Test
+	void testDisabled(@TempDir Path dir) throws IOException {
+		try (Timings.Span span = Timings.start("compile")) {
+			span.detail("ignored");
+		}
+		Path out = dir.resolve("timings.txt");
+		Timings.report(Timings.Format.table, out);
+		assertThat(out.toFile(), not(anExistingFile()));
+	}
+
+	@Test
+	void testTable(@TempDir Path dir) throws IOException {
+		Timings.enable();
+		try (Timings.Span span = Timings.start("compile", "hello.java")) {
+			try (Timings.Span dep = Timings.start("dependencies")) {
+				dep.detail("cache hit");
+			}
+		}
+		try (Timings.Span span = Timings.start("compile", "other.java")) {
+		}
+		Path out = dir.resolve("timings.txt");
+		Timings.report(Timings.Format.table, out);
+		String table = Util.readString(out);
+		assertThat(table, containsString("compile (hello.java)"));
+		assertThat(table, containsString("  dependencies (cache hit)"));
+		assertThat(table, containsString("compile (other.java)"));
+		assertThat(table, containsString("Sum per phase"));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void testTrace(@TempDir Path dir) throws IOException {
+		Timings.enable();
+		try (Timings.Span span = Timings.start("jar", "hello.java")) {
+		}
+		Path out = dir.resolve("trace.json");
+		Timings.report(Timings.Format.trace, out);
+		Map<String, Object> trace = new Gson().fromJson(Util.readString(out), Map.class);
+		List<Map<String, Object>> events = (List<Map<String, Object>>) trace.get("traceEvents");
+		assertThat(events.get(0).get("name"), equalTo("jar"));
+		assertThat(events.get(0).get("ph"), equalTo("X"));
+		assertThat(((Map<String, Object>) events.get(0).get("args")).get("detail"), equalTo("hello.java"));
+	}
+}
@@ -24,6 +24,16 @@ public class TestUtil extends BaseTest {
 		Catalog.clearCache();
 	}
 
+	@Test
+	void testAskInputWithoutInput() {
+		Util.setInputAvailable(false);
+		try {
+			assertThrows(InputRequiredException.class, () -> Util.askInput("Trust?", 1, 0, "Yes"));
+		} finally {
+			Util.setInputAvailable(true);
+		}
+	}
+
 	@Test
 	void testGetSourcePackage() {
 		assertEquals("blah", Util.getSourcePackage("package blah;").get());
@@ -1,11 +1,16 @@
 package dev.jbang.util;
 
 import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.*;
 import static org.hamcrest.io.FileMatchers.anExistingFile;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.net.Socket;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.attribute.FileTime;
@@ -14,11 +19,20 @@ import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import com.github.tomakehurst.wiremock.WireMockServer;
 import com.github.tomakehurst.wiremock.http.Request;
+import com.github.tomakehurst.wiremock.http.trafficlistener.WiremockNetworkTrafficListener;
 import com.github.tomakehurst.wiremock.junit5.WireMockRuntimeInfo;
 import com.github.tomakehurst.wiremock.junit5.WireMockTest;
 import com.github.tomakehurst.wiremock.matching.EqualToPattern;
@@ -406,6 +420,78 @@ public class TestUtilDownloads extends BaseTest {
 		});
 	}
 
+	@Test
+	void test2ReqWithMaxAge(WireMockRuntimeInfo wmri) throws IOException {
+		Configuration.instance().put("cache-evict", "1");
+
+		UUID id = UUID.randomUUID();
+		stubFor(get(urlEqualTo("/test.txt"))
+			.withId(id)
+			.willReturn(aResponse()
+				.withHeader("Content-Type", "text/plain")
+				.withHeader("Cache-Control", "public, max-age=3600")
+				.withBody("test")));
+
+		String url = wmri.getHttpBaseUrl() + "/test.txt";
+		Path file = NetUtil.downloadAndCacheFile(url);
+		assertThat(Util.readString(file), is("test"));
+
+		backdateCachedFile(file);
+
+		editStub(get(urlEqualTo("/test.txt"))
+			.withId(id)
+			.willReturn(aResponse()
+				.withHeader("Content-Type", "text/plain")
+				.withBody("test2")));
+
+		// The server said the file stays valid for an hour
+		Path file2 = NetUtil.downloadAndCacheFile(url);
+		assertThat(Util.readString(file2), is("test"));
+		verify(1, getRequestedFor(urlEqualTo("/test.txt")));
+	}
+
+	@Test
+	void test2ReqRevalidateInBackground(WireMockRuntimeInfo wmri) throws IOException {
+		Configuration.instance().put("cache-evict", "1");
+		Configuration.instance().put("cache-revalidate", "background");
+
+		UUID id = UUID.randomUUID();
+		stubFor(get(urlEqualTo("/test.txt"))
+			.withId(id)
+			.willReturn(aResponse()
+				.withHeader("Content-Type", "text/plain")
+				.withBody("test")));
+
+		String url = wmri.getHttpBaseUrl() + "/test.txt";
+		Path file = NetUtil.downloadAndCacheFile(url);
+		assertThat(Util.readString(file), is("test"));
+
+		backdateCachedFile(file);
+
+		editStub(get(urlEqualTo("/test.txt"))
+			.withId(id)
+			.willReturn(aResponse()
+				.withHeader("Content-Type", "text/plain")
+				.withBody("test2")));
+
+		// The stale file gets used right away
+		Path file2 = NetUtil.downloadAndCacheFile(url);
+		assertThat(file2, equalTo(file));
+		assertThat(Util.readString(file2), is("test"));
+
+		// While the new content is put aside
+		NetUtil.awaitRevalidations();
+		Path next = file.getParent().resolveSibling(file.getParent().getFileName() + ".next");
+		assertThat(Util.readString(next.resolve(file.getFileName())), is("test2"));
+		verify(2, getRequestedFor(urlEqualTo("/test.txt")));
+
+		// And it takes the place of the old content on the next request
+		Path file3 = NetUtil.downloadAndCacheFile(url);
+		assertThat(Util.readString(file3), is("test2"));
+		assertThat(Files.exists(next), is(false));
+		verify(2, getRequestedFor(urlEqualTo("/test.txt")));
+	}
+
 	@Test
 	void testReqUrlWithParams(WireMockRuntimeInfo wmri) throws IOException {
 		stubFor(get(urlEqualTo("/test.txt?path=foo/bar"))
@@ -422,6 +508,154 @@ public class TestUtilDownloads extends BaseTest {
 		assertThat(Util.readString(file), is("test"));
 	}
 
+	@Test
+	void testConnectionReused(@TempDir Path dir) throws IOException {
+		AtomicInteger connections = new AtomicInteger();
+		WireMockServer server = new WireMockServer(options().dynamicPort()
+			.networkTrafficListener(new WiremockNetworkTrafficListener() {
+				@Override
+				public void opened(Socket socket) {
+					connections.incrementAndGet();
+				}
+
+				@Override
+				public void incoming(Socket socket, ByteBuffer bytes) {
+				}
+
+				@Override
+				public void outgoing(Socket socket, ByteBuffer bytes) {
+				}
+
+				@Override
+				public void closed(Socket socket) {
+				}
+			}));
+		server.start();
+		try {
+			server.stubFor(get(urlEqualTo("/moved.txt"))
+				.willReturn(aResponse()
+					.withStatus(302)
+					.withHeader("Location", "/test.txt")
+					.withBody("moved")));
+			server.stubFor(get(urlEqualTo("/test.txt"))
+				.willReturn(aResponse()
+					.withHeader("Content-Type", "text/plain")
+					.withBody("test")));
+
+			for (int i = 0; i < 3; i++) {
+				Path file = NetUtil.downloadFile(server.baseUrl() + "/moved.txt", dir.resolve("dl" + i));
+				assertThat(Util.readString(file), is("test"));
+			}
+			// Redirects and downloads all went over the same connection
+			server.verify(3, getRequestedFor(urlEqualTo("/test.txt")));
+			assertThat(connections.get(), is(1));
+		} finally {
+			server.stop();
+		}
+	}
+
+	@Test
+	void testDownloadResumed(WireMockRuntimeInfo wmri, @TempDir Path dir) throws IOException {
+		// Announces 10 bytes but breaks off after 5
+		stubFor(get(urlEqualTo("/test.txt"))
+			.withHeader("Range", absent())
+			.willReturn(aResponse()
+				.withHeader("Accept-Ranges", "bytes")
+				.withHeader("ETag", "\"v1\"")
+				.withHeader("Content-Length", "10")
+				.withBody("01234")));
+		stubFor(get(urlEqualTo("/test.txt"))
+			.withHeader("Range", new EqualToPattern("bytes=5-"))
+			.withHeader("If-Range", new EqualToPattern("\"v1\""))
+			.willReturn(aResponse()
+				.withStatus(206)
+				.withHeader("Accept-Ranges", "bytes")
+				.withHeader("ETag", "\"v1\"")
+				.withHeader("Content-Range", "bytes 5-9/10")
+				.withBody("56789")));
+
+		Path file = NetUtil.downloadFile(wmri.getHttpBaseUrl() + "/test.txt", dir);
+		assertThat(Util.readString(file), is("0123456789"));
+		verify(1, getRequestedFor(urlEqualTo("/test.txt"))
+			.withHeader("Range", new EqualToPattern("bytes=5-"))
+			.withHeader("If-Range", new EqualToPattern("\"v1\"")));
+	}
+
+	@Test
+	void testDownloadChecksumMismatch(WireMockRuntimeInfo wmri, @TempDir Path dir) {
+		stubFor(get(urlEqualTo("/test.txt"))
+			.willReturn(aResponse()
+				.withHeader("Content-Type", "text/plain")
+				.withHeader("X-Checksum-Sha1", "a94a8fe5ccb19ba61c4c0873d391e987982fbbd3")
+				.withBody("tset")));
+
+		String url = wmri.getHttpBaseUrl() + "/test.txt";
+		IOException ex = assertThrows(IOException.class, () -> NetUtil.downloadFile(url, dir));
+		assertThat(ex.getMessage(), containsString("Checksum"));
+	}
+
+	@Test
+	void testDownloadChecksumMatches(WireMockRuntimeInfo wmri, @TempDir Path dir) throws IOException {
+		stubFor(get(urlEqualTo("/test.txt"))
+			.willReturn(aResponse()
+				.withHeader("Content-Type", "text/plain")
+				.withHeader("X-Checksum-Sha1", "a94a8fe5ccb19ba61c4c0873d391e987982fbbd3")
+				.withBody("test")));
+
+		Path file = NetUtil.downloadFile(wmri.getHttpBaseUrl() + "/test.txt", dir);
+		assertThat(Util.readString(file), is("test"));
+	}
+
+	@Test
+	void testDownloadAndUnpackZip(WireMockRuntimeInfo wmri, @TempDir Path dir) throws IOException {
+		ByteArrayOutputStream zip = new ByteArrayOutputStream();
+		try (ZipArchiveOutputStream zos = new ZipArchiveOutputStream(zip)) {
+			ZipArchiveEntry bin = new ZipArchiveEntry("tool/bin/run");
+			bin.setUnixMode(0755);
+			zos.putArchiveEntry(bin);
+			zos.write("#!/bin/sh".getBytes());
+			zos.closeArchiveEntry();
+			zos.putArchiveEntry(new ZipArchiveEntry("tool/lib/readme.txt"));
+			zos.write("test".getBytes());
+			zos.closeArchiveEntry();
+		}
+		stubFor(get(urlEqualTo("/tool.zip")).willReturn(aResponse().withBody(zip.toByteArray())));
+
+		Path out = dir.resolve("out");
+		Path archive = UnpackUtil.downloadAndUnpack(wmri.getHttpBaseUrl() + "/tool.zip", out, true, null);
+		assertThat(Util.readString(out.resolve("lib/readme.txt")), is("test"));
+		assertThat(Util.readString(out.resolve("bin/run")), is("#!/bin/sh"));
+		if (!Util.isWindows()) {
+			assertThat(Files.isExecutable(out.resolve("bin/run")), is(true));
+		}
+		// The archive is kept in the cache
+		assertThat(Files.size(archive), is((long) zip.size()));
+	}
+
+	@Test
+	void testDownloadAndUnpackTarGz(WireMockRuntimeInfo wmri, @TempDir Path dir) throws IOException {
+		ByteArrayOutputStream targz = new ByteArrayOutputStream();
+		try (TarArchiveOutputStream tos = new TarArchiveOutputStream(new GzipCompressorOutputStream(targz))) {
+			byte[] content = "test".getBytes();
+			TarArchiveEntry entry = new TarArchiveEntry("tool/readme.txt");
+			entry.setSize(content.length);
+			tos.putArchiveEntry(entry);
+			tos.write(content);
+			tos.closeArchiveEntry();
+		}
+		stubFor(get(urlEqualTo("/tool.tar.gz")).willReturn(aResponse().withBody(targz.toByteArray())));
+
+		Path out = dir.resolve("out");
+		UnpackUtil.downloadAndUnpack(wmri.getHttpBaseUrl() + "/tool.tar.gz", out);
+		assertThat(Util.readString(out.resolve("tool/readme.txt")), is("test"));
+
+		// Unpacking from the cache gives the same result
+		Path out2 = dir.resolve("out2");
+		UnpackUtil.downloadAndUnpack(wmri.getHttpBaseUrl() + "/tool.tar.gz", out2);
+		assertThat(Util.readString(out2.resolve("tool/readme.txt")), is("test"));
+		verify(1, getRequestedFor(urlEqualTo("/tool.tar.gz")));
+	}
+
 	/**
 	 * Backdates a file's last-modified time by 2 seconds so cache-evict checks see
 	 * it as stale, without needing Thread.sleep(1100).